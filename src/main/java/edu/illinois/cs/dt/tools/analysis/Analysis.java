@@ -8,6 +8,8 @@ import com.reedoei.eunomia.util.StandardMain;
 import edu.illinois.cs.dt.tools.detection.DetectionRound;
 import edu.illinois.cs.dt.tools.detection.DetectorPathManager;
 import edu.illinois.cs.dt.tools.detection.DetectorUtil;
+import edu.illinois.cs.dt.tools.detection.RoundJournal;
+import edu.illinois.cs.dt.tools.runner.BlobStore;
 import edu.illinois.cs.dt.tools.runner.RunnerPathManager;
 import edu.illinois.cs.dt.tools.runner.data.DependentTest;
 import edu.illinois.cs.dt.tools.runner.data.DependentTestList;
@@ -28,14 +30,18 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.sql.SQLException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -59,21 +65,40 @@ public class Analysis extends StandardMain {
         return result;
     }
 
+    private static final String[] DETECTOR_TYPES = {"original", "random", "random-class", "reverse", "reverse-class"};
+    private static final String[] VERIFICATION_TYPES = {
+            "random-verify", "random-class-verify", "reverse-verify", "reverse-class-verify",
+            "random-confirmation-sampling", "random-class-confirmation-sampling",
+            "reverse-confirmation-sampling", "reverse-class-confirmation-sampling"
+    };
+
+    // Stands in the window for a folder that is not a module, to keep the window in the order of the folders
+    private static final ModuleResults NO_MODULE = new ModuleResults(null, null, null);
+
     private final Path results;
     private final SQLite sqlite;
     private int dtListIndex = 0;
     private final int maxTestRuns;
     private final Path subjectList;
     private final Path subjectListLOC;
+    // Set with --bulk-load true or --db-mode file: each module is inserted in one transaction, with batched inserts
+    private final BulkInsert bulk;
+    // Threads reading module results while they are inserted
+    private final int threads;
 
     private Analysis(final String[] args) throws SQLException {
         super(args);
 
         this.results = Paths.get(getArgRequired("results")).toAbsolutePath();
-        this.sqlite = new SQLite(Paths.get(getArgRequired("db")).toAbsolutePath());
+        // With --db-mode file, the database file is used directly instead of being read into memory
+        final boolean fileMode = getArg("db-mode").map("file"::equals).orElse(false);
+        this.sqlite = new SQLite(Paths.get(getArgRequired("db")).toAbsolutePath(), fileMode);
         this.subjectList = Paths.get(getArgRequired("subjectList")).toAbsolutePath();
         this.subjectListLOC = Paths.get(getArgRequired("subjectListLoc")).toAbsolutePath();
         this.maxTestRuns = getArg("max-test-runs").map(Integer::parseInt).orElse(0);
+        this.threads = Integer.parseInt(getArg("threads").orElse(String.valueOf(Runtime.getRuntime().availableProcessors())));
+        // The database file is changed as we go, so a run that stops must not leave a module partly inserted
+        this.bulk = fileMode || getArg("bulk-load").map(Boolean::parseBoolean).orElse(false) ? new BulkInsert(sqlite) : null;
     }
 
     public static void main(final String[] args) {
@@ -108,14 +133,40 @@ public class Analysis extends StandardMain {
         final List<Path> allResultsFolders = new ArrayList<>();
         Files.walkFileTree(results, new ResultDirVisitor(allResultsFolders));
 
-        for (int i = 0; i < allResultsFolders.size(); i++) {
-            final Path p = allResultsFolders.get(i);
-            System.out.println("[INFO] Inserting results for module " + (i + 1) + " of " + allResultsFolders.size() + ": " + p);
-            try {
-                insertResults(p);
-            } catch (IOException | SQLException e) {
-                throw new RuntimeException(e);
+        // Modules are read on the parser threads, at most a few ahead of the one being inserted, and inserted in order
+        // on this thread, which is the only one that uses the database. Each module hands its decoded results over
+        // through a bounded queue (see ModuleResults), so reading ahead does not keep whole modules in memory.
+        final ExecutorService parsers = Executors.newFixedThreadPool(threads);
+        final Deque<ModuleResults> window = new ArrayDeque<>();
+        int next = 0;
+
+        try {
+            for (int i = 0; i < allResultsFolders.size(); i++) {
+                while (next < allResultsFolders.size() && window.size() < 2 * threads) {
+                    final ModuleResults module = moduleResults(allResultsFolders.get(next++));
+                    if (module != null) {
+                        parsers.submit(() -> readResults(module));
+                    }
+                    window.add(module == null ? NO_MODULE : module);
+                }
+
+                final Path p = allResultsFolders.get(i);
+                final ModuleResults module = window.remove();
+                if (module == NO_MODULE) {
+                    continue;
+                }
+
+                System.out.println("[INFO] Inserting results for module " + (i + 1) + " of " + allResultsFolders.size() + ": " + p);
+                try {
+                    insertModule(module);
+                    sqlite.checkpointIfDue();
+                } catch (IOException | SQLException e) {
+                    throw new RuntimeException(e);
+                }
             }
+        } finally {
+            // Stops the parsers of modules that will not be inserted, which may be waiting for room in their queue
+            parsers.shutdownNow();
         }
 
         runPostSetup();
@@ -123,6 +174,35 @@ public class Analysis extends StandardMain {
         sqlite.save();
     }
 
+    private void insertModule(final ModuleResults module) throws IOException, SQLException {
+        if (bulk == null) {
+            insertResults(module);
+            return;
+        }
+
+        bulk.begin();
+        try {
+            insertResults(module);
+        } catch (IOException | SQLException | RuntimeException e) {
+            bulk.rollback();
+            throw e;
+        }
+        bulk.commit();
+    }
+
+    // In bulk load mode, the statement is added to the module's batch instead of being run right away
+    private Procedure statement(final Path path) {
+        return bulk != null ? bulk.statement(path) : sqlite.statement(path);
+    }
+
+    private void execute(final Procedure procedure) throws SQLException {
+        if (bulk != null) {
+            procedure.addBatch();
+        } else {
+            procedure.executeUpdate();
+        }
+    }
+
     private void insertSubjectLOC(final Path path) throws IOException, SQLException {
         System.out.println("[INFO] Inserting subject's LOC and TEST_LOC");
 
@@ -180,106 +260,232 @@ public class Analysis extends StandardMain {
         System.out.println();
     }
 
-    private void insertResults(final Path path) throws IOException, SQLException {
+    // The module in the folder, or null if the folder is not in a subject's output folder
+    private ModuleResults moduleResults(final Path path) {
         final String parent = findParent(path);
 
         if (parent == null) {
-            return;
+            return null;
         }
 
-        final String name = path.getFileName().toString();
         final String slug = parent.substring(0, parent.indexOf('_')).replace('.', '/');
+        return new ModuleResults(path, path.getFileName().toString(), slug);
+    }
 
-        insertModuleTestTime(slug, path.resolve(DetectorPathManager.DETECTION_RESULTS).resolve("module-test-time.csv"));
+    // Runs on a parser thread, handing everything to insert over to the inserting thread, and always ends with END
+    private void readResults(final ModuleResults module) {
+        try {
+            readModule(module);
+            module.put(ModuleResults.Item.of(ModuleResults.Kind.END));
+        } catch (InterruptedException e) {
+            // Analysis stopped, so nothing will read the queue any more
+        } catch (Throwable t) {
+            try {
+                module.put(ModuleResults.Item.failed(t));
+            } catch (InterruptedException ignored) {}
+        }
+    }
 
-        if (!sqlite.checkExists("subject", name)) {
-            insertSubject(name, slug, path);
+    // Reads everything there is to insert for the module. Does not use the database, so it can run on any thread.
+    private void readModule(final ModuleResults module) throws IOException, InterruptedException {
+        final Path path = module.path;
+        final String name = module.name;
+
+        final Path moduleTestTimePath = path.resolve(DetectorPathManager.DETECTION_RESULTS).resolve("module-test-time.csv");
+        if (Files.exists(moduleTestTimePath)) {
+            module.moduleTestTime = csv(moduleTestTimePath);
         }
 
         final Path originalOrderPath = path.resolve(DetectorPathManager.ORIGINAL_ORDER);
         if (!Files.exists(originalOrderPath)) {
             System.out.println("[WARNING] No original order found at " + path.resolve(DetectorPathManager.ORIGINAL_ORDER));
+            module.put(ModuleResults.Item.of(ModuleResults.Kind.HEADER));
             return;
         }
 
-        final List<String> originalOrder = Files.readAllLines(originalOrderPath);
-        if (!sqlite.checkExists("original_order", "subject_name", name)) {
-            System.out.println("[INFO] Inserting original order for " + name + " (" + originalOrder.size() + " tests)");
+        module.originalOrder = Files.readAllLines(originalOrderPath);
+        module.put(ModuleResults.Item.of(ModuleResults.Kind.HEADER));
 
-            final Procedure statement = sqlite.statement(SQLStatements.INSERT_ORIGINAL_ORDER);
+        final Path results = path.resolve(RunnerPathManager.TEST_RUNS);
 
-            statement.beginTransaction();
+        if (!Files.isDirectory(results)) {
+            System.out.println("[WARNING] No directory " + results + " for " + name);
+            return;
+        }
 
-            for (int i = 0; i < originalOrder.size(); i++) {
-                statement
-                        .param(name)
-                        .param(originalOrder.get(i))
-                        .param(i).addBatch();
-            }
+        final Path detectionResults = path.resolve(DetectorPathManager.DETECTION_RESULTS);
 
-            statement.executeBatch();
-            statement.commit();
-            statement.endTransaction();
+        readTestRuns(module, results, readOriginalRounds(module, detectionResults));
+
+        // If we got a no passing order exception, don't insert any of the other results
+        if (!module.foundPassing) {
+            System.out.println("[WARNING] SKIPPING: No passing order found for: " + name);
+            for (final String detectorType : DETECTOR_TYPES) {
+                if (Files.isDirectory(detectionResults.resolve(detectorType))) {
+                    System.out.println("[ERROR]: " + detectorType + " results for " + name + " at " + detectionResults.resolve(detectorType));
+                }
+            }
+            return;
         }
 
-        final Path results = path.resolve(RunnerPathManager.TEST_RUNS);
+        for (final String detectorType : DETECTOR_TYPES) {
+            readDetectionResults(module, detectorType, detectionResults);
 
-        if (!Files.isDirectory(results)) {
-            System.out.println("[WARNING] No directory " + results + " for " + name);
-            return;
+            if (detectorType.equals("original")) {
+                for (int i = 0; i < module.originalOrderRounds.size(); i++) {
+                    module.put(ModuleResults.Item.detectionRound("original", module.originalRounds + i + 1,
+                            module.originalOrderRounds.get(i)));
+                }
+            }
+        }
+
+        for (final String verificationType : VERIFICATION_TYPES) {
+            readVerificationResults(module, verificationType, detectionResults);
         }
+    }
+
+    /**
+     * Decodes every test run once, to find a passing original order run, to make rounds of the original order runs
+     * that are not part of any original round, and to hand the first maxTestRuns runs over to be inserted. The runs
+     * are only inserted if there is a passing original order run, so the runs before it are kept until it is found
+     * (at most maxTestRuns of them).
+     */
+    private void readTestRuns(final ModuleResults module, final Path results, final OriginalRounds originalRounds)
+            throws IOException, InterruptedException {
+        System.out.println("[INFO] Trying to insert all original order runs from: " + module.path);
+
+        final List<String> originalOrder = module.originalOrder;
+        final TestRunResult passing = passingRun(originalOrder);
+        final List<TestRunResult> pending = new ArrayList<>();
+        int count = 0;
+
+        try (final Stream<TestRunResult> testRunResults = new TestRunParser(results).testRunResults()) {
+            final Iterator<TestRunResult> iterator = testRunResults.iterator();
+            while (iterator.hasNext()) {
+                final TestRunResult trr = iterator.next();
+                if (trr == null) {
+                    continue;
+                }
 
-        final boolean foundPassing =
-            new TestRunParser(results)
-            .testRunResults()
-            .anyMatch(trr -> {
-                if (trr != null) {
-                    if (trr.testOrder().equals(originalOrder)) {
+                if (trr.testOrder().equals(originalOrder)) {
+                    if (!module.foundPassing) {
                         System.out.println("[INFO] Found an original order run: " + trr.id());
-                        if (DetectorUtil.allPass(trr)) {
-                            System.out.println("[INFO] Found a passing order for " + name);
-                            return true;
+                    }
+
+                    if (!module.foundPassing && DetectorUtil.allPass(trr)) {
+                        System.out.println("[INFO] Found a passing order for " + module.name);
+                        module.foundPassing = true;
+                        module.put(ModuleResults.Item.of(ModuleResults.Kind.PASSING));
+
+                        for (final TestRunResult run : pending) {
+                            module.put(ModuleResults.Item.testRun(run));
                         }
+                        pending.clear();
+                    }
+
+                    if (!originalRounds.testRunIds.contains(trr.id())) {
+                        System.out.println("Found an original order to try to insert: " + trr.id());
+                        final List<DependentTest> result = DetectorUtil.flakyTests(passing, trr, true);
+                        module.originalOrderRounds.add(new DetectionRound(Collections.singletonList(trr.id()), result,
+                                result.stream().filter(t -> !originalRounds.knownFlakyTests.contains(t.name())).collect(Collectors.toList()),
+                                -1));
                     }
                 }
 
-                return false;
-            });
+                if (count < maxTestRuns) {
+                    count++;
 
-        // If we got a no passing order exception, don't insert any of the other results
-        if (!foundPassing) {
-            System.out.println("[WARNING] SKIPPING: No passing order found for: " + name);
-            for (final String detectorType : new String[] { "original", "random", "random-class", "reverse", "reverse-class"}) {
-                if (Files.isDirectory(path.resolve(DetectorPathManager.DETECTION_RESULTS).resolve(detectorType))) {
-                    System.out.println("[ERROR]: " + detectorType + " results for " + name + " at " + path.resolve(DetectorPathManager.DETECTION_RESULTS).resolve(detectorType));
+                    if (module.foundPassing) {
+                        module.put(ModuleResults.Item.testRun(trr));
+                    } else {
+                        pending.add(trr);
+                    }
                 }
             }
-            return;
         }
+    }
 
-        System.out.println("[INFO] Found passing order for: " + name);
+    private void insertResults(final ModuleResults module) throws IOException, SQLException {
+        final String name = module.name;
 
-        insertTestRuns(name, path.resolve(RunnerPathManager.TEST_RUNS).resolve("results"));
+        // The small parts are set once the header is in the queue
+        ModuleResults.Item item = module.next();
 
-        insertDetectionResults(name, "original", path.resolve(DetectorPathManager.DETECTION_RESULTS));
-        insertDetectionResults(name, "random", path.resolve(DetectorPathManager.DETECTION_RESULTS));
-        insertDetectionResults(name, "random-class", path.resolve(DetectorPathManager.DETECTION_RESULTS));
-        insertDetectionResults(name, "reverse", path.resolve(DetectorPathManager.DETECTION_RESULTS));
-        insertDetectionResults(name, "reverse-class", path.resolve(DetectorPathManager.DETECTION_RESULTS));
+        if (module.moduleTestTime != null) {
+            insertModuleTestTime(module.slug, module.moduleTestTime);
+        }
 
-        insertVerificationResults(name, "random-verify", path.resolve(DetectorPathManager.DETECTION_RESULTS));
-        insertVerificationResults(name, "random-class-verify", path.resolve(DetectorPathManager.DETECTION_RESULTS));
-        insertVerificationResults(name, "reverse-verify", path.resolve(DetectorPathManager.DETECTION_RESULTS));
-        insertVerificationResults(name, "reverse-class-verify", path.resolve(DetectorPathManager.DETECTION_RESULTS));
-        insertVerificationResults(name, "random-confirmation-sampling", path.resolve(DetectorPathManager.DETECTION_RESULTS));
-        insertVerificationResults(name, "random-class-confirmation-sampling", path.resolve(DetectorPathManager.DETECTION_RESULTS));
-        insertVerificationResults(name, "reverse-confirmation-sampling", path.resolve(DetectorPathManager.DETECTION_RESULTS));
-        insertVerificationResults(name, "reverse-class-confirmation-sampling", path.resolve(DetectorPathManager.DETECTION_RESULTS));
+        if (!sqlite.checkExists("subject", name)) {
+            insertSubject(name, module.slug);
+        }
+
+        final List<String> originalOrder = module.originalOrder;
+        if (originalOrder != null && !sqlite.checkExists("original_order", "subject_name", name)) {
+            System.out.println("[INFO] Inserting original order for " + name + " (" + originalOrder.size() + " tests)");
 
-//        sqlite.save();
+            final Procedure statement = statement(SQLStatements.INSERT_ORIGINAL_ORDER);
 
-        System.out.println("[INFO] Finished " + name + " (" + slug + ")");
-        System.out.println();
+            if (bulk == null) {
+                statement.beginTransaction();
+            }
+
+            for (int i = 0; i < originalOrder.size(); i++) {
+                statement
+                        .param(name)
+                        .param(originalOrder.get(i))
+                        .param(i).addBatch();
+            }
+
+            if (bulk == null) {
+                statement.executeBatch();
+                statement.commit();
+                statement.endTransaction();
+            }
+        }
+
+        int runs = 0;
+        String roundType = null;
+
+        while (item.kind != ModuleResults.Kind.END) {
+            item = module.next();
+
+            if (runs > 0 && item.kind != ModuleResults.Kind.TEST_RUN) {
+                // End the progress line
+                System.out.println();
+                runs = 0;
+            }
+
+            switch (item.kind) {
+                case PASSING:
+                    System.out.println("[INFO] Inserting test runs for " + name + " (saving at most " + maxTestRuns + ")");
+                    break;
+                case TEST_RUN:
+                    System.out.print("\r[INFO] Inserting run " + ++runs);
+                    insertTestRunResult(name, item.testRunResult);
+                    break;
+                case DETECTION_ROUND:
+                    if (!item.roundType.equals(roundType)) {
+                        roundType = item.roundType;
+                        System.out.println("[INFO] Inserting " + roundType + " detection results for " + name);
+                    }
+                    insertDetectionRound(name, item.roundType, item.roundNumber, item.round);
+                    break;
+                case VERIFICATION:
+                    if (!item.roundType.equals(roundType)) {
+                        roundType = item.roundType;
+                        System.out.println("[INFO] Inserting " + roundType + " verification results for " + name);
+                    }
+                    insertVerificationResult(name, item.step);
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        if (module.foundPassing) {
+            System.out.println("[INFO] Finished " + name + " (" + module.slug + ")");
+            System.out.println();
+        }
     }
 
     private int insertOperationTime(final OperationTime time) throws SQLException {
@@ -290,29 +496,22 @@ public class Analysis extends StandardMain {
                 .insertSingleRow();
     }
 
-    private void insertModuleTestTime(final String slug, final Path moduleTestTimePath) throws SQLException, IOException {
-        if (!Files.exists(moduleTestTimePath)) {
-            return;
-        }
-
+    private void insertModuleTestTime(final String slug, final ListEx<ListEx<String>> rows) throws SQLException {
         System.out.println("[INFO] Inserting module test time for: " + slug);
 
         if (!sqlite.checkExists("subject", "slug", slug)) {
-            final ListEx<ListEx<String>> rows = csv(moduleTestTimePath);
-
             for (ListEx<String> row : rows) {
                 final String coordinates = row.get(0);
                 final double time = Double.parseDouble(row.get(1));
 
                 final String[] split = coordinates.split(":");
 
-                sqlite.statement(SQLStatements.INSERT_MODULE_TEST_TIME)
+                execute(statement(SQLStatements.INSERT_MODULE_TEST_TIME)
                         .param(coordinates)
                         .param(split[0])
                         .param(split[1])
                         .param(split[2])
-                        .param(time)
-                        .executeUpdate();
+                        .param(time));
             }
         }
     }
@@ -329,157 +528,100 @@ public class Analysis extends StandardMain {
         }
     }
 
-    private void insertSubject(final String name, final String slug, final Path path) throws SQLException, IOException {
+    private void insertSubject(final String name, final String slug) throws SQLException {
         System.out.println("[INFO] Inserting results for " + name + " (" + slug + ")");
 
         // If the subject does not already exist, insert it
         if (!sqlite.checkExists("subject", name)) {
-            sqlite.statement(SQLStatements.INSERT_SUBJECT).param(name).param(slug).executeUpdate();
+            execute(statement(SQLStatements.INSERT_SUBJECT).param(name).param(slug));
         }
     }
 
-    private void insertTestRuns(final String name, final Path testRunResults) throws IOException, SQLException {
-        if (!Files.isDirectory(testRunResults)) {
-            return;
-        }
-
-        final ListEx<Path> paths = listFiles(testRunResults);
-
-        final int limit = Math.min(maxTestRuns, paths.size());
-        System.out.println("[INFO] Inserting test runs for " + name + " (" + paths.size() + " runs, saving " + limit + ")");
-
-        for (int i = 0; i < limit; i++) {
-            final Path p = paths.get(i);
-            System.out.print("\r[INFO] Inserting run " + (i + 1) + " of " + paths.size());
-            insertTestRunResult(name, new Gson().fromJson(FileUtil.readFile(p), TestRunResult.class));
-        }
-
-        System.out.println();
-    }
-
     private void insertTestRunResult(final String name, final TestRunResult testRunResult) throws SQLException {
         if (testRunResult == null) {
             return;
         }
 
-        if (sqlite.checkExists("test_run_result", testRunResult.id())) {
+        if (bulk != null ? !bulk.addTestRun(testRunResult.id()) : sqlite.checkExists("test_run_result", testRunResult.id())) {
             return;
         }
 
-        sqlite.statement(SQLStatements.INSERT_TEST_RUN_RESULT)
+        execute(statement(SQLStatements.INSERT_TEST_RUN_RESULT)
                 .param(name)
                 .param(testRunResult.id())
-                .param(0)
-                .executeUpdate();
+                .param(testRunResult.results().size()));
 
-        final Procedure statement = sqlite.statement(SQLStatements.INSERT_TEST_RESULT);
+        // Same as testOrder().indexOf, without searching the order for every test
+        final Map<String, Integer> positions = new HashMap<>();
+        for (int i = 0; i < testRunResult.testOrder().size(); i++) {
+            positions.putIfAbsent(testRunResult.testOrder().get(i), i);
+        }
 
-        statement.beginTransaction();
+        final Procedure statement = statement(SQLStatements.INSERT_TEST_RESULT);
 
-        final AtomicInteger count = new AtomicInteger();
-        testRunResult.results().forEach((testName, testResult) -> {
-            try {
-                statement.param(testRunResult.id())
-                        .param(testRunResult.testOrder().indexOf(testResult.name()))
-                        .param(testResult.name())
-                        .param((float) testResult.time())
-                        .param(String.valueOf(testResult.result()))
-                        .addBatch();
-                count.incrementAndGet();
-            } catch (SQLException e) {
-                throw new RuntimeException(e);
-            }
-        });
+        if (bulk == null) {
+            statement.beginTransaction();
+        }
 
-        statement.executeBatch();
+        for (final TestResult testResult : testRunResult.results().values()) {
+            statement.param(testRunResult.id())
+                    .param(positions.getOrDefault(testResult.name(), -1))
+                    .param(testResult.name())
+                    .param((float) testResult.time())
+                    .param(String.valueOf(testResult.result()))
+                    .addBatch();
+        }
 
-        statement.commit();
-        statement.endTransaction();
+        if (bulk == null) {
+            statement.executeBatch();
 
-        sqlite.statement(SQLStatements.UPDATE_TEST_RUN_RESULT_COUNT)
-                .param(count.get())
-                .param(testRunResult.id())
-                .executeUpdate();
+            statement.commit();
+            statement.endTransaction();
+        }
     }
 
-    private void insertDetectionResults(final String name, final String roundType, final Path path) throws IOException {
-        final Path detectionResults = path.resolve(roundType);
-
-        int i = 0;
-
-        final Set<String> knownFlakyTests = new HashSet<>();
-        final Set<String> addedRounds = new HashSet<>();
-
-        if (Files.exists(detectionResults)) {
-            final ListEx<Path> paths = listFiles(detectionResults);
-            System.out.println("[INFO] Inserting " + roundType + " detection results for " + name
-                    + " (" + paths.size() + " results)");
-
-            for (i = 0; Files.exists(detectionResults.resolve("round" + i + ".json")); i++) {
-                final Path p = detectionResults.resolve("round" + i  + ".json");
-                final int roundNumber = roundNumber(p.getFileName().toString());
-
-                try {
-                    final DetectionRound round = new Gson().fromJson(FileUtil.readFile(p), DetectionRound.class);
+    // Only the ids and flaky tests of the original rounds are needed ahead of time, to find the other original order runs
+    private OriginalRounds readOriginalRounds(final ModuleResults module, final Path path) throws IOException {
+        final Path detectionResults = path.resolve("original");
+        final OriginalRounds originalRounds = new OriginalRounds();
 
+        // The rounds are either in detection-results/original/roundN.json, or in detection-results/original.journal
+        if (Files.exists(detectionResults) || Files.exists(RoundJournal.journalPath(detectionResults))) {
+            try (final Stream<DetectionRound> rounds = RoundJournal.readRounds(detectionResults)) {
+                rounds.forEach(round -> {
                     if (round != null && round.unfilteredTests() != null && round.unfilteredTests().names() != null) {
-                        knownFlakyTests.addAll(round.unfilteredTests().names());
-                        addedRounds.addAll(round.testRunIds());
+                        originalRounds.knownFlakyTests.addAll(round.unfilteredTests().names());
+                        originalRounds.testRunIds.addAll(round.testRunIds());
                     }
 
-                    insertDetectionRound(name, roundType, roundNumber, round);
-                } catch (IOException | SQLException e) {
-                    throw new RuntimeException(e);
-                }
+                    module.originalRounds++;
+                });
             }
         }
 
-        if (roundType.equals("original")) {
-            insertOriginalResults(name, i, addedRounds, knownFlakyTests, path.getParent());
-        }
+        return originalRounds;
     }
 
-    private void insertOriginalResults(final String subjectName, final int prevRoundNum,
-                                       final Set<String> addedRounds,
-                                       final Set<String> knownFlakyTests, final Path path) throws IOException {
-        final Path results = path.resolve(RunnerPathManager.TEST_RUNS);
-        final Path originalOrderPath = path.resolve(DetectorPathManager.ORIGINAL_ORDER);
+    private static class OriginalRounds {
+        private final Set<String> knownFlakyTests = new HashSet<>();
+        private final Set<String> testRunIds = new HashSet<>();
+    }
 
-        if (!Files.exists(originalOrderPath)) {
-            System.out.println("[WARNING] No original order for " + subjectName + " at " + originalOrderPath);
-            return;
-        }
+    private void readDetectionResults(final ModuleResults module, final String roundType, final Path path)
+            throws IOException, InterruptedException {
+        final Path detectionResults = path.resolve(roundType);
 
-        if (!Files.isDirectory(results)) {
-            System.out.println("[WARNING] No directory " + results + " for " + subjectName);
+        if (!Files.exists(detectionResults) && !Files.exists(RoundJournal.journalPath(detectionResults))) {
             return;
         }
 
-        System.out.println("[INFO] Trying to insert all original order runs from: " + path);
-
-        final List<String> originalOrder = Files.readAllLines(originalOrderPath);
-
-        final AtomicInteger counter = new AtomicInteger(prevRoundNum);
-
-        final TestRunResult passing = passingRun(originalOrder);
-
-        new TestRunParser(results).testRunResults()
-            .forEach(trr -> {
-                if (trr != null) {
-                    if (trr.testOrder().equals(originalOrder) && !addedRounds.contains(trr.id())) {
-                        System.out.println("Found an original order to try to insert: " + trr.id());
-                        final List<DependentTest> result = DetectorUtil.flakyTests(passing, trr, true);
-                        final DetectionRound dr = new DetectionRound(Collections.singletonList(trr.id()), result,
-                                result.stream().filter(t -> !knownFlakyTests.contains(t.name())).collect(Collectors.toList()),
-                                -1);
-                        try {
-                            insertDetectionRound(subjectName, "original", counter.incrementAndGet(), dr);
-                        } catch (IOException | SQLException e) {
-                            throw new RuntimeException(e);
-                        }
-                    }
-                }
-            });
+        // Rounds that could not be read are null, but still count for the numbering
+        try (final Stream<DetectionRound> rounds = RoundJournal.readRounds(detectionResults)) {
+            final Iterator<DetectionRound> iterator = rounds.iterator();
+            for (int i = 0; iterator.hasNext(); i++) {
+                module.put(ModuleResults.Item.detectionRound(roundType, i, iterator.next()));
+            }
+        }
     }
 
     // This method exists only for the purpose of creating an all passing run that can be passed
@@ -506,23 +648,37 @@ public class Analysis extends StandardMain {
         final int unfilteredId = insertDependentTestList(round.unfilteredTests());
         final int filteredId = insertDependentTestList(round.filteredTests());
 
-        final int detectionRoundId =
-                sqlite.statement(SQLStatements.INSERT_DETECTION_ROUND)
-                .param(name)
-                .param(unfilteredId)
-                .param(filteredId)
-                .param(roundType)
-                .param(roundNumber)
-                .param((float) round.roundTime())
-                .insertSingleRow();
+        final int detectionRoundId;
+        if (bulk != null) {
+            detectionRoundId = bulk.nextId("detection_round");
+
+            bulk.statement(SQLStatements.INSERT_DETECTION_ROUND_WITH_ID)
+                    .param(detectionRoundId)
+                    .param(name)
+                    .param(unfilteredId)
+                    .param(filteredId)
+                    .param(roundType)
+                    .param(roundNumber)
+                    .param((float) round.roundTime())
+                    .addBatch();
+        } else {
+            detectionRoundId =
+                    sqlite.statement(SQLStatements.INSERT_DETECTION_ROUND)
+                    .param(name)
+                    .param(unfilteredId)
+                    .param(filteredId)
+                    .param(roundType)
+                    .param(roundNumber)
+                    .param((float) round.roundTime())
+                    .insertSingleRow();
+        }
 
         // Might occur when using old results
         if (round.testRunIds() != null) {
             for (final String testRunId : round.testRunIds()) {
-                sqlite.statement(SQLStatements.INSERT_DETECTION_ROUND_TEST_RUN)
+                execute(statement(SQLStatements.INSERT_DETECTION_ROUND_TEST_RUN)
                         .param(detectionRoundId)
-                        .param(testRunId)
-                        .executeUpdate();
+                        .param(testRunId));
             }
         }
     }
@@ -534,16 +690,28 @@ public class Analysis extends StandardMain {
         for (DependentTest dependentTest : dependentTestList.dts()) {
             final int dependentTestId = insertDependentTest(dependentTest);
 
-            sqlite.statement(SQLStatements.INSERT_FLAKY_TEST_LIST)
+            execute(statement(SQLStatements.INSERT_FLAKY_TEST_LIST)
                     .param(index)
-                    .param(dependentTestId)
-                    .executeUpdate();
+                    .param(dependentTestId));
         }
 
         return index;
     }
 
     private int insertDependentTest(final DependentTest dependentTest) throws SQLException {
+        if (bulk != null) {
+            final int id = bulk.nextId("flaky_test");
+
+            bulk.statement(SQLStatements.INSERT_FLAKY_TEST_WITH_ID)
+                    .param(id)
+                    .param(dependentTest.name())
+                    .param(dependentTest.intended().testRunId())
+                    .param(dependentTest.revealed().testRunId())
+                    .addBatch();
+
+            return id;
+        }
+
         return sqlite.statement(SQLStatements.INSERT_FLAKY_TEST)
                 .param(dependentTest.name())
                 .param(dependentTest.intended().testRunId())
@@ -551,53 +719,48 @@ public class Analysis extends StandardMain {
                 .insertSingleRow();
     }
 
-    private void insertVerificationResults(final String name, final String roundType, final Path basePath) throws IOException {
+    private void readVerificationResults(final ModuleResults module, final String roundType, final Path basePath)
+            throws IOException, InterruptedException {
         final Path verificationResults = basePath.resolve(roundType);
 
         if (!Files.isDirectory(verificationResults)) {
             return;
         }
 
-        final ListEx<Path> paths = listFiles(verificationResults);
+        for (final Path p : listFiles(verificationResults)) {
+            final int roundNumber = roundNumber(p.getFileName().toString());
 
-        System.out.println("[INFO] Inserting " + roundType + " verification results for " + name + " (" + paths.size() + " rounds)");
+            for (final Path verificationStep : listFiles(p)) {
+                final String filename = verificationStep.getFileName().toString();
+                final String[] split = filename.split("-");
 
-        paths.forEach(p -> {
-            try {
-                insertVerificationRound(name, roundType, roundNumber(p.getFileName().toString()), p);
-            } catch (IOException e) {
-                throw new RuntimeException(e);
+                final String testName = split[0];
+                final Result result = Result.valueOf(split[1]);
+                final int verificationRoundNumber = roundNumber(split[2]);
+
+                final TestRunResult testRunResult =
+                        new Gson().fromJson(BlobStore.readFile(verificationStep), TestRunResult.class);
+
+                module.put(ModuleResults.Item.verification(new ModuleResults.VerificationStep(roundType, roundNumber,
+                        testName, result, verificationRoundNumber, testRunResult)));
             }
-        });
+        }
     }
 
-    private void insertVerificationRound(final String name, final String roundType, final int roundNumber, final Path p) throws IOException {
-        listFiles(p).forEach(verificationStep -> {
-            final String filename = verificationStep.getFileName().toString();
-            final String[] split = filename.split("-");
-
-            final String testName = split[0];
-            final Result result = Result.valueOf(split[1]);
-            final int verificationRoundNumber = roundNumber(split[2]);
+    private void insertVerificationResult(final String name, final ModuleResults.VerificationStep step)
+            throws SQLException {
+        final TestRunResult testRunResult = step.testRunResult;
 
-            try {
-                final TestRunResult testRunResult = new Gson().fromJson(FileUtil.readFile(verificationStep), TestRunResult.class);
+        execute(statement(SQLStatements.INSERT_VERIFICATION_ROUND)
+                .param(name)
+                .param(step.roundNumber)
+                .param(testRunResult.id())
+                .param(step.roundType)
+                .param(step.verificationRoundNumber)
+                .param(step.testName)
+                .param(String.valueOf(step.expected))
+                .param(String.valueOf(testRunResult.results().get(step.testName).result())));
 
-                sqlite.statement(SQLStatements.INSERT_VERIFICATION_ROUND)
-                        .param(name)
-                        .param(roundNumber)
-                        .param(testRunResult.id())
-                        .param(roundType)
-                        .param(verificationRoundNumber)
-                        .param(testName)
-                        .param(String.valueOf(result))
-                        .param(String.valueOf(testRunResult.results().get(testName).result()))
-                        .executeUpdate();
-
-                insertTestRunResult(name, testRunResult);
-            } catch (IOException | SQLException e) {
-                throw new RuntimeException(e);
-            }
-        });
+        insertTestRunResult(name, testRunResult);
     }
 }
@@ -0,0 +1,92 @@
+package edu.illinois.cs.dt.tools.analysis;
+
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Inserts everything for one module in a single transaction, as batches that are only executed at the end.
+ *
+ * Because nothing is in the database until then, ids are picked here rather than read back with last_insert_rowid(),
+ * and the test runs added so far are tracked here too, so the same run (e.g., from a verification round) is not
+ * inserted twice.
+ */
+public class BulkInsert {
+    private final SQLite sqlite;
+    // In the order they were first used, so rows are inserted before the rows that refer to them
+    private final Set<Path> batches = new LinkedHashSet<>();
+    private final Map<String, Integer> nextIds = new HashMap<>();
+    private final Set<String> testRunIds = new HashSet<>();
+
+    public BulkInsert(final SQLite sqlite) {
+        this.sqlite = sqlite;
+    }
+
+    public void begin() throws SQLException {
+        sqlite.beginTransaction();
+    }
+
+    /**
+     * The statement to add a row to. Call {@link Procedure#addBatch()} once its parameters are set.
+     */
+    public Procedure statement(final Path path) {
+        batches.add(path);
+        return sqlite.statement(path);
+    }
+
+    public int nextId(final String tableName) throws SQLException {
+        Integer id = nextIds.get(tableName);
+
+        if (id == null) {
+            id = sqlite.maxId(tableName) + 1;
+        }
+
+        nextIds.put(tableName, id + 1);
+        return id;
+    }
+
+    /**
+     * @return False if the test run was already added or is already in the database
+     */
+    public boolean addTestRun(final String testRunId) throws SQLException {
+        return !testRunIds.contains(testRunId) &&
+                !sqlite.checkExists("test_run_result", testRunId) &&
+                testRunIds.add(testRunId);
+    }
+
+    public void commit() throws SQLException {
+        try {
+            for (final Path path : batches) {
+                sqlite.statement(path).executeBatch();
+            }
+
+            sqlite.commit();
+        } catch (SQLException e) {
+            rollback();
+            throw e;
+        }
+
+        clear();
+    }
+
+    public void rollback() throws SQLException {
+        for (final Path path : batches) {
+            sqlite.statement(path).clearBatch();
+        }
+
+        sqlite.rollback();
+
+        // Ids picked for rows that were never inserted will be picked again
+        nextIds.clear();
+        clear();
+    }
+
+    private void clear() {
+        batches.clear();
+        testRunIds.clear();
+    }
+}
@@ -0,0 +1,148 @@
+package edu.illinois.cs.dt.tools.analysis;
+
+import com.reedoei.eunomia.collections.ListEx;
+import edu.illinois.cs.dt.tools.detection.DetectionRound;
+import edu.illinois.cs.testrunner.data.results.Result;
+import edu.illinois.cs.testrunner.data.results.TestRunResult;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * What is read from one module's results folder to insert it with {@link Analysis}.
+ * Reading these does not touch the database, so several modules can be read at once.
+ *
+ * A parser thread decodes everything to insert once, in the order it is inserted, and hands it over through a queue
+ * of at most QUEUE_SIZE items, which the inserting thread drains. So each module being read ahead only keeps a few
+ * decoded test runs, rounds and verification results in memory, and the module being inserted is decoded while the
+ * previous items are inserted.
+ */
+class ModuleResults {
+    private static final int QUEUE_SIZE = 64;
+
+    public final Path path;
+    public final String name;
+    public final String slug;
+
+    // The rows of module-test-time.csv, if there is one. This and the original order are set before HEADER is queued
+    public ListEx<ListEx<String>> moduleTestTime = null;
+    public List<String> originalOrder = null;
+
+    // Only when there is a passing original order run (PASSING) are the runs, rounds and verification results inserted
+    public volatile boolean foundPassing = false;
+
+    // The number of original rounds (including those that could not be read)
+    public int originalRounds = 0;
+    // Original order runs that are not part of any original round, numbered after the original rounds
+    public final List<DetectionRound> originalOrderRounds = new ArrayList<>();
+
+    private final BlockingQueue<Item> items = new ArrayBlockingQueue<>(QUEUE_SIZE);
+
+    ModuleResults(final Path path, final String name, final String slug) {
+        this.path = path;
+        this.name = name;
+        this.slug = slug;
+    }
+
+    /**
+     * Waits while the queue is full, i.e., while the inserting thread is behind.
+     */
+    void put(final Item item) throws InterruptedException {
+        items.put(item);
+    }
+
+    /**
+     * The next item to insert, waiting for the parser thread if it is behind.
+     */
+    Item next() {
+        final Item item;
+        try {
+            item = items.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while reading results for " + path, e);
+        }
+
+        if (item.failure != null) {
+            throw new RuntimeException("Could not read results for " + path, item.failure);
+        }
+
+        return item;
+    }
+
+    enum Kind {
+        // The small parts (module-test-time.csv and the original order) are set
+        HEADER,
+        // A passing original order run was found, so the rest of the module is inserted
+        PASSING,
+        TEST_RUN,
+        DETECTION_ROUND,
+        VERIFICATION,
+        // Nothing more to insert (or the module could not be read, if failure is set)
+        END
+    }
+
+    static class Item {
+        public final Kind kind;
+        public final TestRunResult testRunResult;
+        public final String roundType;
+        public final int roundNumber;
+        // May be null for a round that could not be read, which still counts for the numbering
+        public final DetectionRound round;
+        public final VerificationStep step;
+        public final Throwable failure;
+
+        private Item(final Kind kind, final TestRunResult testRunResult, final String roundType, final int roundNumber,
+                     final DetectionRound round, final VerificationStep step, final Throwable failure) {
+            this.kind = kind;
+            this.testRunResult = testRunResult;
+            this.roundType = roundType;
+            this.roundNumber = roundNumber;
+            this.round = round;
+            this.step = step;
+            this.failure = failure;
+        }
+
+        static Item of(final Kind kind) {
+            return new Item(kind, null, null, -1, null, null, null);
+        }
+
+        static Item testRun(final TestRunResult testRunResult) {
+            return new Item(Kind.TEST_RUN, testRunResult, null, -1, null, null, null);
+        }
+
+        static Item detectionRound(final String roundType, final int roundNumber, final DetectionRound round) {
+            return new Item(Kind.DETECTION_ROUND, null, roundType, roundNumber, round, null, null);
+        }
+
+        static Item verification(final VerificationStep step) {
+            return new Item(Kind.VERIFICATION, step.testRunResult, step.roundType, step.roundNumber, null, step, null);
+        }
+
+        static Item failed(final Throwable failure) {
+            return new Item(Kind.END, null, null, -1, null, null, failure);
+        }
+    }
+
+    static class VerificationStep {
+        public final String roundType;
+        public final int roundNumber;
+        public final String testName;
+        public final Result expected;
+        public final int verificationRoundNumber;
+        public final TestRunResult testRunResult;
+
+        VerificationStep(final String roundType, final int roundNumber, final String testName, final Result expected,
+                         final int verificationRoundNumber, final TestRunResult testRunResult) {
+            this.roundType = roundType;
+            this.roundNumber = roundNumber;
+            this.testName = testName;
+            this.expected = expected;
+            this.verificationRoundNumber = verificationRoundNumber;
+            this.testRunResult = testRunResult;
+        }
+    }
+}
@@ -8,12 +8,23 @@ import java.sql.SQLException;
 public class Procedure {
     private final Connection connection;
     private final PreparedStatement statement;
+    private final PreparedStatement lastInsertRowId;
 
     private int index = 1;
 
     public Procedure(final Connection connection, final PreparedStatement statement) {
+        this(connection, statement, null);
+    }
+
+    /**
+     * @param lastInsertRowId A prepared "select last_insert_rowid() as id", so insertSingleRow does not need to prepare
+     *                        one on every call
+     */
+    public Procedure(final Connection connection, final PreparedStatement statement,
+                     final PreparedStatement lastInsertRowId) {
         this.connection = connection;
         this.statement = statement;
+        this.lastInsertRowId = lastInsertRowId;
     }
 
     public Procedure param(final double d) throws SQLException {
@@ -59,7 +70,12 @@ public class Procedure {
     public int insertSingleRow() throws SQLException {
         statement.executeUpdate();
 
-        return connection.prepareStatement("select last_insert_rowid() as id").executeQuery().getInt("id");
+        final PreparedStatement rowId =
+                lastInsertRowId != null ? lastInsertRowId : connection.prepareStatement("select last_insert_rowid() as id");
+
+        try (final ResultSet rs = rowId.executeQuery()) {
+            return rs.getInt("id");
+        }
     }
 
     public ResultSet query() throws SQLException {
@@ -75,6 +91,11 @@ public class Procedure {
         return statement.executeBatch();
     }
 
+    public void clearBatch() throws SQLException {
+        index = 1;
+        statement.clearBatch();
+    }
+
     public void beginTransaction() throws SQLException {
         connection.setAutoCommit(false);
     }
@@ -88,6 +109,8 @@ public class Procedure {
     }
 
     public boolean exists() throws SQLException {
-        return query().next();
+        try (final ResultSet rs = query()) {
+            return rs.next();
+        }
     }
 }
@@ -21,6 +21,8 @@ public class SQLStatements {
     public static final Path INSERT_FLAKY_TEST_LIST = Paths.get("src/main/sql/build/flaky_test_list_insert.sql");
     public static final Path INSERT_FLAKY_TEST = Paths.get("src/main/sql/build/flaky_test_insert.sql");
     public static final Path INSERT_DETECTION_ROUND = Paths.get("src/main/sql/build/detection_round_insert.sql");
+    public static final Path INSERT_FLAKY_TEST_WITH_ID = Paths.get("src/main/sql/build/flaky_test_insert_with_id.sql");
+    public static final Path INSERT_DETECTION_ROUND_WITH_ID = Paths.get("src/main/sql/build/detection_round_insert_with_id.sql");
     public static final Path INSERT_DETECTION_ROUND_TEST_RUN = Paths.get("src/main/sql/build/detection_round_insert_test_run.sql");
 
     public static final Path INSERT_VERIFICATION_ROUND = Paths.get("src/main/sql/build/verify_round_insert.sql");
@@ -79,6 +81,8 @@ public class SQLStatements {
         ensureExists(INSERT_FLAKY_TEST_LIST);
         ensureExists(INSERT_FLAKY_TEST);
         ensureExists(INSERT_DETECTION_ROUND);
+        ensureExists(INSERT_FLAKY_TEST_WITH_ID);
+        ensureExists(INSERT_DETECTION_ROUND_WITH_ID);
         ensureExists(INSERT_DETECTION_ROUND_TEST_RUN);
 
         ensureExists(INSERT_VERIFICATION_ROUND);
@@ -1,6 +1,7 @@
 package edu.illinois.cs.dt.tools.analysis;
 
 import com.reedoei.eunomia.io.files.FileUtil;
+import edu.illinois.cs.testrunner.configuration.Configuration;
 
 import java.io.IOException;
 import java.nio.file.Files;
@@ -8,7 +9,9 @@ import java.nio.file.Path;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
@@ -18,27 +21,91 @@ import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 public class SQLite {
+    // Only used with a file backed database (see SQLite(Path, boolean))
+    private static final int CACHE_SIZE_MB = Configuration.config().getProperty("dt.analysis.db.cache_size_mb", 64);
+    private static final int MMAP_SIZE_MB = Configuration.config().getProperty("dt.analysis.db.mmap_size_mb", 256);
+    private static final int CHECKPOINT_SECONDS = Configuration.config().getProperty("dt.analysis.db.checkpoint_seconds", 60);
+
     private final Connection connection;
     private final Map<Path, PreparedStatement> statements = new HashMap<>();
+    private final Map<String, PreparedStatement> queries = new HashMap<>();
     private final Map<String, String> primaryKeys = new HashMap<>();
     private final Path db;
+    private final PreparedStatement lastInsertRowId;
+    private final boolean fileBacked;
+    private long lastCheckpoint;
 
     public SQLite(final Path db) throws SQLException {
+        this(db, false);
+    }
+
+    /**
+     * @param fileBacked If true, use the database file directly (in WAL mode), rather than reading all of it into
+     *                   memory and writing it back in {@link #save()}. Everything committed is kept even if the
+     *                   process dies, and memory use does not grow with the database.
+     */
+    public SQLite(final Path db, final boolean fileBacked) throws SQLException {
         this.db = db;
-        connection = DriverManager.getConnection("jdbc:sqlite::memory:");
+        this.fileBacked = fileBacked;
+
+        if (fileBacked) {
+            System.out.println("[INFO] Opening database: " + db.toAbsolutePath());
+            connection = DriverManager.getConnection("jdbc:sqlite:" + db.toAbsolutePath());
+
+            try (final Statement statement = connection.createStatement()) {
+                statement.execute("pragma journal_mode = wal");
+                // In WAL mode, only checkpoints wait for the disk, and a crash can only lose the latest commits
+                statement.execute("pragma synchronous = normal");
+                // A negative cache size is in KiB rather than pages
+                statement.execute("pragma cache_size = -" + CACHE_SIZE_MB * 1024L);
+                statement.execute("pragma mmap_size = " + MMAP_SIZE_MB * 1024L * 1024L);
+            }
+        } else {
+            connection = DriverManager.getConnection("jdbc:sqlite::memory:");
 
-        if (Files.exists(db)) {
-            System.out.println("[INFO] Reading database from: " + db.toAbsolutePath());
-            connection.createStatement().executeUpdate("restore from " + db.toAbsolutePath());
+            if (Files.exists(db)) {
+                System.out.println("[INFO] Reading database from: " + db.toAbsolutePath());
+                connection.createStatement().executeUpdate("restore from " + db.toAbsolutePath());
+            }
         }
+
+        lastCheckpoint = System.currentTimeMillis();
+        lastInsertRowId = connection.prepareStatement("select last_insert_rowid() as id");
     }
 
     public void save() throws SQLException {
+        if (fileBacked) {
+            System.out.println("[INFO] Checkpointing database: " + db.toAbsolutePath());
+            checkpoint("truncate");
+            return;
+        }
+
         System.out.println("[INFO] Writing database to: " + db.toAbsolutePath());
 
         connection.createStatement().executeUpdate("backup to "+ db.toAbsolutePath());
     }
 
+    /**
+     * Copies the WAL into the database file if it has been dt.analysis.db.checkpoint_seconds since the last time,
+     * so the WAL does not keep growing. Call between transactions.
+     */
+    public void checkpointIfDue() throws SQLException {
+        if (fileBacked && System.currentTimeMillis() - lastCheckpoint >= CHECKPOINT_SECONDS * 1000L) {
+            checkpoint("passive");
+        }
+    }
+
+    private void checkpoint(final String mode) throws SQLException {
+        try (final Statement statement = connection.createStatement();
+             final ResultSet rs = statement.executeQuery("pragma wal_checkpoint(" + mode + ")")) {
+            if (rs.next() && rs.getInt(1) != 0) {
+                System.out.println("[WARNING] Could not finish checkpointing " + db.toAbsolutePath());
+            }
+        }
+
+        lastCheckpoint = System.currentTimeMillis();
+    }
+
     public Procedure statement(final Path path) {
         final PreparedStatement ps = statements.computeIfAbsent(path, p -> {
             try {
@@ -48,7 +115,42 @@ public class SQLite {
             }
         });
 
-        return new Procedure(connection, ps);
+        return new Procedure(connection, ps, lastInsertRowId);
+    }
+
+    // Statements built in code (e.g., checkExists), prepared once
+    private PreparedStatement query(final String sql) throws SQLException {
+        PreparedStatement ps = queries.get(sql);
+
+        if (ps == null) {
+            ps = connection.prepareStatement(sql);
+            queries.put(sql, ps);
+        }
+
+        return ps;
+    }
+
+    /**
+     * The largest id in the table (0 if it is empty), so inserts can pick their ids themselves.
+     */
+    public int maxId(final String tableName) throws SQLException {
+        try (final ResultSet rs = query("select ifnull(max(id), 0) as id from " + tableName).executeQuery()) {
+            return rs.getInt("id");
+        }
+    }
+
+    public void beginTransaction() throws SQLException {
+        connection.setAutoCommit(false);
+    }
+
+    public void commit() throws SQLException {
+        connection.commit();
+        connection.setAutoCommit(true);
+    }
+
+    public void rollback() throws SQLException {
+        connection.rollback();
+        connection.setAutoCommit(true);
     }
 
     public Procedure runStatements(final Path path) throws IOException, SQLException {
@@ -133,17 +235,14 @@ public class SQLite {
     }
 
     public boolean checkExists(final String tableName, final String columnName, final String val) throws SQLException {
-        return new Procedure(connection, connection.prepareStatement(checkExistsStatement(tableName, columnName)))
-                .param(val).exists();
+        return new Procedure(connection, query(checkExistsStatement(tableName, columnName))).param(val).exists();
     }
 
     public boolean checkExists(final String tableName, final String columnName, final int val) throws SQLException {
-        return new Procedure(connection, connection.prepareStatement(checkExistsStatement(tableName, columnName)))
-                .param(val).exists();
+        return new Procedure(connection, query(checkExistsStatement(tableName, columnName))).param(val).exists();
     }
 
     public boolean checkExists(final String tableName, final String columnName, final float val) throws SQLException {
-        return new Procedure(connection, connection.prepareStatement(checkExistsStatement(tableName, columnName)))
-                .param(val).exists();
+        return new Procedure(connection, query(checkExistsStatement(tableName, columnName))).param(val).exists();
     }
 }
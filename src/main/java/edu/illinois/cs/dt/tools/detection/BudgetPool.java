@@ -0,0 +1,80 @@
+package edu.illinois.cs.dt.tools.detection;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The total time (detector.timeout) available to run one detector type on every module of a project.
+ *
+ * Each module is handed a share of the time that is still free, proportional to how long its tests took
+ * (from module-test-time.csv) compared to the modules that have not started yet. Modules give back the time they do
+ * not use, so it flows to the modules that run after them. Once every module has started, running modules may also
+ * claim the free time directly.
+ */
+public class BudgetPool {
+    private static final Map<String, BudgetPool> pools = new HashMap<>();
+
+    public static synchronized BudgetPool forDetector(final String detectorType, final double totalSeconds,
+                                                      final Map<String, Double> moduleTimes) {
+        return pools.computeIfAbsent(detectorType, t -> new BudgetPool(totalSeconds, moduleTimes));
+    }
+
+    private final Map<String, Double> moduleTimes;
+    private final Set<String> started = new HashSet<>();
+    private double freeSeconds;
+
+    public BudgetPool(final double totalSeconds, final Map<String, Double> moduleTimes) {
+        this.freeSeconds = totalSeconds;
+        this.moduleTimes = moduleTimes;
+    }
+
+    public synchronized TimeBudget allocate(final String coordinates) {
+        double waitingTime = 0.0;
+        int waitingModules = 0;
+        for (final Map.Entry<String, Double> entry : moduleTimes.entrySet()) {
+            if (!started.contains(entry.getKey()) || entry.getKey().equals(coordinates)) {
+                waitingTime += entry.getValue();
+                waitingModules++;
+            }
+        }
+
+        final double moduleTime = moduleTimes.getOrDefault(coordinates, 0.0);
+
+        double share = moduleTime * freeSeconds / waitingTime;
+
+        // Can only happen when the total time is 0, in which case just allocate equal time to everyone.
+        if (Double.isNaN(share)) {
+            share = freeSeconds / Math.max(1, waitingModules);
+        }
+
+        share = Math.max(2.0, share);
+
+        started.add(coordinates);
+        freeSeconds = Math.max(0.0, freeSeconds - share);
+
+        System.out.printf("[INFO] BUDGET: Giving %s %.1f seconds (%.1f seconds left for other modules)%n",
+                coordinates, share, freeSeconds);
+
+        return new TimeBudget(coordinates, share, this);
+    }
+
+    public synchronized void release(final double seconds) {
+        freeSeconds += seconds;
+    }
+
+    /**
+     * Takes up to the requested amount of free time. Time is only handed out this way once every module has started,
+     * because until then it is reserved for the modules that have not started yet.
+     */
+    public synchronized double claim(final double seconds) {
+        if (!started.containsAll(moduleTimes.keySet())) {
+            return 0.0;
+        }
+
+        final double claimed = Math.min(seconds, freeSeconds);
+        freeSeconds -= claimed;
+        return claimed;
+    }
+}
@@ -19,27 +19,40 @@ import org.apache.commons.lang3.StringUtils;
 import java.io.FileInputStream;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.BiPredicate;
-import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class DependentTestExtractor extends StandardMain {
+    private static final int PROGRESS_INTERVAL = 100;
+
     private final Path results;
 
     private final Path outputPath;
+    // Every folder being extracted keeps its own results and classifier state in memory, so memory use grows with this
+    private final int threads;
+
+    // Different result folders may be for the same subject, which are then extracted one after another
+    private final Map<String, Object> subjectLocks = new ConcurrentHashMap<>();
 
     private DependentTestExtractor(final String[] args) {
         super(args);
 
         results = Paths.get(getArgRequired("results"));
         outputPath = Paths.get(getArg("output").orElse("output"));
+        threads = Integer.parseInt(getArg("threads").orElse("1"));
     }
 
     public static void main(final String[] args) {
@@ -59,24 +72,39 @@ public class DependentTestExtractor extends StandardMain {
         final ListEx<Path> allResultsFolders = new ListEx<>();
         Files.walkFileTree(results, new ResultDirVisitor(allResultsFolders));
 
-        for (int i = 0; i < allResultsFolders.size(); i++) {
-            final Path resultsFolder = allResultsFolders.get(i);
-            System.out.println("[INFO] Extracting results from " + resultsFolder + " (" + i + " of " + allResultsFolders.size() + ")");
-            final Optional<String> subjectNameOpt = readProjectName(resultsFolder);
-
-            final String subjectName;
-            if (subjectNameOpt.isPresent()) {
-                subjectName = subjectNameOpt.get();
-            } else {
-                System.out.println("[WARNING] No subject.properties in " + resultsFolder);
-                subjectName = StringUtils.strip(resultsFolder.getFileName().toString().replace("/", "-"), "-");
-            }
+        final AtomicInteger started = new AtomicInteger(0);
+        final ForkJoinPool pool = new ForkJoinPool(threads);
+
+        try {
+            pool.submit(() -> allResultsFolders.parallelStream().forEach(resultsFolder -> {
+                System.out.println("[INFO] Extracting results from " + resultsFolder + " (" + started.getAndIncrement() + " of " + allResultsFolders.size() + ")");
+
+                try {
+                    extractFolder(resultsFolder);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            })).get();
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private void extractFolder(final Path resultsFolder) throws IOException {
+        final Optional<String> subjectNameOpt = readProjectName(resultsFolder);
+
+        final String subjectName;
+        if (subjectNameOpt.isPresent()) {
+            subjectName = subjectNameOpt.get();
+        } else {
+            System.out.println("[WARNING] No subject.properties in " + resultsFolder);
+            subjectName = StringUtils.strip(resultsFolder.getFileName().toString().replace("/", "-"), "-");
+        }
 
+        synchronized (subjectLocks.computeIfAbsent(subjectName, s -> new Object())) {
             if (!Files.exists(outputFilePath(subjectName))) {
                 save(subjectName, extract(subjectName, resultsFolder));
             }
-
-            System.out.println();
         }
     }
 
@@ -137,28 +165,29 @@ public class DependentTestExtractor extends StandardMain {
     }
 
     public DependentTestList extract(final String subjectName, final Path path) throws IOException {
-        return dependentTests(subjectName, new TestRunParser(path).testRunResults().collect(Collectors.toList()));
+        // Runs are read one at a time as the classifiers need them, and the directory walk is closed at the end
+        try (final Stream<TestRunResult> results = new TestRunParser(path).testRunResults()) {
+            return dependentTests(subjectName, results);
+        }
     }
 
-    private DependentTestList dependentTests(final String subjectName, final List<TestRunResult> results) {
+    private DependentTestList dependentTests(final String subjectName, final Stream<TestRunResult> results) {
         try (final NonorderClassifier nonorderClassifier = new NonorderClassifier();
              final DependentClassifier dependentClassifier = new DependentClassifier(false)) { // TODO: Create a setting to control this
-            for (int i = 0; i < results.size(); i++) {
-                final TestRunResult testRunResult = results.get(i);
-                System.out.printf("\rUpdating classifiers with test run %s of %s (no: %d, od: %d): %s",
-                        i + 1,
-                        results.size(),
-                        nonorderClassifier.nonorderTests().size(),
-                        dependentClassifier.dependentTests(nonorderClassifier.nonorderTests()).size(),
-                        testRunResult.id());
+            final AtomicInteger count = new AtomicInteger(0);
+
+            // forEach rather than an iterator, which would read all the runs of a folder at once
+            results.forEach(testRunResult -> {
                 nonorderClassifier.update(testRunResult);
                 dependentClassifier.update(testRunResult);
-            }
 
-            if (!results.isEmpty()) {
-                System.out.println();
-            }
-            System.out.println("Finished updating classifiers.");
+                if (count.incrementAndGet() % PROGRESS_INTERVAL == 0) {
+                    printProgress(subjectName, count.get(), nonorderClassifier, dependentClassifier);
+                }
+            });
+
+            printProgress(subjectName, count.get(), nonorderClassifier, dependentClassifier);
+            System.out.println("[INFO] " + subjectName + ": Finished updating classifiers.");
 
             final Path outputFile = outputPath.resolve(subjectName + "-not.txt");
             Files.write(outputFile, nonorderClassifier.nonorderTests());
@@ -171,6 +200,16 @@ public class DependentTestExtractor extends StandardMain {
         return DependentTestList.empty();
     }
 
+    private void printProgress(final String subjectName, final int count,
+                               final NonorderClassifier nonorderClassifier,
+                               final DependentClassifier dependentClassifier) {
+        System.out.printf("[INFO] %s: Updated classifiers with %d test runs (no: %d, od: %d)%n",
+                subjectName,
+                count,
+                nonorderClassifier.nonorderTests().size(),
+                dependentClassifier.dependentTests(nonorderClassifier.nonorderTests()).size());
+    }
+
     private List<DependentTest> makeDependentTestList(final NonorderClassifier nonorderClassifier,
                                                       final DependentClassifier dependentClassifier) {
         System.out.println("Making dependent test list.");
@@ -15,12 +15,36 @@ public class DetectionRound {
     private final DependentTestList unfilteredTests;
     private final DependentTestList filteredTests;
     private final double roundTime;
+    // Only set by detectors that track pair coverage (e.g., pairwise)
+    private final PairCoverage pairCoverage;
+    // Only set for shuffled orders, which can be generated again from the seed (see TestShuffler)
+    private final OrderSeed orderSeed;
 
     public DetectionRound(final List<String> testRunIds, final List<DependentTest> unfiltered, final List<DependentTest> filtered, final double roundTime) {
+        this(testRunIds, unfiltered, filtered, roundTime, null);
+    }
+
+    public DetectionRound(final List<String> testRunIds, final List<DependentTest> unfiltered, final List<DependentTest> filtered,
+                          final double roundTime, final PairCoverage pairCoverage) {
+        this(testRunIds, new DependentTestList(unfiltered), new DependentTestList(filtered), roundTime, pairCoverage, null);
+    }
+
+    private DetectionRound(final List<String> testRunIds, final DependentTestList unfilteredTests, final DependentTestList filteredTests,
+                           final double roundTime, final PairCoverage pairCoverage, final OrderSeed orderSeed) {
         this.testRunIds = testRunIds;
-        this.unfilteredTests = new DependentTestList(unfiltered);
-        this.filteredTests = new DependentTestList(filtered);
+        this.unfilteredTests = unfilteredTests;
+        this.filteredTests = filteredTests;
         this.roundTime = roundTime;
+        this.pairCoverage = pairCoverage;
+        this.orderSeed = orderSeed;
+    }
+
+    public DetectionRound withPairCoverage(final PairCoverage pairCoverage) {
+        return new DetectionRound(testRunIds, unfilteredTests, filteredTests, roundTime, pairCoverage, orderSeed);
+    }
+
+    public DetectionRound withOrderSeed(final OrderSeed orderSeed) {
+        return new DetectionRound(testRunIds, unfilteredTests, filteredTests, roundTime, pairCoverage, orderSeed);
     }
 
     public List<String> testRunIds() {
@@ -39,6 +63,14 @@ public class DetectionRound {
         return filteredTests;
     }
 
+    public PairCoverage pairCoverage() {
+        return pairCoverage;
+    }
+
+    public OrderSeed orderSeed() {
+        return orderSeed;
+    }
+
     @Override
     public String toString() {
         return new Gson().toJson(this);
@@ -0,0 +1,34 @@
+package edu.illinois.cs.dt.tools.detection;
+
+import edu.illinois.cs.testrunner.data.results.TestRunResult;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * State shared by all the detectors run on one module in a single invocation (see detector.detector_type), so that
+ * the original order only has to be run once, and a test found to be flaky by one detector is known to be flaky by
+ * the others.
+ */
+public class DetectionSession {
+    private final Set<String> knownFlaky = ConcurrentHashMap.newKeySet();
+    private TestRunResult originalResults = null;
+
+    public Set<String> knownFlaky() {
+        return knownFlaky;
+    }
+
+    /**
+     * The original results for this order, which are only computed the first time they are requested.
+     */
+    public synchronized TestRunResult originalResults(final List<String> originalOrder,
+                                                      final Supplier<TestRunResult> compute) {
+        if (originalResults == null || !originalResults.testOrder().equals(originalOrder)) {
+            originalResults = compute.get();
+        }
+
+        return originalResults;
+    }
+}
@@ -0,0 +1,102 @@
+package edu.illinois.cs.dt.tools.detection;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.reedoei.eunomia.io.files.FileUtil;
+import edu.illinois.cs.dt.tools.utility.BackgroundWriter;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Everything an ExecutingDetector needs to continue after the last completed round. The tests found so far are not
+ * kept here, since they are in the rounds already written.
+ */
+public class DetectorCheckpoint {
+    public static Optional<DetectorCheckpoint> read(final Path path) {
+        BackgroundWriter.flush();
+
+        try {
+            if (Files.exists(path)) {
+                return Optional.ofNullable(new Gson().fromJson(FileUtil.readFile(path), DetectorCheckpoint.class));
+            }
+        } catch (Exception ignored) {}
+
+        return Optional.empty();
+    }
+
+    /**
+     * Removes the checkpoint once detection has finished, so a later run with dt.detector.resume starts a new
+     * detection run instead of continuing the finished one.
+     */
+    public static void delete(final Path path) throws IOException {
+        // A checkpoint may still be waiting to be written
+        BackgroundWriter.flush();
+
+        Files.deleteIfExists(path);
+        Files.deleteIfExists(path.resolveSibling(path.getFileName() + ".tmp"));
+    }
+
+    // The OrderFingerprint of the original order, so we never resume a checkpoint made for a different set of tests
+    private final String testsHash;
+    private final String originalResultId;
+    private final int absoluteRound;
+    private final int roundsSinceFound;
+    private final List<JsonElement> filterStates;
+    private final JsonElement detectorState;
+
+    public DetectorCheckpoint(final String testsHash, final String originalResultId,
+                              final int absoluteRound, final int roundsSinceFound,
+                              final List<JsonElement> filterStates, final JsonElement detectorState) {
+        this.testsHash = testsHash;
+        this.originalResultId = originalResultId;
+        this.absoluteRound = absoluteRound;
+        this.roundsSinceFound = roundsSinceFound;
+        this.filterStates = filterStates;
+        this.detectorState = detectorState;
+    }
+
+    public String testsHash() {
+        return testsHash;
+    }
+
+    public String originalResultId() {
+        return originalResultId;
+    }
+
+    public int absoluteRound() {
+        return absoluteRound;
+    }
+
+    public int roundsSinceFound() {
+        return roundsSinceFound;
+    }
+
+    public List<JsonElement> filterStates() {
+        return filterStates;
+    }
+
+    public JsonElement detectorState() {
+        return detectorState;
+    }
+
+    /**
+     * Writes to a temporary file first, so a detector killed while writing never leaves a broken checkpoint behind.
+     */
+    public void write(final Path path) throws IOException {
+        Files.createDirectories(path.getParent());
+
+        final Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        Files.write(temp, toString().getBytes());
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @Override
+    public String toString() {
+        return new Gson().toJson(this);
+    }
+}
@@ -13,6 +13,7 @@ public class DetectorPathManager extends PathManager {
     public static final Path ORIGINAL_RESULTS_LOG = Paths.get("original-results-ids");
     public static final Path MVN_TEST_LOG = Paths.get("mvn-test.log");
     public static final Path MVN_TEST_TIME_LOG = Paths.get("mvn-test-time.log");
+    public static final Path SEEN_ORDERS = Paths.get("seen-orders");
 
     public static Path detectionResults() {
         return path(DETECTION_RESULTS);
@@ -30,14 +31,40 @@ public class DetectorPathManager extends PathManager {
         }
     }
 
+    /**
+     * Where the rounds of the detector are written, unless it writes them to its {@link RoundJournal}.
+     */
+    public static Path detectionRoundsPath(final String name) {
+        return detectionResults().resolve(name);
+    }
+
     public static Path detectionRoundPath(final String name, final int round) {
-        return pathWithRound(detectionResults().resolve(name), "", round);
+        return pathWithRound(detectionRoundsPath(name), "", round);
     }
 
     public static Path filterPath(final String detectorType, final String filterType, final int absoluteRound) {
         return detectionRoundPath(detectorType + "-" + filterType, absoluteRound);
     }
 
+    /**
+     * Where each detector writes its lists when several detectors run in one session.
+     */
+    public static Path listsPath(final String detectorType) {
+        return detectionResults().resolve("lists").resolve(detectorType);
+    }
+
+    public static Path checkpointPath(final String name) {
+        return detectionResults().resolve("checkpoints").resolve(name + ".json");
+    }
+
+    public static Path confirmationSamplingLog(final String detectorType) {
+        return detectionResults().resolve(detectorType + "-confirmation-sampling.csv");
+    }
+
+    public static Path seenOrdersPath() {
+        return path(SEEN_ORDERS);
+    }
+
     public static Path originalOrderPath() {
         return path(ORIGINAL_ORDER);
     }
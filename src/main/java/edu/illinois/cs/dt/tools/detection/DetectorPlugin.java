@@ -1,11 +1,14 @@
 package edu.illinois.cs.dt.tools.detection;
 
-import com.google.common.collect.Lists;
 import com.opencsv.CSVReader;
 import com.reedoei.eunomia.collections.ListEx;
 import edu.illinois.cs.dt.tools.detection.detectors.Detector;
 import edu.illinois.cs.dt.tools.detection.detectors.DetectorFactory;
 import edu.illinois.cs.dt.tools.runner.InstrumentingSmartRunner;
+import edu.illinois.cs.dt.tools.runner.RunnerPathManager;
+import edu.illinois.cs.dt.tools.runner.data.DependentTest;
+import edu.illinois.cs.dt.tools.runner.data.DependentTestList;
+import edu.illinois.cs.dt.tools.runner.data.DependentTestListWriter;
 import edu.illinois.cs.dt.tools.utility.ErrorLogger;
 import edu.illinois.cs.dt.tools.utility.GetMavenTestOrder;
 import edu.illinois.cs.dt.tools.utility.OperationTime;
@@ -31,19 +34,28 @@ import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Function;
 import java.util.function.Predicate;
+import java.util.stream.Stream;
 
 public class DetectorPlugin extends TestPlugin {
     private final Path outputPath;
     private String coordinates;
     private InstrumentingSmartRunner runner;
-    private static Map<Integer, List<String>> locateTestList = new HashMap<>();
+    private static Map<Integer, List<String>> locateTestList = new ConcurrentHashMap<>();
     // useful for modules with JUnit 4 tests but depend on something in JUnit 5
     private final boolean forceJUnit4 = Configuration.config().getProperty("dt.detector.forceJUnit4", false);
+    private static final boolean useDiscoveryCache = Configuration.config().getProperty("dt.detector.discovery_cache", true);
 
     // Don't delete this.
     // This is actually used, provided you call this class via Maven (used by the testrunner plugin)
@@ -98,106 +110,94 @@ public class DetectorPlugin extends TestPlugin {
         return result;
     }
 
-    private long moduleTimeout(final ProjectWrapper project) throws IOException {
-        final ProjectWrapper parent = getMavenProjectParent(project);
+    private Path moduleTimeCsv(final ProjectWrapper project) {
+        return getMavenProjectParent(project).getBasedir().toPath().resolve("module-test-time.csv");
+    }
 
-        final Path timeCsv = parent.getBasedir().toPath().resolve("module-test-time.csv");
-        Files.copy(timeCsv, DetectorPathManager.detectionResults().resolve("module-test-time.csv"), StandardCopyOption.REPLACE_EXISTING);
-        final ListEx<ListEx<String>> csv = csv(timeCsv);
-
-        // Skip the header row, sum the second column to get the total time
-        final double totalTime =
-                csv.stream()
-                        .mapToDouble(row -> Double.valueOf(row.get(1)))
-                        .sum();
-
-        // Lookup ourselves in the csv to see how long we took
-        final Double moduleTime =
-                csv.stream()
-                        .filter(row -> row.get(0).equals(coordinates))
-                        .findFirst()
-                        .map(row -> Double.valueOf(row.get(1)))
-                        .orElse(0.0);
+    // Module coordinates -> time taken to run the tests of that module
+    private static Map<String, Double> moduleTimes(final Path timeCsv) throws IOException {
+        final Map<String, Double> moduleTimes = new HashMap<>();
 
-        final double mainTimeout = Configuration.config().getProperty("detector.timeout", 6 * 3600.0); // 6 hours
+        if (Files.isReadable(timeCsv)) {
+            for (final ListEx<String> row : csv(timeCsv)) {
+                // Skips the header row, if there is one
+                try {
+                    moduleTimes.put(row.get(0), Double.valueOf(row.get(1)));
+                } catch (NumberFormatException | IndexOutOfBoundsException ignored) {}
+            }
+        }
 
-        double timeout =
-                Math.max(2.0, moduleTime * mainTimeout / totalTime);
+        return moduleTimes;
+    }
 
-        // Can only happen when the totalTime is 0. This means it will occur for all projects.
-        // In this case, just allocate equal time to everyone.
-        if (Double.isNaN(timeout)) {
-            if (csv.size() > 0) {
-                timeout = mainTimeout / csv.size();
-            } else {
-                // This makes no sense, because this means there are no modules
-                throw new IllegalStateException("No modules/test times found in " + timeCsv);
-            }
+    /**
+     * The time this module gets to run the detector. When module-test-time.csv is available, every module of the
+     * project shares one pool of detector.timeout seconds (see {@link BudgetPool}). Otherwise, each module gets the
+     * whole timeout.
+     */
+    private TimeBudget moduleBudget(final ProjectWrapper project) throws IOException {
+        final double mainTimeout = Configuration.config().getProperty("detector.timeout", 6 * 3600.0); // 6 hours
+        final boolean hasTimeout = Configuration.config().properties().getProperty("detector.timeout") != null;
+
+        if (!hasTimeout || mainTimeout == 0) {
+            return TimeBudget.unlimited();
         }
 
-        TestPluginUtil.project.info("TIMEOUT_CALCULATED: Giving " + coordinates + " " + timeout + " seconds to run for " +
-            DetectorFactory.detectorType());
+        final Path timeCsv = moduleTimeCsv(project);
 
-        return (long) timeout; // Allocate time proportionally
-    }
+        if (!Files.isReadable(timeCsv)) {
+            TestPluginUtil.project.info("TIMEOUT_CALCULATED: Cannot read " + timeCsv + ", giving " + coordinates + " " +
+                    mainTimeout + " seconds to run for " + DetectorFactory.detectorType());
+            return new TimeBudget(coordinates, mainTimeout, null);
+        }
 
-    private static double readRealTime(final Path path) throws IOException {
-        for (final String line : Lists.reverse(Files.readAllLines(path))) {
-            final String[] split = line.split(" ");
+        Files.createDirectories(DetectorPathManager.detectionResults());
+        Files.copy(timeCsv, DetectorPathManager.detectionResults().resolve("module-test-time.csv"), StandardCopyOption.REPLACE_EXISTING);
 
-            if (split.length > 1 && split[0].equals("real")) {
-                return Double.parseDouble(split[1]);
-            }
+        final Map<String, Double> moduleTimes = moduleTimes(timeCsv);
+
+        if (moduleTimes.isEmpty()) {
+            // This makes no sense, because this means there are no modules
+            throw new IllegalStateException("No modules/test times found in " + timeCsv);
         }
 
-        return 0.0;
+        final TimeBudget budget =
+                BudgetPool.forDetector(DetectorFactory.detectorType(), mainTimeout, moduleTimes).allocate(coordinates);
+
+        TestPluginUtil.project.info("TIMEOUT_CALCULATED: Giving " + coordinates + " " + budget.remainingSeconds() +
+                " seconds to run for " + DetectorFactory.detectorType());
+
+        return budget;
     }
 
+    /**
+     * The maximum number of rounds to run. When a timeout is given, the time budget decides when to stop, so the
+     * number of rounds is only limited if dt.randomize.rounds is also given.
+     */
     public static int moduleRounds(String coordinates) throws IOException {
         final boolean hasRounds = Configuration.config().properties().getProperty("dt.randomize.rounds") != null;
         final boolean hasTimeout = Configuration.config().properties().getProperty("detector.timeout") != null;
 
         final int roundNum = Configuration.config().getProperty("dt.randomize.rounds", 20);
-
-        final int timeoutRounds;
-        if (hasTimeout) {
-            final Path timeCsv = DetectorPathManager.mvnTestTimeLog();
-
-            if (Files.isReadable(timeCsv)) {
-                final double totalTime = readRealTime(timeCsv);
-                final double mainTimeout = Configuration.config().getProperty("detector.timeout", 6 * 3600.0); // 6 hours
-                if (mainTimeout != 0) {
-                    TestPluginUtil.project.info("TIMEOUT_VALUE: Using a timeout of "
-                                                          + mainTimeout + ", and that the total mvn test time is: " + totalTime);
-
-                    timeoutRounds = (int) (mainTimeout / totalTime);
-                } else {
-                    timeoutRounds = roundNum;
-                    TestPluginUtil.project.info("TIMEOUT_VALUE specified as 0. " +
-                                                          "Ignoring timeout and using number of rounds.");
-                }
-            } else {
-                // Depending on the order in which the developers tell Maven to build modules, some projects like http-request
-                // may not be able to parse the mvn-test-time.log at the base module if other submodules are built first
-                timeoutRounds = roundNum;
-                TestPluginUtil.project.info("TIMEOUT_VALUE specified but cannot " +
-                                                      "read mvn-test-time.log at: " + timeCsv.toString());
-                TestPluginUtil.project.info("Ignoring timeout and using number of rounds.");
-            }
-        } else {
-            TestPluginUtil.project.info("No timeout specified. Using randomize.rounds: " + roundNum);
-            timeoutRounds = roundNum;
-        }
+        final double mainTimeout = Configuration.config().getProperty("detector.timeout", 6 * 3600.0); // 6 hours
 
         final int rounds;
-        if (!hasRounds) {
-            rounds = timeoutRounds;
+        if (hasTimeout && mainTimeout != 0) {
+            TestPluginUtil.project.info("TIMEOUT_VALUE: Using a timeout of " + mainTimeout +
+                    " seconds, rounds will stop when the remaining time runs out.");
+            rounds = hasRounds ? roundNum : Integer.MAX_VALUE;
         } else {
-            rounds = Math.min(timeoutRounds, roundNum);
+            if (hasTimeout) {
+                TestPluginUtil.project.info("TIMEOUT_VALUE specified as 0. Ignoring timeout and using number of rounds.");
+            } else {
+                TestPluginUtil.project.info("No timeout specified. Using randomize.rounds: " + roundNum);
+            }
+            rounds = roundNum;
         }
 
         TestPluginUtil.project.info("ROUNDS_CALCULATED: Giving " + coordinates + " "
-                + rounds + " rounds to run for " + DetectorFactory.detectorType());
+                + (rounds == Integer.MAX_VALUE ? "unlimited" : String.valueOf(rounds))
+                + " rounds to run for " + DetectorFactory.detectorType());
 
         return rounds;
     }
@@ -207,10 +207,62 @@ public class DetectorPlugin extends TestPlugin {
         final ErrorLogger logger = new ErrorLogger(project);
         this.coordinates = logger.coordinates();
 
-        logger.runAndLogError(() -> detectorExecute(logger, project, moduleRounds(coordinates)));
+        Map<String, Double> moduleTimes = new HashMap<>();
+        try {
+            moduleTimes = moduleTimes(moduleTimeCsv(project));
+        } catch (IOException e) {
+            TestPluginUtil.project.info("Cannot read " + moduleTimeCsv(project) + ": " + e.getMessage());
+        }
+
+        // Without the list of modules, we cannot tell when the last module has been submitted, so run in the foreground
+        if (ModuleCoordinator.enabled() && !moduleTimes.isEmpty()) {
+            final DetectorPlugin plugin = new DetectorPlugin(outputPath, runner);
+            plugin.coordinates = coordinates;
+            ModuleCoordinator.submit(coordinates, project, () ->
+                    plugin.detectModule(logger, project).ifPresent(t -> {
+                        throw new IllegalStateException("Detection failed for " + plugin.coordinates, t);
+                    }));
+
+            // Fails the build if detection failed for any module
+            if (ModuleCoordinator.submittedAll(moduleTimes.keySet())) {
+                TestPluginUtil.project.info("All modules submitted, waiting for detection to finish.");
+                ModuleCoordinator.awaitAll();
+            }
+        } else {
+            detectModule(logger, project);
+        }
     }
 
-    private Void detectorExecute(final ErrorLogger logger, final ProjectWrapper project, final int rounds) throws IOException {
+    /**
+     * @return What made detection fail, if anything (it has already been written to the error file)
+     */
+    private Optional<Throwable> detectModule(final ErrorLogger logger, final ProjectWrapper project) {
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        logger.runAndLogError(() -> {
+            try {
+                final TimeBudget budget = moduleBudget(project);
+
+                try {
+                    final Void result = detectorExecute(logger, project, moduleRounds(coordinates), budget);
+                    // Files rewritten during detection leave behind blobs that nothing refers to
+                    RunnerPathManager.collectBlobs();
+                    return result;
+                } finally {
+                    budget.finish();
+                    RunnerPathManager.releaseResults();
+                }
+            } catch (Exception | Error e) {
+                failure.set(e);
+                throw e;
+            }
+        });
+
+        return Optional.ofNullable(failure.get());
+    }
+
+    private Void detectorExecute(final ErrorLogger logger, final ProjectWrapper project, final int rounds,
+                                 final TimeBudget budget) throws IOException {
         Files.deleteIfExists(DetectorPathManager.errorPath());
         Files.createDirectories(DetectorPathManager.cachePath());
         Files.createDirectories(DetectorPathManager.detectionResults());
@@ -266,14 +318,21 @@ public class DetectorPlugin extends TestPlugin {
         if (this.runner == null) {
             this.runner = InstrumentingSmartRunner.fromRunner(runners.get(0));
         }
-        final List<String> tests = getOriginalOrder(project, this.runner.framework());
+        final List<String> tests = getOriginalOrder(project, this.runner.framework(), this.runner.classpath(), false);
 
         if (!tests.isEmpty()) {
             Files.createDirectories(outputPath);
             Files.write(DetectorPathManager.originalOrderPath(), String.join(System.lineSeparator(), tests).getBytes());
-            final Detector detector = DetectorFactory.makeDetector(this.runner, tests, rounds);
-            TestPluginUtil.project.info("Created dependent test detector (" + detector.getClass() + ").");
-            detector.writeTo(outputPath);
+
+            final List<String> detectorTypes = DetectorFactory.detectorTypes();
+            if (detectorTypes.size() == 1) {
+                final Detector detector = DetectorFactory.makeDetector(detectorTypes.get(0), this.runner, tests, rounds,
+                        budget, new DetectionSession());
+                TestPluginUtil.project.info("Created dependent test detector (" + detector.getClass() + ").");
+                detector.writeTo(outputPath);
+            } else {
+                runSession(detectorTypes, tests, rounds, budget);
+            }
         } else {
             String errorMsg = "Module has no tests, not running detector.";
             TestPluginUtil.project.info(errorMsg);
@@ -283,15 +342,61 @@ public class DetectorPlugin extends TestPlugin {
         return null;
     }
 
+    /**
+     * Runs each detector type in turn, sharing the runner, tests, original results and known flaky tests.
+     * Each detector writes its lists to its own directory, and the combined lists are written to the usual place.
+     */
+    private void runSession(final List<String> detectorTypes, final List<String> tests, final int rounds,
+                            final TimeBudget budget) throws IOException {
+        final DetectionSession session = new DetectionSession();
+        // Only the names, so the combined lists can be written without keeping every test in memory
+        final Set<String> allTests = new HashSet<>();
+        final int found;
+
+        try (final DependentTestListWriter writer = new DependentTestListWriter(
+                outputPath.resolve(DetectorPathManager.FLAKY_LIST_PATH), outputPath.resolve("list.txt"))) {
+            for (int i = 0; i < detectorTypes.size(); i++) {
+                final String detectorType = detectorTypes.get(i);
+                final TimeBudget typeBudget = budget.share(detectorType, detectorTypes.size() - i);
+
+                try {
+                    final Detector detector = DetectorFactory.makeDetector(detectorType, this.runner, tests, rounds, typeBudget, session);
+                    TestPluginUtil.project.info("Created dependent test detector (" + detector.getClass() + ") for " + detectorType + ".");
+
+                    final Path listsPath = DetectorPathManager.listsPath(detectorType);
+                    Files.createDirectories(listsPath);
+                    detector.writeTo(listsPath);
+
+                    try (final Stream<DependentTest> dependentTests = DependentTestList.stream(listsPath.resolve(DetectorPathManager.FLAKY_LIST_PATH))) {
+                        final Iterator<DependentTest> iterator = dependentTests.iterator();
+                        while (iterator.hasNext()) {
+                            final DependentTest dependentTest = iterator.next();
+                            if (allTests.add(dependentTest.name())) {
+                                writer.add(dependentTest);
+                            }
+                        }
+                    }
+                } finally {
+                    typeBudget.finish();
+                }
+            }
+
+            found = writer.size();
+        }
+
+        TestPluginUtil.project.info("Found " + found + " tests with " + String.join(", ", detectorTypes) + ".");
+    }
+
     private static List<String> locateTests(ProjectWrapper project,
-					    TestFramework testFramework) {
-	int id = Objects.hash(project, testFramework);
+					    TestFramework testFramework,
+					    String classpath) {
+	int id = Objects.hash(project, testFramework, classpath);
 	if (!locateTestList.containsKey(id)) {
 	    TestPluginUtil.project.info("Locating tests...");
 	    try {
 		locateTestList.put(id,
 				   OperationTime.runOperation(() -> {
-					   return new ArrayList<String>(JavaConverters.bufferAsJavaList(TestLocator.tests(project, testFramework).toBuffer()));
+					   return discoverTests(project, testFramework, classpath);
 				       }, (tests, time) -> {
 					   TestPluginUtil.project.info("Located " + tests.size() + " tests. Time taken: " + time.elapsedSeconds() + " seconds");
 					   return tests;
@@ -303,6 +408,23 @@ public class DetectorPlugin extends TestPlugin {
 	return locateTestList.get(id);
     }
 
+    private static List<String> discoverTests(ProjectWrapper project,
+					      TestFramework testFramework,
+					      String classpath) throws Exception {
+	final Callable<List<String>> locate = () ->
+	    new ArrayList<String>(JavaConverters.bufferAsJavaList(TestLocator.tests(project, testFramework).toBuffer()));
+
+	final Path testClasses = Paths.get(project.getBuildDirectory()).resolve("test-classes");
+	if (!useDiscoveryCache || !Files.isDirectory(testClasses)) {
+	    return locate.call();
+	}
+
+	final String frameworkName = testFramework.getClass().getSimpleName().replace("$", "");
+	final Path cacheDir = DetectorPathManager.cachePath().resolve("test-discovery");
+	return new TestDiscoveryCache(cacheDir, testClasses, frameworkName, testFramework.getDelimiter(), classpath)
+	    .tests(locate);
+    }
+
     public static List<String> getOriginalOrder(
             final ProjectWrapper project,
             TestFramework testFramework) throws IOException {
@@ -313,6 +435,14 @@ public class DetectorPlugin extends TestPlugin {
             final ProjectWrapper project,
             TestFramework testFramework,
             boolean ignoreExisting) throws IOException {
+        return getOriginalOrder(project, testFramework, "", ignoreExisting);
+    }
+
+    public static List<String> getOriginalOrder(
+            final ProjectWrapper project,
+            TestFramework testFramework,
+            String classpath,
+            boolean ignoreExisting) throws IOException {
         if (!Files.exists(DetectorPathManager.originalOrderPath()) || ignoreExisting) {
             TestPluginUtil.project.info("Getting original order by parsing logs. ignoreExisting set to: " + ignoreExisting);
 
@@ -335,11 +465,11 @@ public class DetectorPlugin extends TestPlugin {
 
                     return tests;
                 } else {
-                    return locateTests(project, testFramework);
+                    return locateTests(project, testFramework, classpath);
                 }
             } catch (Exception ignored) {}
 
-            return locateTests(project, testFramework);
+            return locateTests(project, testFramework, classpath);
         } else {
             return Files.readAllLines(DetectorPathManager.originalOrderPath());
         }
@@ -353,7 +483,7 @@ public class DetectorPlugin extends TestPlugin {
         // no JUnit 4 tests. In such case, we need to remove the JUnit 4 runner.
         List<Runner> aliveRunners = new ArrayList<>();
         for (Runner runner : runners) {
-            if (locateTests(project, runner.framework()).size() > 0) {
+            if (locateTests(project, runner.framework(), runner.classpath()).size() > 0) {
                 aliveRunners.add(runner);
             }
         }
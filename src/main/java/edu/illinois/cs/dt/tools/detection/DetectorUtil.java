@@ -1,7 +1,10 @@
 package edu.illinois.cs.dt.tools.detection;
 
+import com.google.common.collect.Lists;
+import edu.illinois.cs.dt.tools.runner.RunnerPathManager;
 import edu.illinois.cs.dt.tools.runner.data.DependentTest;
 import edu.illinois.cs.dt.tools.runner.data.TestRun;
+import edu.illinois.cs.dt.tools.utility.BackgroundWriter;
 import edu.illinois.cs.testrunner.configuration.Configuration;
 import edu.illinois.cs.testrunner.data.results.Result;
 import edu.illinois.cs.testrunner.data.results.TestResult;
@@ -11,14 +14,21 @@ import edu.illinois.cs.testrunner.runner.Runner;
 
 import java.io.IOException;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.stream.Stream;
 
 public class DetectorUtil {
     public static TestRunResult originalResults(final List<String> originalOrder, final Runner runner) {
+        return originalResults(originalOrder, runner, TimeBudget.unlimited());
+    }
+
+    public static TestRunResult originalResults(final List<String> originalOrder, final Runner runner,
+                                                final TimeBudget budget) {
         final int originalOrderTries = Configuration.config().getProperty("dt.detector.original_order.retry_count", 3);
         final boolean allMustPass = Configuration.config().getProperty("dt.detector.original_order.all_must_pass", true);
 
@@ -29,12 +39,18 @@ public class DetectorUtil {
         boolean allPassing = false;
         // Try to run it three times, to see if we can get everything to pass (except for ignored tests)
         for (int i = 0; i < originalOrderTries; i++) {
+            final long startNanos = System.nanoTime();
             origResult = runner.runList(originalOrder).get();
+            budget.record(TimeBudget.Phase.ORIGINAL, (System.nanoTime() - startNanos) / 1E9);
 
-            try {
-                Files.write(DetectorPathManager.originalResultsLog(), (origResult.id() + "\n").getBytes(),
-                        Files.exists(DetectorPathManager.originalResultsLog()) ? StandardOpenOption.APPEND : StandardOpenOption.CREATE);
-            } catch (IOException ignored) {}
+            final Path originalResultsLog = DetectorPathManager.originalResultsLog();
+            final String id = origResult.id();
+            BackgroundWriter.submit(() -> {
+                try {
+                    Files.write(originalResultsLog, (id + "\n").getBytes(),
+                            Files.exists(originalResultsLog) ? StandardOpenOption.APPEND : StandardOpenOption.CREATE);
+                } catch (IOException ignored) {}
+            });
 
             if (allPass(origResult)) {
                 allPassing = true;
@@ -53,6 +69,31 @@ public class DetectorUtil {
         return origResult;
     }
 
+    /**
+     * The most recent original order run logged in original-results-ids, if it ran exactly this order and could be
+     * used as the original results (i.e., passed, if dt.detector.original_order.all_must_pass is set).
+     */
+    public static Optional<TestRunResult> previousOriginalResults(final List<String> originalOrder) {
+        final boolean allMustPass = Configuration.config().getProperty("dt.detector.original_order.all_must_pass", true);
+
+        BackgroundWriter.flush();
+
+        try {
+            if (Files.exists(DetectorPathManager.originalResultsLog())) {
+                for (final String id : Lists.reverse(Files.readAllLines(DetectorPathManager.originalResultsLog()))) {
+                    final Optional<TestRunResult> result = RunnerPathManager.resultFor(id.trim()).findFirst();
+
+                    if (result.isPresent() && result.get().testOrder().equals(originalOrder) &&
+                            (!allMustPass || allPass(result.get()))) {
+                        return result;
+                    }
+                }
+            }
+        } catch (IOException ignored) {}
+
+        return Optional.empty();
+    }
+
     public static boolean allPass(final TestRunResult testRunResult) {
         return testRunResult.results().values().stream()
                 // Ignored tests will show up as SKIPPED, but that's fine because surefire would've skipped them too
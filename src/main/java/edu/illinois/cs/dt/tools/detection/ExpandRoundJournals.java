@@ -0,0 +1,52 @@
+package edu.illinois.cs.dt.tools.detection;
+
+import com.reedoei.eunomia.util.StandardMain;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Writes the detection-results/name/roundN.json files for every round journal (see {@link RoundJournal}) under a
+ * directory, for tools that read the rounds from those files.
+ */
+public class ExpandRoundJournals extends StandardMain {
+    private final Path results;
+
+    private ExpandRoundJournals(final String[] args) {
+        super(args);
+
+        results = Paths.get(getArgRequired("results"));
+    }
+
+    public static void main(final String[] args) {
+        try {
+            new ExpandRoundJournals(args).run();
+        } catch (Exception e) {
+            e.printStackTrace();
+
+            System.exit(1);
+        }
+
+        System.exit(0);
+    }
+
+    @Override
+    protected void run() throws Exception {
+        final List<Path> journals;
+        try (final Stream<Path> paths = Files.walk(results)) {
+            journals = paths.filter(p -> p.getFileName().toString().endsWith(RoundJournal.SUFFIX)).collect(Collectors.toList());
+        }
+
+        for (final Path journal : journals) {
+            final String fileName = journal.getFileName().toString();
+            final Path roundsDir = journal.resolveSibling(fileName.substring(0, fileName.length() - RoundJournal.SUFFIX.length()));
+
+            final int count = RoundJournal.expand(roundsDir);
+            System.out.println("[INFO] Wrote " + count + " rounds from " + journal + " to " + roundsDir);
+        }
+    }
+}
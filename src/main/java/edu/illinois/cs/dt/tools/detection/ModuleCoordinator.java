@@ -0,0 +1,112 @@
+package edu.illinois.cs.dt.tools.detection;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import edu.illinois.cs.dt.tools.utility.PathManager;
+import edu.illinois.cs.testrunner.configuration.Configuration;
+import edu.illinois.cs.testrunner.coreplugin.TestPluginUtil;
+import edu.illinois.cs.testrunner.util.ProjectWrapper;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs the detector on several modules at once (dt.detector.parallel.modules).
+ *
+ * Maven hands us one module at a time, so each module is only submitted here, and the build moves on to the next
+ * module right away. The module that completes the list of modules in module-test-time.csv then waits for all of
+ * them to finish, and fails the build if any of them failed. If that module is never reached (e.g., the build fails
+ * first), the modules still running are cut off when Maven exits.
+ */
+public class ModuleCoordinator {
+    private static final int PARALLEL_MODULES = Configuration.config().getProperty("dt.detector.parallel.modules", 1);
+
+    private static ExecutorService executor = null;
+    private static final Map<String, Future<?>> submitted = new LinkedHashMap<>();
+
+    public static boolean enabled() {
+        return PARALLEL_MODULES > 1;
+    }
+
+    public static synchronized void submit(final String coordinates, final ProjectWrapper project, final Runnable task) {
+        if (executor == null) {
+            executor = Executors.newFixedThreadPool(PARALLEL_MODULES,
+                    new ThreadFactoryBuilder().setNameFormat("module-detector-%d").setDaemon(true).build());
+            Runtime.getRuntime().addShutdownHook(new Thread(ModuleCoordinator::warnUnfinished));
+        }
+
+        TestPluginUtil.project.info("Running detection for " + coordinates + " in the background.");
+
+        submitted.put(coordinates, executor.submit(() -> {
+            PathManager.setProject(project);
+
+            try {
+                task.run();
+            } finally {
+                PathManager.setProject(null);
+            }
+        }));
+    }
+
+    public static synchronized boolean submittedAll(final Collection<String> modules) {
+        return submitted.keySet().containsAll(modules);
+    }
+
+    /**
+     * Waits for every submitted module to finish.
+     *
+     * @throws IllegalStateException If detection failed for any module, after all of them have finished
+     */
+    public static void awaitAll() {
+        final List<Map.Entry<String, Future<?>>> pending;
+        synchronized (ModuleCoordinator.class) {
+            pending = new ArrayList<>(submitted.entrySet());
+        }
+
+        final Map<String, Throwable> failures = new LinkedHashMap<>();
+
+        for (final Map.Entry<String, Future<?>> entry : pending) {
+            try {
+                entry.getValue().get();
+            } catch (ExecutionException e) {
+                System.out.println("[ERROR] Detection failed for " + entry.getKey());
+                failures.put(entry.getKey(), e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for detection to finish", e);
+            }
+        }
+
+        synchronized (ModuleCoordinator.class) {
+            pending.forEach(entry -> submitted.remove(entry.getKey()));
+
+            if (executor != null) {
+                executor.shutdown();
+                executor = null;
+            }
+        }
+
+        if (!failures.isEmpty()) {
+            final List<Throwable> causes = new ArrayList<>(failures.values());
+            final IllegalStateException exception =
+                    new IllegalStateException("Detection failed for " + String.join(", ", failures.keySet()),
+                            causes.get(0));
+            causes.subList(1, causes.size()).forEach(exception::addSuppressed);
+            throw exception;
+        }
+    }
+
+    private static synchronized void warnUnfinished() {
+        submitted.forEach((coordinates, future) -> {
+            if (!future.isDone()) {
+                System.out.println("[WARNING] Detection for " + coordinates + " did not finish before Maven exited.");
+            }
+        });
+    }
+}
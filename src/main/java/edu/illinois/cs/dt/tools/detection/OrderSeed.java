@@ -0,0 +1,78 @@
+package edu.illinois.cs.dt.tools.detection;
+
+import edu.illinois.cs.dt.tools.utility.OrderFingerprint;
+import edu.illinois.cs.dt.tools.utility.OrderHasher;
+import edu.illinois.cs.testrunner.configuration.Configuration;
+
+import java.security.SecureRandom;
+import java.util.Random;
+
+/**
+ * The 64-bit seed a shuffled order was generated from (see {@link TestShuffler}).
+ *
+ * The seed, together with the original order of the tests, is enough to generate the same order again, so round
+ * files only store the seed and never need the results of the round to replay it.
+ * Every seed is derived from one seed per invocation (dt.seed). Setting dt.seed only reproduces the orders of an
+ * earlier invocation if the module had run the same orders before it, since orders already in the {@link SeenOrderStore}
+ * are skipped by trying the next seed. The seed actually used is stored in the round, so replaying a round is exact.
+ */
+public class OrderSeed {
+    private static final long GOLDEN = 0x9E3779B97F4A7C15L;
+
+    private static final long MASTER_SEED = masterSeed();
+
+    private static long masterSeed() {
+        final String configured = Configuration.config().getProperty("dt.seed", "");
+
+        if (!configured.isEmpty()) {
+            return Long.decode(configured);
+        }
+
+        final long seed = new SecureRandom().nextLong();
+        System.out.println("[INFO] Using seed " + seed + " (set dt.seed=" + seed + " to generate the same orders again)");
+        return seed;
+    }
+
+    /**
+     * The seed for the given attempt at generating the order for a round.
+     */
+    public static OrderSeed forRound(final int round, final int attempt, final boolean shuffleMethods) {
+        final long seed = OrderHasher.fmix64(OrderHasher.fmix64(MASTER_SEED + GOLDEN * (round + 1)) + attempt);
+        return new OrderSeed(seed, shuffleMethods);
+    }
+
+    /**
+     * A generator for shufflers that keep their own state between rounds, so can't regenerate single rounds anyway.
+     */
+    public static Random sessionRandom(final OrderFingerprint originalOrder) {
+        return new OrderSeed(MASTER_SEED, true).random(originalOrder);
+    }
+
+    private final long seed;
+    // Whether the order shuffles the methods within each class, or only the classes (random-class)
+    private final boolean shuffleMethods;
+
+    public OrderSeed(final long seed, final boolean shuffleMethods) {
+        this.seed = seed;
+        this.shuffleMethods = shuffleMethods;
+    }
+
+    public long seed() {
+        return seed;
+    }
+
+    public boolean shuffleMethods() {
+        return shuffleMethods;
+    }
+
+    public OrderSeed withShuffleMethods(final boolean shuffleMethods) {
+        return new OrderSeed(seed, shuffleMethods);
+    }
+
+    /**
+     * Mixes in the original order, so the same seed gives unrelated orders for different test suites.
+     */
+    public Random random(final OrderFingerprint originalOrder) {
+        return new Random(OrderHasher.fmix64(seed ^ originalOrder.high()) ^ originalOrder.low());
+    }
+}
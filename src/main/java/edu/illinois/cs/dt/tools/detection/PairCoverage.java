@@ -0,0 +1,46 @@
+package edu.illinois.cs.dt.tools.detection;
+
+/**
+ * How many of the possible ordered (before, after) pairs have been run right next to each other so far, for
+ * pairs of classes, and for pairs of test methods in the same class.
+ */
+public class PairCoverage {
+    private final long coveredClassPairs;
+    private final long classPairs;
+    private final long coveredMethodPairs;
+    private final long methodPairs;
+
+    public PairCoverage(final long coveredClassPairs, final long classPairs,
+                        final long coveredMethodPairs, final long methodPairs) {
+        this.coveredClassPairs = coveredClassPairs;
+        this.classPairs = classPairs;
+        this.coveredMethodPairs = coveredMethodPairs;
+        this.methodPairs = methodPairs;
+    }
+
+    public long coveredClassPairs() {
+        return coveredClassPairs;
+    }
+
+    public long classPairs() {
+        return classPairs;
+    }
+
+    public long coveredMethodPairs() {
+        return coveredMethodPairs;
+    }
+
+    public long methodPairs() {
+        return methodPairs;
+    }
+
+    public boolean complete() {
+        return coveredClassPairs == classPairs && coveredMethodPairs == methodPairs;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d/%d class pairs, %d/%d method pairs",
+                coveredClassPairs, classPairs, coveredMethodPairs, methodPairs);
+    }
+}
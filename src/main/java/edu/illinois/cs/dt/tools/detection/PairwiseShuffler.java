@@ -0,0 +1,211 @@
+package edu.illinois.cs.dt.tools.detection;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import edu.illinois.cs.dt.tools.utility.OrderFingerprint;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates orders that run as many not yet covered (before, after) pairs next to each other as possible, both for
+ * classes and for the test methods within each class.
+ *
+ * The first orders are the rows of a Williams design (a row-complete Latin square): for an even number of items n,
+ * its n rows together put every ordered pair next to each other exactly once, which is the fewest orders that can.
+ * For an odd n, the n + 1 rows for n + 1 items are used with the extra item removed. Removing it never separates two
+ * other items that were next to each other, so these rows still cover every ordered pair (some of them twice).
+ * After that, orders are built greedily from the pairs that are still not covered, and once every pair has been
+ * covered, orders are random.
+ */
+public class PairwiseShuffler implements Resumable {
+    private final TestIndex index;
+
+    // Pair (a, b) is at a * n + b, where methods are numbered by their index in their class
+    private final BitSet classPairs = new BitSet();
+    private final BitSet[] methodPairs;
+
+    private final Random random;
+    private int row = 0;
+
+    public PairwiseShuffler(final List<String> tests) {
+        this.index = new TestIndex(tests);
+        this.random = OrderSeed.sessionRandom(OrderFingerprint.of(tests));
+        this.methodPairs = new BitSet[index.classCount()];
+
+        for (int c = 0; c < methodPairs.length; c++) {
+            methodPairs[c] = new BitSet();
+        }
+    }
+
+    public List<String> nextOrder() {
+        final int[] order = new int[index.size()];
+        int pos = 0;
+
+        for (final int c : orderFor(index.classCount(), classPairs)) {
+            for (final int m : orderFor(index.classSize(c), methodPairs[c])) {
+                order[pos++] = index.test(c, m);
+            }
+        }
+
+        row++;
+        observe(order);
+
+        return index.names(order);
+    }
+
+    private int[] orderFor(final int n, final BitSet covered) {
+        if (row < williamsRows(n)) {
+            return williamsRow(n, row);
+        } else if (covered.cardinality() < (long) n * (n - 1)) {
+            return greedy(n, covered);
+        } else {
+            return shuffled(n);
+        }
+    }
+
+    /**
+     * Marks every adjacent pair in the order as covered.
+     */
+    public void observe(final List<String> order) {
+        final int[] ids = new int[order.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = index.testId(order.get(i));
+        }
+
+        observe(ids);
+    }
+
+    // Tests that are not in the index (-1) are ignored
+    private void observe(final int[] order) {
+        for (int i = 1; i < order.length; i++) {
+            final int before = order[i - 1];
+            final int after = order[i];
+
+            if (before < 0 || after < 0) {
+                continue;
+            }
+
+            final int beforeClass = index.classOf(before);
+            final int afterClass = index.classOf(after);
+
+            if (beforeClass == afterClass) {
+                methodPairs[beforeClass].set(index.indexInClass(before) * index.classSize(beforeClass) + index.indexInClass(after));
+            } else {
+                classPairs.set(beforeClass * index.classCount() + afterClass);
+            }
+        }
+    }
+
+    public PairCoverage coverage() {
+        final long n = index.classCount();
+
+        long coveredMethodPairs = 0;
+        long totalMethodPairs = 0;
+        for (int c = 0; c < methodPairs.length; c++) {
+            final long m = index.classSize(c);
+            coveredMethodPairs += methodPairs[c].cardinality();
+            totalMethodPairs += m * (m - 1);
+        }
+
+        return new PairCoverage(classPairs.cardinality(), n * (n - 1), coveredMethodPairs, totalMethodPairs);
+    }
+
+    private static int williamsRows(final int n) {
+        return n <= 1 ? 1 : (n % 2 == 0 ? n : n + 1);
+    }
+
+    // Row r of the Williams design for n items: 0, 1, n-1, 2, n-2, ..., each shifted by r (mod n)
+    static int[] williamsRow(final int n, final int r) {
+        if (n <= 1) {
+            return n == 1 ? new int[] { 0 } : new int[0];
+        }
+
+        final int size = n % 2 == 0 ? n : n + 1;
+
+        final int[] order = new int[n];
+        int k = 0;
+        for (int j = 0; j < size; j++) {
+            final int base = j == 0 ? 0 : (j % 2 == 1 ? (j + 1) / 2 : size - j / 2);
+            final int item = (base + r) % size;
+
+            // Drop the extra item when n is odd
+            if (item < n) {
+                order[k++] = item;
+            }
+        }
+
+        return order;
+    }
+
+    // Always goes next to an item it has not covered a pair with yet, if there is one
+    private int[] greedy(final int n, final BitSet covered) {
+        final boolean[] used = new boolean[n];
+        final int[] order = new int[n];
+
+        order[0] = mostUncovered(n, covered);
+        used[order[0]] = true;
+
+        for (int i = 1; i < n; i++) {
+            final int prev = order[i - 1];
+            final int offset = random.nextInt(n);
+
+            int next = -1;
+            int fallback = -1;
+            for (int k = 0; k < n && next == -1; k++) {
+                final int candidate = (offset + k) % n;
+
+                if (!used[candidate]) {
+                    if (!covered.get(prev * n + candidate)) {
+                        next = candidate;
+                    } else if (fallback == -1) {
+                        fallback = candidate;
+                    }
+                }
+            }
+
+            order[i] = next != -1 ? next : fallback;
+            used[order[i]] = true;
+        }
+
+        return order;
+    }
+
+    private int mostUncovered(final int n, final BitSet covered) {
+        int best = 0;
+        int bestCount = -1;
+
+        for (int a = 0; a < n; a++) {
+            final int uncovered = (n - 1) - covered.get(a * n, (a + 1) * n).cardinality();
+
+            if (uncovered > bestCount) {
+                best = a;
+                bestCount = uncovered;
+            }
+        }
+
+        return best;
+    }
+
+    private int[] shuffled(final int n) {
+        final int[] order = TestIndex.identity(n);
+        TestIndex.shuffle(order, 0, n, random);
+        return order;
+    }
+
+    /**
+     * Only the row is saved: the covered pairs are rebuilt from the orders that were run (see {@link #observe(List)}).
+     */
+    @Override
+    public JsonElement saveState() {
+        final JsonObject state = new JsonObject();
+        state.addProperty("row", row);
+        return state;
+    }
+
+    @Override
+    public void restoreState(final JsonElement state) {
+        row = state.getAsJsonObject().get("row").getAsInt();
+    }
+}
@@ -5,6 +5,7 @@ import com.reedoei.eunomia.collections.ListEx;
 import com.reedoei.eunomia.io.files.FileUtil;
 import com.reedoei.eunomia.util.StandardMain;
 import edu.illinois.cs.dt.tools.analysis.ResultDirVisitor;
+import edu.illinois.cs.dt.tools.runner.ResultStore;
 import edu.illinois.cs.dt.tools.runner.RunnerPathManager;
 import edu.illinois.cs.dt.tools.runner.data.DependentTest;
 import edu.illinois.cs.testrunner.data.results.Result;
@@ -83,6 +84,8 @@ public class RebuildDetectionRounds extends StandardMain {
             rebuildRounds(originalOrder, originalResults, resultsFolder, "reverse", knownFlaky);
             rebuildRounds(originalOrder, originalResults, resultsFolder, "reverse-class", knownFlaky);
             rebuildRounds(originalOrder, originalResults, resultsFolder, "smart-shuffle", knownFlaky);
+
+            ResultStore.release(RunnerPathManager.storePath(testRuns));
         }
     }
 
@@ -148,8 +151,7 @@ public class RebuildDetectionRounds extends StandardMain {
     }
 
     private TestRunResult readTestRunResult(final Path resultsPath, final String id) throws IOException {
-        final String contents = FileUtil.readFile(resultsPath.resolve(RunnerPathManager.TEST_RUNS).resolve("results").resolve(id));
-
-        return new Gson().fromJson(contents, TestRunResult.class);
+        return RunnerPathManager.resultFor(resultsPath.resolve(RunnerPathManager.TEST_RUNS), id).findFirst()
+                .orElseThrow(() -> new IOException("No result for test run " + id + " in " + resultsPath));
     }
 }
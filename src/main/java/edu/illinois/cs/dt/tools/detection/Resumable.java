@@ -0,0 +1,13 @@
+package edu.illinois.cs.dt.tools.detection;
+
+import com.google.gson.JsonElement;
+
+/**
+ * State that is saved in a {@link DetectorCheckpoint} after every round, so an interrupted detector can pick up
+ * where it left off (see dt.detector.resume).
+ */
+public interface Resumable {
+    JsonElement saveState();
+
+    void restoreState(final JsonElement state);
+}
@@ -0,0 +1,304 @@
+package edu.illinois.cs.dt.tools.detection;
+
+import com.google.gson.Gson;
+import com.reedoei.eunomia.io.files.FileUtil;
+import edu.illinois.cs.dt.tools.runner.data.DependentTest;
+import edu.illinois.cs.dt.tools.utility.BackgroundWriter;
+import edu.illinois.cs.testrunner.configuration.Configuration;
+import org.apache.commons.io.FileUtils;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+/**
+ * The rounds of a detector in one append-only file (detection-results/name.journal), used instead of
+ * detection-results/name/roundN.json when dt.detector.round_journal is set.
+ *
+ * Each line is one round, as JSON, including the dependent tests it found. The journal is synced to disk every
+ * dt.detector.round_journal.sync_rounds rounds, so a crash loses at most that many rounds (one by default). A line
+ * that was cut off by a crash is ignored, and removed before the next round is appended.
+ *
+ * {@link #readRound(Path, int)} and {@link #readRounds(Path)} read rounds from either form (a new detection run removes
+ * both, see {@link #clear(Path)}), and
+ * {@link #expand(Path)} (or {@link ExpandRoundJournals}) writes the roundN.json files for tools that need them.
+ */
+public class RoundJournal implements Closeable {
+    public static final String SUFFIX = ".journal";
+
+    private static final int SYNC_ROUNDS = Configuration.config().getProperty("dt.detector.round_journal.sync_rounds", 1);
+    private static final String ROUND_PREFIX = "{\"round\":";
+
+    private static final Map<Path, RoundJournal> journals = new HashMap<>();
+
+    public static synchronized RoundJournal forPath(final Path path) {
+        return journals.computeIfAbsent(path.toAbsolutePath(), RoundJournal::new);
+    }
+
+    /**
+     * @param roundsDir The directory the rounds would be written to otherwise (i.e., detection-results/name)
+     */
+    public static Path journalPath(final Path roundsDir) {
+        return roundsDir.resolveSibling(roundsDir.getFileName() + SUFFIX);
+    }
+
+    public static Optional<DetectionRound> readRound(final Path roundsDir, final int round) {
+        BackgroundWriter.flush();
+
+        final Path roundPath = DetectorPathManager.pathWithRound(roundsDir, "", round);
+
+        try {
+            if (Files.exists(roundPath)) {
+                return Optional.ofNullable(new Gson().fromJson(FileUtil.readFile(roundPath), DetectionRound.class));
+            } else if (Files.exists(journalPath(roundsDir))) {
+                return forPath(journalPath(roundsDir)).read(round);
+            }
+        } catch (IOException ignored) {}
+
+        return Optional.empty();
+    }
+
+    /**
+     * Every round, starting from round 0, one at a time as the stream is consumed.
+     */
+    public static Stream<DetectionRound> readRounds(final Path roundsDir) throws IOException {
+        BackgroundWriter.flush();
+
+        if (!Files.exists(DetectorPathManager.pathWithRound(roundsDir, "", 0)) && Files.exists(journalPath(roundsDir))) {
+            return forPath(journalPath(roundsDir)).rounds();
+        }
+
+        final List<Path> roundPaths = new ArrayList<>();
+        for (int i = 0; Files.exists(DetectorPathManager.pathWithRound(roundsDir, "", i)); i++) {
+            roundPaths.add(DetectorPathManager.pathWithRound(roundsDir, "", i));
+        }
+
+        return roundPaths.stream().map(p -> {
+            try {
+                return new Gson().fromJson(FileUtil.readFile(p), DetectionRound.class);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    /**
+     * The dependent tests accepted in the first rounds rounds, in the order they were found.
+     */
+    public static Stream<DependentTest> dependentTests(final Path roundsDir, final int rounds) throws IOException {
+        return readRounds(roundsDir).limit(rounds).flatMap(round -> round.filteredTests().dts().stream());
+    }
+
+    /**
+     * Removes the rounds of the given directory in either form, to start a new detection run. Otherwise, rounds left
+     * over from an earlier run (e.g., roundN.json from before dt.detector.round_journal was set) would be read as if
+     * they belonged to the new one.
+     */
+    public static void clear(final Path roundsDir) throws IOException {
+        BackgroundWriter.flush();
+
+        forPath(journalPath(roundsDir)).clear();
+        FileUtils.deleteDirectory(roundsDir.toFile());
+    }
+
+    /**
+     * Writes roundN.json for every round in the journal of the given directory.
+     *
+     * @return The number of rounds written
+     */
+    public static int expand(final Path roundsDir) throws IOException {
+        BackgroundWriter.flush();
+
+        final RoundJournal journal = forPath(journalPath(roundsDir));
+        Files.createDirectories(roundsDir);
+
+        int count = 0;
+        for (final Map.Entry<Integer, Long> entry : journal.offsets().entrySet()) {
+            final DetectionRound round = journal.readEntry(entry.getValue()).detectionRound;
+            Files.write(DetectorPathManager.pathWithRound(roundsDir, "", entry.getKey()), round.toString().getBytes());
+            count++;
+        }
+
+        return count;
+    }
+
+    private final Path path;
+    // Where each round starts. A round that was run again (e.g., after resuming) replaces the earlier one.
+    private final TreeMap<Integer, Long> offsets = new TreeMap<>();
+    // Everything before this is complete lines that are in offsets
+    private long scanned = 0;
+
+    private FileChannel out = null;
+    private int unsynced = 0;
+
+    private RoundJournal(final Path path) {
+        this.path = path;
+    }
+
+    public synchronized void append(final int round, final DetectionRound detectionRound) throws IOException {
+        if (out == null) {
+            scan();
+            Files.createDirectories(path.getParent());
+            out = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            // Drop a line that was cut off by a crash
+            out.truncate(scanned);
+            out.position(scanned);
+        }
+
+        final byte[] line = (new Gson().toJson(new Entry(round, detectionRound)) + "\n").getBytes(StandardCharsets.UTF_8);
+        final ByteBuffer buffer = ByteBuffer.wrap(line);
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+
+        offsets.put(round, scanned);
+        scanned += line.length;
+
+        if (++unsynced >= SYNC_ROUNDS) {
+            sync();
+        }
+    }
+
+    public synchronized void sync() throws IOException {
+        if (out != null && unsynced > 0) {
+            out.force(false);
+            unsynced = 0;
+        }
+    }
+
+    /**
+     * Removes every round, to start a new detection run.
+     */
+    public synchronized void clear() throws IOException {
+        close();
+        Files.deleteIfExists(path);
+        offsets.clear();
+        scanned = 0;
+    }
+
+    public synchronized Optional<DetectionRound> read(final int round) throws IOException {
+        final Long offset = offsets().get(round);
+        return offset == null ? Optional.empty() : Optional.ofNullable(readEntry(offset).detectionRound);
+    }
+
+    public Stream<DetectionRound> rounds() throws IOException {
+        final List<Long> roundOffsets = new ArrayList<>(offsets().values());
+
+        return roundOffsets.stream().map(offset -> {
+            try {
+                return readEntry(offset).detectionRound;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (out != null) {
+            sync();
+            out.close();
+            out = null;
+        }
+    }
+
+    private synchronized Map<Integer, Long> offsets() throws IOException {
+        scan();
+        return new TreeMap<>(offsets);
+    }
+
+    // Indexes the lines written since the last scan (e.g., by another process)
+    private void scan() throws IOException {
+        if (out != null || !Files.exists(path)) {
+            return;
+        }
+
+        try (final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() <= scanned) {
+                return;
+            }
+
+            final InputStream in = new BufferedInputStream(Channels.newInputStream(channel.position(scanned)), 64 * 1024);
+            final StringBuilder prefix = new StringBuilder();
+            long position = scanned;
+            long lineStart = scanned;
+            int b;
+
+            while ((b = in.read()) >= 0) {
+                position++;
+
+                if (b == '\n') {
+                    final Optional<Integer> round = roundOf(prefix.toString());
+                    if (round.isPresent()) {
+                        offsets.put(round.get(), lineStart);
+                    }
+
+                    prefix.setLength(0);
+                    lineStart = position;
+                    scanned = position;
+                } else if (prefix.length() < 32) {
+                    prefix.append((char) b);
+                }
+            }
+        }
+    }
+
+    private static Optional<Integer> roundOf(final String linePrefix) {
+        if (!linePrefix.startsWith(ROUND_PREFIX)) {
+            return Optional.empty();
+        }
+
+        int end = ROUND_PREFIX.length();
+        while (end < linePrefix.length() && Character.isDigit(linePrefix.charAt(end))) {
+            end++;
+        }
+
+        try {
+            return Optional.of(Integer.parseInt(linePrefix.substring(ROUND_PREFIX.length(), end)));
+        } catch (NumberFormatException e) {
+            return Optional.empty();
+        }
+    }
+
+    private Entry readEntry(final long offset) throws IOException {
+        try (final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            final InputStream in = new BufferedInputStream(Channels.newInputStream(channel.position(offset)), 64 * 1024);
+            final ByteArrayOutputStream line = new ByteArrayOutputStream();
+
+            int b;
+            while ((b = in.read()) >= 0 && b != '\n') {
+                line.write(b);
+            }
+
+            return new Gson().fromJson(new String(line.toByteArray(), StandardCharsets.UTF_8), Entry.class);
+        }
+    }
+
+    private static class Entry {
+        // Must be the first field, so scan can find it without parsing the whole line
+        private final int round;
+        private final DetectionRound detectionRound;
+
+        private Entry(final int round, final DetectionRound detectionRound) {
+            this.round = round;
+            this.detectionRound = detectionRound;
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package edu.illinois.cs.dt.tools.detection;
+
+import edu.illinois.cs.dt.tools.utility.OrderFingerprint;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Fingerprints of every order run on a module so far, by any detector type and any invocation.
+ *
+ * Stored in .dtfixingtools/seen-orders as 16 bytes per order, appended as orders are run.
+ *
+ * Since shufflers skip the orders in here, the orders generated from a dt.seed also depend on which orders this module
+ * has already run. Delete the file to generate the same orders as a run with the same seed on a fresh module.
+ */
+public class SeenOrderStore {
+    private static final Map<Path, SeenOrderStore> stores = new HashMap<>();
+
+    public static synchronized SeenOrderStore forModule() {
+        return stores.computeIfAbsent(DetectorPathManager.seenOrdersPath().toAbsolutePath(), SeenOrderStore::new);
+    }
+
+    private final Path path;
+    private final Set<OrderFingerprint> seen = new HashSet<>();
+    private boolean loaded = false;
+
+    private SeenOrderStore(final Path path) {
+        this.path = path;
+    }
+
+    private void load() {
+        if (loaded) {
+            return;
+        }
+
+        loaded = true;
+
+        try {
+            if (Files.exists(path)) {
+                final ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path));
+
+                // Ignore a partial entry at the end, if we were killed while writing it
+                while (buffer.remaining() >= OrderFingerprint.BYTES) {
+                    seen.add(OrderFingerprint.read(buffer));
+                }
+
+                // Drop it too, or every entry appended after it would be read at the wrong position
+                if (buffer.hasRemaining()) {
+                    try (final FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                        channel.truncate(buffer.position());
+                    }
+                }
+            }
+        } catch (IOException e) {
+            System.out.println("[WARNING] Could not read seen orders from " + path + ": " + e.getMessage());
+        }
+    }
+
+    public synchronized boolean contains(final List<String> order) {
+        return contains(OrderFingerprint.of(order));
+    }
+
+    public synchronized boolean contains(final OrderFingerprint fingerprint) {
+        load();
+        return seen.contains(fingerprint);
+    }
+
+    /**
+     * @return true if the order had not been seen before
+     */
+    public synchronized boolean add(final List<String> order) {
+        return add(OrderFingerprint.of(order));
+    }
+
+    public synchronized boolean add(final OrderFingerprint fingerprint) {
+        load();
+
+        if (!seen.add(fingerprint)) {
+            return false;
+        }
+
+        final ByteBuffer buffer = ByteBuffer.allocate(OrderFingerprint.BYTES);
+        fingerprint.write(buffer);
+        buffer.flip();
+
+        try {
+            Files.createDirectories(path.getParent());
+
+            try (final FileChannel channel = FileChannel.open(path,
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+        } catch (IOException e) {
+            System.out.println("[WARNING] Could not save seen order to " + path + ": " + e.getMessage());
+        }
+
+        return true;
+    }
+
+    public synchronized int size() {
+        load();
+        return seen.size();
+    }
+}
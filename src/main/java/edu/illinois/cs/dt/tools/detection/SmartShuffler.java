@@ -1,102 +1,163 @@
 package edu.illinois.cs.dt.tools.detection;
 
-import com.reedoei.eunomia.collections.RandomList;
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.reflect.TypeToken;
+import edu.illinois.cs.dt.tools.utility.OrderFingerprint;
 
+import java.lang.reflect.Type;
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
-import java.util.Optional;
-import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.Random;
 
-public class SmartShuffler {
-    private final RandomList<String> toComeFirst;
-    private final RandomList<String> toComeLast;
+public class SmartShuffler implements Resumable {
+    private static final int MAX_SHUFFLE_ATTEMPTS = 20;
 
-    private final HashMap<String, RandomList<String>> classToMethods;
-    private final HashMap<String, String> methodToClass;
+    private final SeenOrderStore seenOrders = SeenOrderStore.forModule();
 
-    private final RandomList<String> tests;
+    private final TestIndex index;
+    private final Random random;
 
-    public SmartShuffler(final List<String> tests) {
-        this.tests = new RandomList<>(tests);
-
-        toComeFirst = new RandomList<>(tests);
-        toComeLast = new RandomList<>(tests);
-
-        classToMethods = new HashMap<>();
-        methodToClass = new HashMap<>();
-
-        for (final String test : tests) {
-            final String className = TestShuffler.className(test);
+    // Tests that have not been run first (or last) yet
+    private final TestPool toComeFirst;
+    private final TestPool toComeLast;
 
-            if (!classToMethods.containsKey(className)) {
-                classToMethods.put(className, new RandomList<>());
-            }
-
-            classToMethods.get(className).add(test);
-            methodToClass.put(test, className);
-        }
-    }
+    public SmartShuffler(final List<String> tests) {
+        this.index = new TestIndex(tests);
+        this.random = OrderSeed.sessionRandom(OrderFingerprint.of(tests));
 
-    private RandomList<String> testSiblings(final String testName) {
-        return classToMethods.get(methodToClass.get(testName));
+        toComeFirst = new TestPool(index.size());
+        toComeLast = new TestPool(index.size());
     }
 
-    @SafeVarargs
-    private final void addTestMethods(final List<String> order, final Optional<String>... excluding) {
-        // Add all classes other than the last one
-        for (final RandomList<String> methods : classToMethods.values()) {
-            final boolean foundExcludedTest =
-                    Arrays.stream(excluding).anyMatch(t -> t.isPresent() && methods.contains(t.get()));
+    public List<String> nextOrder() {
+        final int first = toComeFirst.take(random, -1);
+        final int last = toComeLast.take(random, first);
 
-            if (!foundExcludedTest) {
-                order.addAll(methods.shuffled());
-            }
+        // Try a few different shuffles of the remaining tests if we get an order that was already run
+        int[] order = orderWith(first, last);
+        for (int attempt = 1; attempt < MAX_SHUFFLE_ATTEMPTS && !seenOrders.add(index.fingerprint(order)); attempt++) {
+            order = orderWith(first, last);
         }
+        seenOrders.add(index.fingerprint(order));
+
+        return index.names(order);
     }
 
-    public List<String> nextOrder() {
-        final Optional<String> first = sample(toComeFirst);
-        final Optional<String> last = first.isPresent() ? sample(toComeLast, first.get()) : sample(toComeLast);
+    private int[] orderWith(final int first, final int last) {
+        final int[] order = new int[index.size()];
 
-        first.ifPresent(toComeFirst::remove);
-        last.ifPresent(toComeLast::remove);
+        final int firstClass = first >= 0 ? index.classOf(first) : -1;
+        final int lastClass = last >= 0 ? index.classOf(last) : -1;
 
-        final List<String> order = new ArrayList<>();
+        int pos = 0;
 
         // Add the first class, make sure the first test actually comes first
-        if (first.isPresent()) {
-            order.addAll(testSiblings(first.get()).shuffled());
-            order.remove(first.get());
-            order.add(0, first.get());
+        if (first >= 0) {
+            final int start = pos;
+            pos = index.copyClass(firstClass, order, pos);
+            TestIndex.swap(order, start, start + index.indexInClass(first));
+
+            // If the last test is in the same class, it is taken out of the class here and added at the very end
+            if (firstClass == lastClass) {
+                for (int i = start + 1; i < pos; i++) {
+                    if (order[i] == last) {
+                        TestIndex.swap(order, i, pos - 1);
+                        pos--;
+                        break;
+                    }
+                }
+            }
+
+            TestIndex.shuffle(order, start + 1, pos, random);
         }
 
-        addTestMethods(order, first, last);
+        // Add all classes other than the first and last ones
+        for (int c = 0; c < index.classCount(); c++) {
+            if (c != firstClass && c != lastClass) {
+                final int start = pos;
+                pos = index.copyClass(c, order, pos);
+                TestIndex.shuffle(order, start, pos, random);
+            }
+        }
 
         // Add all tests from the last class, make sure the last test actually comes last
-        if (last.isPresent()) {
-            order.addAll(testSiblings(last.get()).shuffled());
-            order.remove(last.get());
-            order.add(last.get());
+        if (last >= 0 && lastClass != firstClass) {
+            final int start = pos;
+            pos = index.copyClass(lastClass, order, pos);
+            TestIndex.swap(order, start + index.indexInClass(last), pos - 1);
+            TestIndex.shuffle(order, start, pos - 1, random);
+        } else if (last >= 0) {
+            order[pos++] = last;
         }
 
         return order;
     }
 
-    private Optional<String> sample(final RandomList<String> from, final String... excluding) {
-        return sample(from, Arrays.stream(excluding).collect(Collectors.toSet()));
+    @Override
+    public JsonElement saveState() {
+        final JsonObject state = new JsonObject();
+        state.add("toComeFirst", new Gson().toJsonTree(toComeFirst.names()));
+        state.add("toComeLast", new Gson().toJsonTree(toComeLast.names()));
+        return state;
+    }
+
+    @Override
+    public void restoreState(final JsonElement state) {
+        final Type listType = new TypeToken<List<String>>(){}.getType();
+
+        toComeFirst.restore(new Gson().<List<String>>fromJson(state.getAsJsonObject().get("toComeFirst"), listType));
+        toComeLast.restore(new Gson().<List<String>>fromJson(state.getAsJsonObject().get("toComeLast"), listType));
     }
 
-    private Optional<String> sample(final RandomList<String> from, final Set<String> excluding) {
-        for (final String s : from.shuffled()) {
-            if (!excluding.contains(s)) {
-                return Optional.ofNullable(s);
+    /**
+     * Test ids that can be taken out at random in constant time.
+     */
+    private class TestPool {
+        private final int[] ids;
+        private int size;
+
+        private TestPool(final int n) {
+            this.ids = TestIndex.identity(n);
+            this.size = n;
+        }
+
+        /**
+         * Removes and returns a random test other than excluding, or -1 if there is none.
+         */
+        private int take(final Random random, final int excluding) {
+            if (size == 0 || (size == 1 && ids[0] == excluding)) {
+                return -1;
             }
+
+            int i = random.nextInt(size);
+            if (ids[i] == excluding) {
+                i = (i + 1 + random.nextInt(size - 1)) % size;
+            }
+
+            final int id = ids[i];
+            ids[i] = ids[--size];
+            ids[size] = id;
+            return id;
         }
 
-        return Optional.empty();
+        private List<String> names() {
+            final List<String> names = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                names.add(index.name(ids[i]));
+            }
+            return names;
+        }
+
+        private void restore(final List<String> names) {
+            size = 0;
+            for (final String name : names) {
+                final int id = index.testId(name);
+                if (id >= 0 && size < ids.length) {
+                    ids[size++] = id;
+                }
+            }
+        }
     }
 }
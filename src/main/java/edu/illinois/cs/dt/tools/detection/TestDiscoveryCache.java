@@ -0,0 +1,192 @@
+package edu.illinois.cs.dt.tools.detection;
+
+import com.google.gson.Gson;
+import com.reedoei.eunomia.io.files.FileUtil;
+import edu.illinois.cs.dt.tools.utility.OrderFingerprint;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Callable;
+
+/**
+ * The tests found in a module, saved in .dtfixingtools/test-discovery, so later runs do not have to locate them again.
+ *
+ * There is one cache file per framework and classpath, which is keyed by every class file in the test classes
+ * directory (its path, size and last modified time). When nothing changed, the saved tests are used as they are. When
+ * class files were only removed, the tests of those classes are removed from the saved tests. Otherwise, all the tests
+ * are located again: a new or changed class can also change the tests of other classes (e.g., through inheritance),
+ * and TestLocator can only locate the tests of the whole module, not of a few classes, so there is no cheaper way to
+ * locate just the tests that may have changed.
+ */
+public class TestDiscoveryCache {
+    private final Path cacheFile;
+    private final Path testClasses;
+    private final String framework;
+    private final String delimiter;
+    private final String classpathHash;
+
+    /**
+     * @param cacheDir Where to save the tests, in a file for the framework and classpath, so runs that locate the tests
+     *                 with different classpaths (e.g., an unknown one) do not replace each other's saved tests
+     */
+    public TestDiscoveryCache(final Path cacheDir, final Path testClasses, final String framework,
+                              final String delimiter, final String classpath) {
+        this.testClasses = testClasses;
+        this.framework = framework;
+        this.delimiter = delimiter;
+        this.classpathHash = OrderFingerprint.of(Collections.singletonList(classpath == null ? "" : classpath)).toString();
+        this.cacheFile = cacheDir.resolve(framework + "-" + classpathHash + ".json");
+    }
+
+    public List<String> tests(final Callable<List<String>> locate) throws Exception {
+        final Map<String, ClassFile> classFiles = classFiles();
+        final Optional<Entry> cached = read();
+
+        if (cached.isPresent() && framework.equals(cached.get().framework) && classpathHash.equals(cached.get().classpathHash)) {
+            final Entry entry = cached.get();
+
+            final Set<String> removed = new HashSet<>();
+            boolean changed = false;
+            for (final Map.Entry<String, ClassFile> file : entry.classFiles.entrySet()) {
+                final ClassFile current = classFiles.get(file.getKey());
+                if (current == null) {
+                    removed.add(file.getKey());
+                } else if (!current.equals(file.getValue())) {
+                    changed = true;
+                }
+            }
+            changed |= !entry.classFiles.keySet().containsAll(classFiles.keySet());
+
+            if (!changed) {
+                final List<String> tests = new ArrayList<>();
+                for (final String test : entry.tests) {
+                    if (!removed.contains(classFileOf(test))) {
+                        tests.add(test);
+                    }
+                }
+
+                System.out.println("[INFO] Using " + tests.size() + " tests from " + cacheFile
+                        + (removed.isEmpty() ? "" : " (" + removed.size() + " class files removed)") + ".");
+
+                if (!removed.isEmpty()) {
+                    write(new Entry(framework, classpathHash, classFiles, tests));
+                }
+
+                return tests;
+            }
+        }
+
+        final List<String> tests = locate.call();
+        write(new Entry(framework, classpathHash, classFiles, tests));
+        return tests;
+    }
+
+    // The class file a test is in (relative to the test classes), e.g., a/b/C.class for a.b.C.test or a.b.C.test[1.5]
+    private String classFileOf(final String test) {
+        // The parameters of a test can contain the delimiter, but class and method names cannot contain brackets
+        int nameEnd = test.length();
+        for (final char bracket : new char[] {'[', '('}) {
+            final int index = test.indexOf(bracket);
+            if (index >= 0) {
+                nameEnd = Math.min(nameEnd, index);
+            }
+        }
+
+        final int end = test.lastIndexOf(delimiter, nameEnd - delimiter.length());
+        final String className = end < 0 ? test : test.substring(0, end);
+        return className.replace('.', '/') + ".class";
+    }
+
+    private Map<String, ClassFile> classFiles() throws IOException {
+        final Map<String, ClassFile> classFiles = new HashMap<>();
+
+        if (!Files.isDirectory(testClasses)) {
+            return classFiles;
+        }
+
+        Files.walkFileTree(testClasses, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) {
+                if (file.getFileName().toString().endsWith(".class")) {
+                    final String relative = testClasses.relativize(file).toString().replace('\\', '/');
+                    classFiles.put(relative, new ClassFile(attrs.size(), attrs.lastModifiedTime().toMillis()));
+                }
+
+                return FileVisitResult.CONTINUE;
+            }
+        });
+
+        return classFiles;
+    }
+
+    private Optional<Entry> read() {
+        try {
+            if (Files.exists(cacheFile)) {
+                return Optional.ofNullable(new Gson().fromJson(FileUtil.readFile(cacheFile), Entry.class));
+            }
+        } catch (Exception ignored) {}
+
+        return Optional.empty();
+    }
+
+    private void write(final Entry entry) {
+        try {
+            Files.createDirectories(cacheFile.getParent());
+            Files.write(cacheFile, new Gson().toJson(entry).getBytes());
+        } catch (IOException e) {
+            System.out.println("[WARNING] Could not write test discovery cache " + cacheFile + ": " + e);
+        }
+    }
+
+    private static class Entry {
+        private final String framework;
+        private final String classpathHash;
+        private final Map<String, ClassFile> classFiles;
+        private final List<String> tests;
+
+        private Entry(final String framework, final String classpathHash, final Map<String, ClassFile> classFiles,
+                      final List<String> tests) {
+            this.framework = framework;
+            this.classpathHash = classpathHash;
+            this.classFiles = classFiles;
+            this.tests = tests;
+        }
+    }
+
+    private static class ClassFile {
+        private final long size;
+        private final long lastModified;
+
+        private ClassFile(final long size, final long lastModified) {
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (!(o instanceof ClassFile)) {
+                return false;
+            }
+
+            final ClassFile other = (ClassFile) o;
+            return size == other.size && lastModified == other.lastModified;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(size) * 31 + Long.hashCode(lastModified);
+        }
+    }
+}
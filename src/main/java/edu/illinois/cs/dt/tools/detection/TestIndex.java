@@ -0,0 +1,178 @@
+package edu.illinois.cs.dt.tools.detection;
+
+import edu.illinois.cs.dt.tools.utility.OrderFingerprint;
+import edu.illinois.cs.dt.tools.utility.OrderHasher;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Maps the tests (and their classes) of an order to dense int ids, so shufflers can build orders as int arrays and
+ * only turn them back into test names when they are handed to the runner.
+ *
+ * Test ids are positions in the original order, and class ids are in the order each class first appears.
+ */
+public class TestIndex {
+    private final String[] tests;
+    private final String[] classes;
+    private final int[] classOf;
+    private final int[] indexInClass;
+    private final int[][] classTests;
+    // See OrderHasher, hashed once so fingerprinting an order does not have to look at the names again
+    private final long[] nameHashA;
+    private final long[] nameHashB;
+
+    private final Map<String, Integer> testIds;
+    private final Map<String, Integer> classIds;
+
+    public TestIndex(final List<String> tests) {
+        this.tests = tests.toArray(new String[0]);
+        this.classOf = new int[this.tests.length];
+        this.indexInClass = new int[this.tests.length];
+        this.nameHashA = new long[this.tests.length];
+        this.nameHashB = new long[this.tests.length];
+        this.testIds = new HashMap<>(this.tests.length * 2);
+        this.classIds = new HashMap<>();
+
+        final List<String> classNames = new ArrayList<>();
+        final List<int[]> classTestIds = new ArrayList<>();
+        final List<Integer> classSizes = new ArrayList<>();
+
+        for (int t = 0; t < this.tests.length; t++) {
+            final String className = TestShuffler.className(this.tests[t]);
+
+            Integer c = classIds.get(className);
+            if (c == null) {
+                c = classNames.size();
+                classIds.put(className, c);
+                classNames.add(className);
+                classTestIds.add(new int[4]);
+                classSizes.add(0);
+            }
+
+            final int size = classSizes.get(c);
+            int[] ids = classTestIds.get(c);
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+                classTestIds.set(c, ids);
+            }
+            ids[size] = t;
+            classSizes.set(c, size + 1);
+
+            classOf[t] = c;
+            indexInClass[t] = size;
+            testIds.put(this.tests[t], t);
+            nameHashA[t] = OrderHasher.nameHashA(this.tests[t]);
+            nameHashB[t] = OrderHasher.nameHashB(this.tests[t]);
+        }
+
+        this.classes = classNames.toArray(new String[0]);
+        this.classTests = new int[classes.length][];
+        for (int c = 0; c < classes.length; c++) {
+            classTests[c] = Arrays.copyOf(classTestIds.get(c), classSizes.get(c));
+        }
+    }
+
+    public int size() {
+        return tests.length;
+    }
+
+    public int classCount() {
+        return classes.length;
+    }
+
+    public String name(final int test) {
+        return tests[test];
+    }
+
+    public String className(final int cls) {
+        return classes[cls];
+    }
+
+    public int classOf(final int test) {
+        return classOf[test];
+    }
+
+    public int indexInClass(final int test) {
+        return indexInClass[test];
+    }
+
+    public int classSize(final int cls) {
+        return classTests[cls].length;
+    }
+
+    /**
+     * Copies the tests of the class (in their original order) into order, starting at from.
+     * @return The position after the last test copied
+     */
+    public int copyClass(final int cls, final int[] order, final int from) {
+        System.arraycopy(classTests[cls], 0, order, from, classTests[cls].length);
+        return from + classTests[cls].length;
+    }
+
+    public int test(final int cls, final int i) {
+        return classTests[cls][i];
+    }
+
+    /**
+     * @return The id of the test, or -1 if it is not in this index
+     */
+    public int testId(final String test) {
+        final Integer id = testIds.get(test);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * @return The id of the class, or -1 if it is not in this index
+     */
+    public int classId(final String className) {
+        final Integer id = classIds.get(className);
+        return id == null ? -1 : id;
+    }
+
+    public List<String> names(final int[] order) {
+        final String[] names = new String[order.length];
+        for (int i = 0; i < order.length; i++) {
+            names[i] = tests[order[i]];
+        }
+        return Arrays.asList(names);
+    }
+
+    public OrderFingerprint fingerprint(final int[] order) {
+        final OrderHasher hasher = new OrderHasher();
+        for (final int test : order) {
+            hasher.append(nameHashA[test], nameHashB[test]);
+        }
+        return hasher.snapshot();
+    }
+
+    public static int[] identity(final int n) {
+        final int[] ids = new int[n];
+        for (int i = 0; i < n; i++) {
+            ids[i] = i;
+        }
+        return ids;
+    }
+
+    /**
+     * Fisher-Yates shuffle of ids[from, to).
+     */
+    public static void shuffle(final int[] ids, final int from, final int to, final Random random) {
+        for (int i = to - 1; i > from; i--) {
+            final int j = from + random.nextInt(i - from + 1);
+            final int tmp = ids[i];
+            ids[i] = ids[j];
+            ids[j] = tmp;
+        }
+    }
+
+    public static void swap(final int[] ids, final int i, final int j) {
+        final int tmp = ids[i];
+        ids[i] = ids[j];
+        ids[j] = tmp;
+    }
+}
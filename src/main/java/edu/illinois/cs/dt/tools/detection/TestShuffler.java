@@ -2,52 +2,48 @@ package edu.illinois.cs.dt.tools.detection;
 
 import com.google.common.collect.Lists;
 import com.google.common.math.IntMath;
-import com.google.gson.Gson;
-import com.reedoei.eunomia.collections.ListUtil;
-import com.reedoei.eunomia.collections.RandomList;
-import com.reedoei.eunomia.io.files.FileUtil;
 import edu.illinois.cs.dt.tools.runner.RunnerPathManager;
-import edu.illinois.cs.dt.tools.utility.MD5;
+import edu.illinois.cs.dt.tools.utility.OrderFingerprint;
 import edu.illinois.cs.testrunner.configuration.Configuration;
 import edu.illinois.cs.testrunner.data.results.TestRunResult;
 
-import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Iterator;
 import java.util.List;
-import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
 
 public class TestShuffler {
     public static String className(final String testName) {
         return testName.substring(0, testName.lastIndexOf('.'));
     }
 
-    private final HashMap<String, List<String>> classToMethods;
+    private static final int MAX_SHUFFLE_ATTEMPTS = 20;
 
     private final String type;
     private final List<String> tests;
-    private final Set<String> alreadySeenOrders = new HashSet<>();
+    private final TestIndex index;
+    private final OrderFingerprint originalOrder;
+    // The seed of each round's order, until the detector stores it in the round (see seedFor)
+    private final Map<Integer, OrderSeed> seeds = new HashMap<>();
+    // Shared with every other shuffler (and detector type) for this module, and saved across invocations
+    private final SeenOrderStore seenOrders = SeenOrderStore.forModule();
 
     public TestShuffler(final String type, final int rounds, final List<String> tests) {
         this.type = type;
         this.tests = tests;
+        this.index = new TestIndex(tests);
+        this.originalOrder = OrderFingerprint.of(tests);
+    }
 
-        classToMethods = new HashMap<>();
-
-        for (final String test : tests) {
-            final String className = className(test);
-
-            if (!classToMethods.containsKey(className)) {
-                classToMethods.put(className, new ArrayList<>());
-            }
-
-            classToMethods.get(className).add(test);
-        }
+    /**
+     * The seed the order for the given round was generated from, if it was generated from a seed (reversed orders
+     * and orders replayed from old round files without a seed are not).
+     */
+    public OrderSeed seedFor(final int i) {
+        return seeds.remove(i);
     }
 
     private String historicalType() {
@@ -66,48 +62,52 @@ public class TestShuffler {
             return shuffledOrder(i);
         } else {
             List<String> revPassingOrder = Lists.reverse(lastRandomResult.testOrder());
-            String md5 = MD5.md5(String.join("", revPassingOrder));
-            if (alreadySeenOrders.contains(md5)) {
-                return shuffledOrder(i);
-            } else {
-                alreadySeenOrders.add(md5);
+            if (seenOrders.add(revPassingOrder)) {
+                seeds.remove(i);
                 return revPassingOrder;
+            } else {
+                return shuffledOrder(i);
             }
         }
     }
 
     public List<String> shuffledOrder(final int i) {
+        seeds.remove(i);
+
         if (type.startsWith("reverse")) {
             return reverseOrder();
         }
 
-        final Path historicalRun = DetectorPathManager.detectionRoundPath(historicalType(), i);
+        // look up whether a previous execution of the plugin generated orders for this round already
+        // if so, then run the same revealed order as before
+        final Optional<DetectionRound> historical = RoundJournal.readRound(DetectorPathManager.detectionRoundsPath(historicalType()), i);
 
-        try {
-            // look up whether a previous execution of the plugin generated orders for this round already
-            // if so, then run the same revealed order as before
-            if (Files.exists(historicalRun)) {
-                return generateHistorical(readHistorical(historicalRun));
+        if (historical.isPresent()) {
+            if (historical.get().orderSeed() != null) {
+                return generateHistorical(i, historical.get().orderSeed());
+            } else {
+                return generateHistorical(readHistorical(historical.get()));
             }
-        } catch (IOException ignored) {}
+        }
 
-        return generateShuffled();
+        return generateShuffled(i);
     }
 
     private List<String> reverseOrder() {
         if ("reverse-class".equals(type)) {
-            final List<String> reversedClassNames =
-                    Lists.reverse(ListUtil.map(TestShuffler::className, tests).stream().distinct().collect(Collectors.toList()));
+            final int[] classOrder = TestIndex.identity(index.classCount());
+            for (int i = 0, j = classOrder.length - 1; i < j; i++, j--) {
+                TestIndex.swap(classOrder, i, j);
+            }
 
-            return reversedClassNames.stream().flatMap(c -> classToMethods.get(c).stream()).collect(Collectors.toList());
+            return index.names(withClassOrder(classOrder, null));
         } else {
             return Lists.reverse(tests);
         }
     }
 
-    private List<String> readHistorical(final Path historicalRun) throws IOException {
-        final DetectionRound detectionRound = new Gson().fromJson(FileUtil.readFile(historicalRun), DetectionRound.class);
-
+    // Round files written before seeds were stored only have the results of the round to get the order from
+    private List<String> readHistorical(final DetectionRound detectionRound) {
         return detectionRound.testRunIds().stream()
                 .flatMap(RunnerPathManager::resultFor)
                 .findFirst()
@@ -115,55 +115,110 @@ public class TestShuffler {
                 .orElse(new ArrayList<>());
     }
 
+    /**
+     * Generates the historical order again from its seed. The class order only depends on the seed, so random-class
+     * can keep just the classes of a random order by not shuffling the methods.
+     */
+    private List<String> generateHistorical(final int i, final OrderSeed historicalSeed) {
+        final OrderSeed seed = "random-class".equals(type) ? historicalSeed.withShuffleMethods(false) : historicalSeed;
+        final int[] order = shuffle(seed);
+
+        seenOrders.add(index.fingerprint(order));
+        seeds.put(i, seed);
+
+        return index.names(order);
+    }
+
     private List<String> generateHistorical(final List<String> historicalOrder) {
         if ("random-class".equals(type)) {
-            return generateWithClassOrder(classOrder(historicalOrder));
+            final int[] order = withClassOrder(classOrder(historicalOrder), null);
+            seenOrders.add(index.fingerprint(order));
+            return index.names(order);
         } else {
-            alreadySeenOrders.add(MD5.md5(String.join("", historicalOrder)));
+            seenOrders.add(historicalOrder);
             return historicalOrder;
         }
     }
 
-    private List<String> generateShuffled() {
-        return generateWithClassOrder(new RandomList<>(classToMethods.keySet()).shuffled());
+    private List<String> generateShuffled(final int i) {
+        // random-class only shuffles classes, the standard "random" type will shuffle both
+        final boolean shuffleMethods = !"random-class".equals(type);
+
+        // Retry a few times if we happen to generate an order that was already run (likely with few classes),
+        // but give up eventually, because there may not be any new orders left
+        OrderSeed seed = OrderSeed.forRound(i, 0, shuffleMethods);
+        int[] order = shuffle(seed);
+        for (int attempt = 1; attempt < MAX_SHUFFLE_ATTEMPTS && !seenOrders.add(index.fingerprint(order)); attempt++) {
+            seed = OrderSeed.forRound(i, attempt, shuffleMethods);
+            order = shuffle(seed);
+        }
+        seenOrders.add(index.fingerprint(order));
+        seeds.put(i, seed);
+
+        return index.names(order);
     }
 
-    private List<String> generateWithClassOrder(final List<String> classOrder) {
-        final List<String> fullTestOrder = new ArrayList<>();
+    private int[] shuffle(final OrderSeed seed) {
+        final Random random = seed.random(originalOrder);
 
-        for (final String className : classOrder) {
-            // random-class only shuffles classes, not methods
-            if ("random-class".equals(type)) {
-                fullTestOrder.addAll(classToMethods.get(className));
-            } else {
-                // the standard "random" type, will shuffle both
-                fullTestOrder.addAll(new RandomList<>(classToMethods.get(className)).shuffled());
-            }
+        final int[] classOrder = TestIndex.identity(index.classCount());
+        TestIndex.shuffle(classOrder, 0, classOrder.length, random);
+
+        return withClassOrder(classOrder, seed.shuffleMethods() ? random : null);
+    }
+
+    // Shuffles the methods of each class with the given generator, unless it is null
+    private int[] withClassOrder(final int[] classOrder, final Random random) {
+        int size = 0;
+        for (final int c : classOrder) {
+            size += index.classSize(c);
         }
 
-        alreadySeenOrders.add(MD5.md5(String.join("", fullTestOrder)));
+        final int[] order = new int[size];
+        int pos = 0;
+        for (final int c : classOrder) {
+            final int start = pos;
+            pos = index.copyClass(c, order, pos);
 
-        return fullTestOrder;
+            if (random != null) {
+                TestIndex.shuffle(order, start, pos, random);
+            }
+        }
+
+        return order;
     }
 
-    private List<String> classOrder(final List<String> historicalOrder) {
-        return historicalOrder.stream().map(TestShuffler::className).distinct().collect(Collectors.toList());
+    // Classes of the historical order, in the order they first appear (ignoring classes we no longer have)
+    private int[] classOrder(final List<String> historicalOrder) {
+        final boolean[] seen = new boolean[index.classCount()];
+        final int[] classOrder = new int[index.classCount()];
+        int n = 0;
+
+        for (final String test : historicalOrder) {
+            final int t = index.testId(test);
+            final int c = t >= 0 ? index.classOf(t) : index.classId(className(test));
+
+            if (c >= 0 && !seen[c]) {
+                seen[c] = true;
+                classOrder[n++] = c;
+            }
+        }
+
+        return Arrays.copyOf(classOrder, n);
     }
 
     @Deprecated
     private int permutations(final int rounds) {
-        return permutations(IntMath.factorial(classToMethods.keySet().size()), classToMethods.values().iterator(), rounds);
+        return permutations(IntMath.factorial(index.classCount()), 0, rounds);
     }
 
     @Deprecated
-    private int permutations(final int accum, final Iterator<List<String>> iterator, final int rounds) {
+    private int permutations(final int accum, final int cls, final int rounds) {
         if (accum > rounds) {
             return accum;
         } else {
-            if (iterator.hasNext()) {
-                final List<String> testsInMethod = iterator.next();
-
-                return permutations(accum * IntMath.factorial(testsInMethod.size()), iterator, rounds);
+            if (cls < index.classCount()) {
+                return permutations(accum * IntMath.factorial(index.classSize(cls)), cls + 1, rounds);
             } else {
                 return accum;
             }
@@ -0,0 +1,166 @@
+package edu.illinois.cs.dt.tools.detection;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Wall-clock time budget for running a detector on one module.
+ *
+ * The budget measures every original order run, detection round and verification as it completes, and uses those
+ * measurements to decide whether there is still enough time left for another round. When a {@link BudgetPool} is
+ * attached, the budget may take time that other modules did not use, and gives back whatever it did not use itself.
+ */
+public class TimeBudget {
+    public enum Phase {
+        ORIGINAL, ROUND, VERIFICATION
+    }
+
+    public static TimeBudget unlimited() {
+        return new TimeBudget("", Double.POSITIVE_INFINITY, null);
+    }
+
+    private final String name;
+    private final BudgetPool pool;
+    private final TimeBudget parent;
+    private final long startNanos = System.nanoTime();
+
+    private final Map<Phase, Integer> counts = new EnumMap<>(Phase.class);
+    private final Map<Phase, Double> totals = new EnumMap<>(Phase.class);
+
+    private double allocatedSeconds;
+    private boolean finished = false;
+
+    public TimeBudget(final String name, final double allocatedSeconds, final BudgetPool pool) {
+        this(name, allocatedSeconds, pool, null);
+    }
+
+    private TimeBudget(final String name, final double allocatedSeconds, final BudgetPool pool, final TimeBudget parent) {
+        this.name = name;
+        this.allocatedSeconds = allocatedSeconds;
+        this.pool = pool;
+        this.parent = parent;
+    }
+
+    /**
+     * An equal share of the time left, when it has to be split between this and (parts - 1) other things that run
+     * after it. Time the share does not use stays with this budget. Measurements are shared both ways, so later
+     * shares know how long the original order took even if they do not run it themselves.
+     */
+    public synchronized TimeBudget share(final String name, final int parts) {
+        final double seconds = isLimited() ? Math.max(0.0, remainingSeconds()) / Math.max(1, parts) : Double.POSITIVE_INFINITY;
+        final TimeBudget share = new TimeBudget(this.name + " (" + name + ")", seconds, null, this);
+
+        share.counts.putAll(counts);
+        share.totals.putAll(totals);
+
+        return share;
+    }
+
+    public boolean isLimited() {
+        return !Double.isInfinite(allocatedSeconds);
+    }
+
+    public synchronized void record(final Phase phase, final double seconds) {
+        counts.put(phase, counts.getOrDefault(phase, 0) + 1);
+        totals.put(phase, totals.getOrDefault(phase, 0.0) + seconds);
+
+        if (parent != null) {
+            parent.record(phase, seconds);
+        }
+    }
+
+    public synchronized double elapsedSeconds() {
+        return (System.nanoTime() - startNanos) / 1E9;
+    }
+
+    public synchronized double remainingSeconds() {
+        return allocatedSeconds - elapsedSeconds();
+    }
+
+    private double mean(final Phase phase) {
+        final int count = counts.getOrDefault(phase, 0);
+        return count == 0 ? 0.0 : totals.get(phase) / count;
+    }
+
+    /**
+     * The expected wall-clock time of the next round. Before any round has finished, a round is expected to take
+     * as long as an original order run, since both run the whole test suite.
+     */
+    public synchronized double estimatedRoundSeconds() {
+        if (counts.getOrDefault(Phase.ROUND, 0) > 0) {
+            return mean(Phase.ROUND);
+        } else {
+            return mean(Phase.ORIGINAL);
+        }
+    }
+
+    /**
+     * How many more rounds fit into the time left, given how long rounds have taken so far.
+     */
+    public synchronized int plannedRounds() {
+        if (!isLimited()) {
+            return Integer.MAX_VALUE;
+        }
+
+        final double estimate = estimatedRoundSeconds();
+
+        if (estimate <= 0) {
+            return remainingSeconds() > 0 ? Integer.MAX_VALUE : 0;
+        }
+
+        return (int) Math.max(0, Math.floor(remainingSeconds() / estimate));
+    }
+
+    /**
+     * Whether another round is expected to finish before the budget runs out. If not, tries to take enough unused
+     * time from the pool to run it.
+     */
+    public synchronized boolean allowsRound() {
+        if (!isLimited()) {
+            return true;
+        }
+
+        final double needed = estimatedRoundSeconds() - remainingSeconds();
+
+        if (needed <= 0) {
+            return true;
+        }
+
+        if (pool != null) {
+            final double claimed = pool.claim(needed);
+            allocatedSeconds += claimed;
+
+            if (claimed > 0) {
+                System.out.printf("[INFO] BUDGET: %s took %.1f unused seconds from other modules%n", name, claimed);
+            }
+
+            return claimed >= needed;
+        }
+
+        return false;
+    }
+
+    /**
+     * Gives any unused time back to the pool. Should be called once the detector is done with this module.
+     */
+    public synchronized void finish() {
+        if (finished) {
+            return;
+        }
+
+        finished = true;
+
+        if (isLimited()) {
+            final double unused = Math.max(0.0, remainingSeconds());
+            System.out.printf("[INFO] BUDGET: %s used %.1f of %.1f seconds (%d original runs, %d rounds, %d verifications)%n",
+                    name, elapsedSeconds(), allocatedSeconds,
+                    counts.getOrDefault(Phase.ORIGINAL, 0),
+                    counts.getOrDefault(Phase.ROUND, 0),
+                    counts.getOrDefault(Phase.VERIFICATION, 0));
+
+            if (pool != null) {
+                pool.release(unused);
+            }
+        }
+    }
+}
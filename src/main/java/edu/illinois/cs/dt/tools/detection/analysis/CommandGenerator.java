@@ -17,7 +17,7 @@ public class CommandGenerator extends StandardMain {
     private CommandGenerator(final String[] args) throws SQLException {
         super(args);
 
-        this.sqlite = new SQLite(Paths.get(getArgRequired("db")));
+        this.sqlite = new SQLite(Paths.get(getArgRequired("db")), getArg("db-mode").map("file"::equals).orElse(false));
         this.commandPrefix = getArg("prefix").orElse("");
     }
 
@@ -23,7 +23,7 @@ public class TableGenerator extends StandardMain {
     private TableGenerator(final String[] args) throws SQLException {
         super(args);
 
-        this.sqlite = new SQLite(Paths.get(getArgRequired("db")));
+        this.sqlite = new SQLite(Paths.get(getArgRequired("db")), getArg("db-mode").map("file"::equals).orElse(false));
     }
 
     public static void main(final String[] args) {
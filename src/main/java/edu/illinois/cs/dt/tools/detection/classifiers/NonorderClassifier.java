@@ -1,44 +1,61 @@
 package edu.illinois.cs.dt.tools.detection.classifiers;
 
-import com.reedoei.eunomia.collections.ListUtil;
-import edu.illinois.cs.dt.tools.runner.data.TestRun;
-import edu.illinois.cs.dt.tools.utility.MD5;
+import edu.illinois.cs.dt.tools.utility.OrderFingerprint;
+import edu.illinois.cs.dt.tools.utility.OrderHasher;
+import edu.illinois.cs.testrunner.data.results.Result;
 import edu.illinois.cs.testrunner.data.results.TestRunResult;
 
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 public class NonorderClassifier implements Classifier {
+    private static final OrderFingerprint EMPTY_PREFIX = new OrderHasher().snapshot();
+
     private final Set<String> flaky = new HashSet<>();
-    private final Map<String, Map<String, TestRun>> knownRuns = new HashMap<>();
+    // Test -> fingerprint of the tests that ran before it -> result of the test
+    private final Map<String, Map<OrderFingerprint, Result>> knownRuns = new HashMap<>();
 
     @Override
     public void update(final TestRunResult testRunResult) {
+        final Map<String, OrderFingerprint> prefixes = prefixFingerprints(testRunResult.testOrder());
+
         testRunResult.results().forEach((testName, result) -> {
             // If we already know it's non-order dependent, just leave
             if (flaky.contains(testName)) {
                 return;
             }
 
-            final Map<String, TestRun> runs = knownRuns.getOrDefault(testName, new HashMap<>());
-            final String orderHash = MD5.hashOrder(ListUtil.before(testRunResult.testOrder(), testName));
+            final Map<OrderFingerprint, Result> runs = knownRuns.computeIfAbsent(testName, t -> new HashMap<>());
+            final OrderFingerprint prefix = prefixes.getOrDefault(testName, EMPTY_PREFIX);
 
-            final TestRun expectedResult = runs.get(orderHash);
+            final Result expectedResult = runs.putIfAbsent(prefix, result.result());
 
-            if (expectedResult != null) {
-                // If the order is the same, and the results don't match, must be non-order dependent
-                if (!result.result().equals(expectedResult.result())) {
-                    flaky.add(testName);
-                }
-            } else {
-                runs.put(orderHash, new TestRun(testRunResult.testOrder(), result.result(), testRunResult.id()));
-                knownRuns.put(testName, runs);
+            // If the order is the same, and the results don't match, must be non-order dependent
+            if (expectedResult != null && !result.result().equals(expectedResult)) {
+                flaky.add(testName);
+                knownRuns.remove(testName);
             }
         });
     }
 
+    /**
+     * The fingerprint of the tests before (the first occurrence of) each test, in one pass over the order.
+     */
+    private static Map<String, OrderFingerprint> prefixFingerprints(final List<String> order) {
+        final Map<String, OrderFingerprint> prefixes = new HashMap<>(order.size() * 2);
+        final OrderHasher hasher = new OrderHasher();
+
+        for (final String test : order) {
+            prefixes.putIfAbsent(test, hasher.snapshot());
+            hasher.append(test);
+        }
+
+        return prefixes;
+    }
+
     public Set<String> nonorderTests() {
         return flaky;
     }
@@ -1,8 +1,11 @@
 package edu.illinois.cs.dt.tools.detection.detectors;
 
+import edu.illinois.cs.dt.tools.detection.DetectionSession;
+import edu.illinois.cs.dt.tools.detection.TimeBudget;
 import edu.illinois.cs.dt.tools.runner.InstrumentingSmartRunner;
 import edu.illinois.cs.testrunner.configuration.Configuration;
 
+import java.util.ArrayList;
 import java.util.List;
 
 public class DetectorFactory {
@@ -10,21 +13,53 @@ public class DetectorFactory {
         return Configuration.config().getProperty("detector.detector_type", "random");
     }
 
+    /**
+     * detector.detector_type may be a comma separated list, to run several detectors in one session.
+     */
+    public static List<String> detectorTypes() {
+        final List<String> types = new ArrayList<>();
+
+        for (final String type : detectorType().split(",")) {
+            if (!type.trim().isEmpty() && !types.contains(type.trim())) {
+                types.add(type.trim());
+            }
+        }
+
+        if (types.isEmpty()) {
+            types.add("random");
+        }
+
+        return types;
+    }
+
     public static Detector makeDetector(final InstrumentingSmartRunner runner, final List<String> tests) {
         return makeDetector(runner, tests, Configuration.config().getProperty("dt.randomize.rounds", 20));
     }
 
     public static Detector makeDetector(final InstrumentingSmartRunner runner, final List<String> tests, final int rounds) {
-        if (detectorType().startsWith("random")) {
-            return new RandomDetector(detectorType(), runner, rounds, tests);
-        } else if (detectorType().startsWith("reverse")) {
-            return new ReverseDetector(runner, rounds, detectorType(), tests);
-        } else if (detectorType().equals("original")) {
-            return new OriginalDetector(runner, rounds, tests);
-        } else if (detectorType().equals("smart-shuffle")) {
-            return new SmartShuffleDetector(runner, rounds, tests, detectorType());
+        return makeDetector(runner, tests, rounds, TimeBudget.unlimited());
+    }
+
+    public static Detector makeDetector(final InstrumentingSmartRunner runner, final List<String> tests, final int rounds,
+                                        final TimeBudget budget) {
+        return makeDetector(detectorTypes().get(0), runner, tests, rounds, budget, new DetectionSession());
+    }
+
+    public static Detector makeDetector(final String detectorType,
+                                        final InstrumentingSmartRunner runner, final List<String> tests, final int rounds,
+                                        final TimeBudget budget, final DetectionSession session) {
+        if (detectorType.startsWith("random")) {
+            return new RandomDetector(detectorType, runner, rounds, tests, budget, session);
+        } else if (detectorType.startsWith("reverse")) {
+            return new ReverseDetector(runner, rounds, detectorType, tests, budget, session);
+        } else if (detectorType.equals("original")) {
+            return new OriginalDetector(runner, rounds, tests, budget, session);
+        } else if (detectorType.equals("smart-shuffle")) {
+            return new SmartShuffleDetector(runner, rounds, tests, detectorType, budget, session);
+        } else if (detectorType.equals("pairwise")) {
+            return new PairwiseDetector(runner, rounds, tests, detectorType, budget, session);
         }
 
-        return new RandomDetector("random", runner, rounds, tests);
+        return new RandomDetector("random", runner, rounds, tests, budget, session);
     }
 }
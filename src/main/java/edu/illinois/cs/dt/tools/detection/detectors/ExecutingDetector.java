@@ -2,15 +2,25 @@ package edu.illinois.cs.dt.tools.detection.detectors;
 
 import com.google.common.base.Stopwatch;
 import com.google.common.collect.Streams;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
 import com.reedoei.eunomia.io.VerbosePrinter;
 import com.reedoei.eunomia.io.files.FileUtil;
-import com.reedoei.eunomia.string.StringUtil;
 import edu.illinois.cs.dt.tools.detection.DetectionRound;
+import edu.illinois.cs.dt.tools.detection.DetectionSession;
+import edu.illinois.cs.dt.tools.detection.DetectorCheckpoint;
 import edu.illinois.cs.dt.tools.detection.DetectorPathManager;
 import edu.illinois.cs.dt.tools.detection.DetectorUtil;
+import edu.illinois.cs.dt.tools.detection.Resumable;
+import edu.illinois.cs.dt.tools.detection.RoundJournal;
+import edu.illinois.cs.dt.tools.detection.TimeBudget;
 import edu.illinois.cs.dt.tools.detection.filters.Filter;
 import edu.illinois.cs.dt.tools.runner.data.DependentTest;
-import edu.illinois.cs.dt.tools.runner.data.DependentTestList;
+import edu.illinois.cs.dt.tools.runner.RunnerPathManager;
+import edu.illinois.cs.dt.tools.runner.data.DependentTestListWriter;
+import edu.illinois.cs.dt.tools.utility.BackgroundWriter;
+import edu.illinois.cs.dt.tools.utility.OrderFingerprint;
 import edu.illinois.cs.testrunner.data.results.TestRunResult;
 import edu.illinois.cs.testrunner.runner.Runner;
 import edu.illinois.cs.testrunner.configuration.Configuration;
@@ -22,6 +32,11 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
@@ -30,33 +45,126 @@ import java.util.stream.Stream;
 public abstract class ExecutingDetector implements Detector, VerbosePrinter {
     protected Runner runner;
     private boolean countOnlyFirstFailure = Boolean.parseBoolean(Configuration.config().getProperty("dt.detector.count.only.first.failure", "false"));
+    // Number of rounds to run at once (each in its own forked JVM). Only used by detectors that support it.
+    private final int parallelWorkers = Configuration.config().getProperty("dt.detector.parallel.workers", 1);
+    // Continue from the checkpoint left by a previous (interrupted) run, if there is one
+    private final boolean resume = Configuration.config().getProperty("dt.detector.resume", false);
+    // Append the rounds to one file instead of writing a file per round (see RoundJournal)
+    private final boolean useRoundJournal = Configuration.config().getProperty("dt.detector.round_journal", false);
 
     protected int rounds;
     private List<Filter> filters = new ArrayList<>();
     protected final String name;
     protected final AtomicInteger absoluteRound = new AtomicInteger(0);
+    protected final TimeBudget budget;
+    protected final DetectionSession session;
 
     private final Stopwatch stopwatch = Stopwatch.createUnstarted();
 
+    private DetectorCheckpoint checkpoint = null;
+    private RoundJournal journal = null;
+    private String testsHash = null;
+    private String originalResultId = null;
+
     public ExecutingDetector(final Runner runner, final int rounds, final String name) {
+        this(runner, rounds, name, TimeBudget.unlimited());
+    }
+
+    public ExecutingDetector(final Runner runner, final int rounds, final String name, final TimeBudget budget) {
+        this(runner, rounds, name, budget, new DetectionSession());
+    }
+
+    public ExecutingDetector(final Runner runner, final int rounds, final String name, final TimeBudget budget,
+                             final DetectionSession session) {
         this.runner = runner;
         this.rounds = rounds;
         this.name = name;
+        this.budget = budget;
+        this.session = session;
+
+        if (resume) {
+            this.checkpoint = DetectorCheckpoint.read(DetectorPathManager.checkpointPath(name)).orElse(null);
+        }
     }
 
     public abstract DetectionRound results() throws Exception;
 
+    /**
+     * Adds anything the detector knows about how the round's order was generated before the round is written
+     * (e.g., the seed of the order).
+     */
+    protected DetectionRound describeRound(final DetectionRound round, final int absoluteRound) {
+        return round;
+    }
+
+    /**
+     * Runs the original order, unless another detector in the session or a previous run (when resuming) has already
+     * run it.
+     */
+    protected TestRunResult originalResults(final List<String> tests) {
+        testsHash = OrderFingerprint.of(tests).toString();
+
+        if (checkpoint != null && !testsHash.equals(checkpoint.testsHash())) {
+            System.out.println("[INFO] Not resuming from " + DetectorPathManager.checkpointPath(name) + ", because the tests have changed.");
+            checkpoint = null;
+        }
+
+        final TestRunResult result = session.originalResults(tests, () -> runOriginalResults(tests));
+        originalResultId = result.id();
+        return result;
+    }
+
+    private TestRunResult runOriginalResults(final List<String> tests) {
+        Optional<TestRunResult> previous = Optional.empty();
+        if (checkpoint != null && checkpoint.originalResultId() != null) {
+            previous = RunnerPathManager.resultFor(checkpoint.originalResultId()).findFirst();
+        }
+        if (resume && !previous.isPresent()) {
+            previous = DetectorUtil.previousOriginalResults(tests);
+        }
+
+        if (previous.isPresent()) {
+            System.out.println("[INFO] Reusing original results from " + previous.get().id() + ".");
+            return previous.get();
+        } else {
+            return DetectorUtil.originalResults(tests, runner, budget);
+        }
+    }
+
+    /**
+     * Detector specific state to save in the checkpoint, e.g., the state of the shuffler.
+     */
+    protected JsonElement saveDetectorState() {
+        return JsonNull.INSTANCE;
+    }
+
+    /**
+     * Called when resuming, after the absolute round and filters have been restored.
+     */
+    protected void restoreDetectorState(final JsonElement state) {
+    }
+
     protected TestRunResult runList(final List<String> tests) {
         return runner.runList(tests).get();
     }
 
     public DetectionRound makeDts(final TestRunResult intended, final TestRunResult revealed) {
+        return makeDts(intended, revealed, stopwatch.elapsed(TimeUnit.NANOSECONDS) / 1E9);
+    }
+
+    private DetectionRound makeDts(final TestRunResult intended, final TestRunResult revealed, final double runTime) {
+        final Stopwatch filterStopwatch = Stopwatch.createStarted();
         final List<DependentTest> result = DetectorUtil.flakyTests(intended, revealed, countOnlyFirstFailure);
+        final List<DependentTest> filtered = filter(result, absoluteRound.get()).collect(Collectors.toList());
+
+        if (!result.isEmpty()) {
+            budget.record(TimeBudget.Phase.VERIFICATION, filterStopwatch.elapsed(TimeUnit.NANOSECONDS) / 1E9);
+        }
 
         return new DetectionRound(Collections.singletonList(revealed.id()),
                 result,
-                filter(result, absoluteRound.get()).collect(Collectors.toList()),
-                stopwatch.elapsed(TimeUnit.NANOSECONDS) / 1E9);
+                filtered,
+                runTime + filterStopwatch.elapsed(TimeUnit.NANOSECONDS) / 1E9);
     }
 
     public ExecutingDetector addFilter(final Filter filter) {
@@ -73,7 +181,7 @@ public abstract class ExecutingDetector implements Detector, VerbosePrinter {
     private Stream<DependentTest> filter(List<DependentTest> dts, final int absoluteRound) {
         if (!dts.isEmpty()) {
             for (final Filter filter : filters) {
-                dts = dts.stream().filter(t -> filter.keep(t, absoluteRound)).collect(Collectors.toList());
+                dts = filter.keepAll(dts, absoluteRound);
             }
         }
 
@@ -87,13 +195,20 @@ public abstract class ExecutingDetector implements Detector, VerbosePrinter {
         final Path listPath = dir.resolve("list.txt");
         final Path dtListPath = dir.resolve(DetectorPathManager.FLAKY_LIST_PATH);
 
-        final DependentTestList dtList = new DependentTestList(detect());
+        // Write each test as it is found, rather than keeping them all until detection is done
+        final int found;
+        try (final DependentTestListWriter writer = new DependentTestListWriter(dtListPath, listPath)) {
+            final Iterator<DependentTest> iterator = detect().iterator();
+            while (iterator.hasNext()) {
+                writer.add(iterator.next());
+            }
+            found = writer.size();
+        }
+        BackgroundWriter.flush();
+        DetectorCheckpoint.delete(DetectorPathManager.checkpointPath(name));
         System.out.println(); // End the progress line.
 
-        print(String.format("[INFO] Found %d tests, writing list to %s and dt lists to %s\n", dtList.size(), listPath, dtListPath));
-
-        Files.write(dtListPath, dtList.toString().getBytes());
-        Files.write(listPath, StringUtil.unlines(dtList.names()).getBytes());
+        print(String.format("[INFO] Found %d tests, wrote list to %s and dt lists to %s\n", found, listPath, dtListPath));
     }
 
     private class RunnerIterator implements Iterator<DependentTest> {
@@ -107,18 +222,99 @@ public abstract class ExecutingDetector implements Detector, VerbosePrinter {
 
         private final List<DependentTest> result = new ArrayList<>();
 
+        private ExecutorService executor;
+
+        private RunnerIterator() {
+            final boolean resumed = checkpoint != null;
+            if (resumed) {
+                restore(checkpoint);
+                checkpoint = null;
+            }
+
+            if (!resumed) {
+                try {
+                    RoundJournal.clear(DetectorPathManager.detectionRoundsPath(name));
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+
+            if (useRoundJournal) {
+                journal = RoundJournal.forPath(RoundJournal.journalPath(DetectorPathManager.detectionRoundsPath(name)));
+            }
+        }
+
+        private void restore(final DetectorCheckpoint checkpoint) {
+            absoluteRound.set(checkpoint.absoluteRound());
+            i = checkpoint.roundsSinceFound();
+
+            // Every test found before the checkpoint, so they are all written out again when detection finishes
+            try (final Stream<DependentTest> found =
+                         RoundJournal.dependentTests(DetectorPathManager.detectionRoundsPath(name), checkpoint.absoluteRound())) {
+                found.forEach(result::add);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+
+            for (int k = 0; k < filters.size() && k < checkpoint.filterStates().size(); k++) {
+                final JsonElement state = checkpoint.filterStates().get(k);
+
+                if (filters.get(k) instanceof Resumable && state != null && !state.isJsonNull()) {
+                    ((Resumable) filters.get(k)).restoreState(state);
+                }
+            }
+
+            restoreDetectorState(checkpoint.detectorState());
+
+            System.out.printf("[INFO] Resuming %s from round %d (%d tests found so far).%n", name, absoluteRound.get(), result.size());
+        }
+
+        private void saveCheckpoint() {
+            final List<JsonElement> filterStates = new ArrayList<>();
+            for (final Filter filter : filters) {
+                filterStates.add(filter instanceof Resumable ? ((Resumable) filter).saveState() : JsonNull.INSTANCE);
+            }
+
+            // Written after the rounds it covers, since the background writer keeps the order
+            final DetectorCheckpoint detectorCheckpoint = new DetectorCheckpoint(testsHash, originalResultId,
+                    absoluteRound.get(), i, filterStates, saveDetectorState());
+            final Path checkpointPath = DetectorPathManager.checkpointPath(name);
+            BackgroundWriter.submit(() -> detectorCheckpoint.write(checkpointPath));
+        }
+
+        private boolean budgetExhausted = false;
+
         @Override
         public boolean hasNext() {
-            while (i < rounds && result.isEmpty()) {
-                generate();
+            while (i < rounds && result.isEmpty() && !budgetExhausted) {
+                if (!budget.allowsRound()) {
+                    budgetExhausted = true;
+                    System.out.printf("%n[INFO] Stopping after round %d: the next round is expected to take %.1f seconds, but only %.1f seconds are left.%n",
+                            absoluteRound.get(), budget.estimatedRoundSeconds(), Math.max(0.0, budget.remainingSeconds()));
+                    break;
+                }
+
+                if (parallelWorkers > 1 && ExecutingDetector.this instanceof ParallelRounds) {
+                    generateParallel();
+                } else {
+                    generate();
+                }
+            }
+
+            if (result.isEmpty() && executor != null) {
+                executor.shutdown();
+                executor = null;
+            }
+
+            if (result.isEmpty() && journal != null) {
+                final RoundJournal finished = journal;
+                BackgroundWriter.submit(finished::close);
             }
 
             return !result.isEmpty();
         }
 
         private DetectionRound generateDetectionRound() {
-            final Path path = DetectorPathManager.detectionRoundPath(name, absoluteRound.get());
-
             // Load it if possible
 //            try {
 //                if (Files.exists(path)) {
@@ -131,11 +327,12 @@ public abstract class ExecutingDetector implements Detector, VerbosePrinter {
 
             try {
                 stopwatch.reset().start();
-                final DetectionRound result = results();
+                final DetectionRound result = describeRound(results(), absoluteRound.get());
                 stopwatch.stop();
 
-                Files.createDirectories(path.getParent());
-                Files.write(path, result.toString().getBytes());
+                budget.record(TimeBudget.Phase.ROUND, stopwatch.elapsed(TimeUnit.NANOSECONDS) / 1E9);
+
+                writeRound(result);
 
                 previousStopTimeMs = stopTime;
 
@@ -147,16 +344,93 @@ public abstract class ExecutingDetector implements Detector, VerbosePrinter {
             }
         }
 
+        // Serialized and written in the background, while the next round runs
+        private void writeRound(final DetectionRound round) {
+            final int roundNumber = absoluteRound.get();
+
+            if (journal != null) {
+                final RoundJournal roundJournal = journal;
+                BackgroundWriter.submit(() -> roundJournal.append(roundNumber, round));
+            } else {
+                final Path path = DetectorPathManager.detectionRoundPath(name, roundNumber);
+                BackgroundWriter.submit(() -> {
+                    Files.createDirectories(path.getParent());
+                    Files.write(path, round.toString().getBytes());
+                });
+            }
+        }
+
         public void generate() {
-            final DetectionRound round = generateDetectionRound();
+            record(generateDetectionRound());
+            saveCheckpoint();
+        }
+
+        /**
+         * Runs the next batch of rounds at the same time, one forked JVM per round.
+         * The orders are generated up front in round order, and the results are filtered and written in round
+         * order, so the round files and filter state are the same as if the rounds had been run one at a time.
+         * For the time budget, the whole batch counts as one round, since that is how long it takes to run.
+         */
+        private void generateParallel() {
+            final ParallelRounds parallelRounds = (ParallelRounds) ExecutingDetector.this;
+
+            if (executor == null) {
+                executor = Executors.newFixedThreadPool(parallelWorkers,
+                        new ThreadFactoryBuilder().setNameFormat("detector-round-%d").setDaemon(true).build());
+            }
+
+            final int batchSize = Math.min(parallelWorkers, rounds - i);
+            final long stopTime = System.currentTimeMillis();
+            final Stopwatch batchStopwatch = Stopwatch.createStarted();
+
+            final List<Future<TimedRun>> runs = new ArrayList<>();
+            for (int k = 0; k < batchSize; k++) {
+                final List<String> order = parallelRounds.orderFor(absoluteRound.get() + k);
+
+                runs.add(executor.submit(() -> {
+                    final Stopwatch runStopwatch = Stopwatch.createStarted();
+                    final TestRunResult testRunResult = runList(order);
+                    return new TimedRun(testRunResult, runStopwatch.elapsed(TimeUnit.NANOSECONDS) / 1E9);
+                }));
+            }
+
+            for (final Future<TimedRun> run : runs) {
+                try {
+                    final TimedRun timedRun = run.get();
+                    final DetectionRound round = describeRound(makeDts(parallelRounds.intendedResult(), timedRun.result, timedRun.seconds),
+                                                               absoluteRound.get());
+
+                    writeRound(round);
 
+                    previousStopTimeMs = stopTime;
+
+                    record(round);
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof RuntimeException) {
+                        throw (RuntimeException) e.getCause();
+                    }
+                    throw new RuntimeException(e.getCause());
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+
+            budget.record(TimeBudget.Phase.ROUND, batchStopwatch.elapsed(TimeUnit.NANOSECONDS) / 1E9);
+
+            // Only checkpoint between batches: the shuffler has already produced the orders for the whole batch
+            saveCheckpoint();
+        }
+
+        private void record(final DetectionRound round) {
             final double elapsed = previousStopTimeMs - startTimeMs;
             final double totalElapsed = (System.currentTimeMillis() - origStartTimeMs) / 1000.0;
-            final double estimate = elapsed / (i + 1) * (rounds - i - 1) / 1000;
+            // With a time budget, the number of rounds left is however many are expected to fit in the time left
+            final int plannedRounds = (int) Math.min(rounds, i + 1 + (long) budget.plannedRounds());
+            final double estimate = elapsed / (i + 1) * (plannedRounds - i - 1) / 1000;
 
             if (!round.filteredTests().dts().isEmpty()) {
                 System.out.println(
-                        buildResultString(round.filteredTests().size(), ++i, rounds,
+                        buildResultString(round.filteredTests().size(), ++i, plannedRounds,
                                           elapsed / 1000, totalElapsed, estimate));
                 result.addAll(round.filteredTests().dts());
                 if (!roundsAreTotal) {
@@ -165,7 +439,7 @@ public abstract class ExecutingDetector implements Detector, VerbosePrinter {
                 startTimeMs = System.currentTimeMillis();
             } else {
                 System.out.println(
-                        buildResultString(round.filteredTests().size(), ++i, rounds,
+                        buildResultString(round.filteredTests().size(), ++i, plannedRounds,
                                           elapsed / 1000, totalElapsed, estimate));
             }
 
@@ -182,6 +456,16 @@ public abstract class ExecutingDetector implements Detector, VerbosePrinter {
         }
     }
 
+    private static class TimedRun {
+        private final TestRunResult result;
+        private final double seconds;
+
+        private TimedRun(final TestRunResult result, final double seconds) {
+            this.result = result;
+            this.seconds = seconds;
+        }
+    }
+
     private static String buildResultString(
             int testCnt, int currentRound, int totalRound,
             double elapsedTimeSec, double totalTimeSec, double estimateTimeSec) {
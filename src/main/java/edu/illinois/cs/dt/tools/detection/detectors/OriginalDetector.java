@@ -1,19 +1,21 @@
 package edu.illinois.cs.dt.tools.detection.detectors;
 
 import edu.illinois.cs.dt.tools.detection.DetectionRound;
-import edu.illinois.cs.dt.tools.detection.DetectorUtil;
+import edu.illinois.cs.dt.tools.detection.DetectionSession;
+import edu.illinois.cs.dt.tools.detection.TimeBudget;
 import edu.illinois.cs.dt.tools.detection.filters.UniqueFilter;
 import edu.illinois.cs.testrunner.data.results.TestRunResult;
 import edu.illinois.cs.testrunner.runner.Runner;
 
 import java.util.List;
 
-public class OriginalDetector extends ExecutingDetector {
+public class OriginalDetector extends ExecutingDetector implements ParallelRounds {
     private final List<String> tests;
     private TestRunResult origResult;
 
-    public OriginalDetector(final Runner runner, final int rounds, final List<String> tests, final TestRunResult origResult) {
-        super(runner, rounds, "original");
+    public OriginalDetector(final Runner runner, final int rounds, final List<String> tests, final TestRunResult origResult,
+                            final TimeBudget budget) {
+        super(runner, rounds, "original", budget);
 
         this.tests = tests;
         this.origResult = origResult;
@@ -21,11 +23,12 @@ public class OriginalDetector extends ExecutingDetector {
         addFilter(new UniqueFilter());
     }
 
-    public OriginalDetector(final Runner runner, final int rounds, final List<String> tests) {
-        super(runner, rounds, "original");
+    public OriginalDetector(final Runner runner, final int rounds, final List<String> tests, final TimeBudget budget,
+                            final DetectionSession session) {
+        super(runner, rounds, "original", budget, session);
 
         this.tests = tests;
-        this.origResult = DetectorUtil.originalResults(tests, runner);
+        this.origResult = originalResults(tests);
 
         addFilter(new UniqueFilter());
     }
@@ -34,4 +37,14 @@ public class OriginalDetector extends ExecutingDetector {
     public DetectionRound results() throws Exception {
         return makeDts(origResult, runList(tests));
     }
+
+    @Override
+    public List<String> orderFor(final int absoluteRound) {
+        return tests;
+    }
+
+    @Override
+    public TestRunResult intendedResult() {
+        return origResult;
+    }
 }
@@ -0,0 +1,64 @@
+package edu.illinois.cs.dt.tools.detection.detectors;
+
+import com.google.gson.JsonElement;
+import edu.illinois.cs.dt.tools.detection.DetectionRound;
+import edu.illinois.cs.dt.tools.detection.DetectionSession;
+import edu.illinois.cs.dt.tools.detection.DetectorPathManager;
+import edu.illinois.cs.dt.tools.detection.PairwiseShuffler;
+import edu.illinois.cs.dt.tools.detection.RoundJournal;
+import edu.illinois.cs.dt.tools.detection.TimeBudget;
+import edu.illinois.cs.dt.tools.detection.filters.ConfirmationFilter;
+import edu.illinois.cs.dt.tools.detection.filters.UniqueFilter;
+import edu.illinois.cs.dt.tools.runner.InstrumentingSmartRunner;
+import edu.illinois.cs.dt.tools.runner.RunnerPathManager;
+import edu.illinois.cs.testrunner.data.results.TestRunResult;
+
+import java.util.List;
+
+public class PairwiseDetector extends ExecutingDetector {
+    private final TestRunResult originalResults;
+
+    private final PairwiseShuffler shuffler;
+
+    public PairwiseDetector(final InstrumentingSmartRunner runner,
+                            final int rounds, final List<String> tests,
+                            final String type, final TimeBudget budget,
+                            final DetectionSession session) {
+        super(runner, rounds, type, budget, session);
+
+        this.shuffler = new PairwiseShuffler(tests);
+        this.originalResults = originalResults(tests);
+
+        addFilter(new ConfirmationFilter(type, tests, runner, session.knownFlaky()));
+        addFilter(new UniqueFilter());
+    }
+
+    // Orders depend on which pairs the previous rounds covered, so rounds have to run one at a time
+    @Override
+    public DetectionRound results() throws Exception {
+        final List<String> order = shuffler.nextOrder();
+
+        final DetectionRound round = makeDts(originalResults, runList(order)).withPairCoverage(shuffler.coverage());
+        System.out.println("\r[INFO] Pair coverage after round " + absoluteRound.get() + ": " + round.pairCoverage());
+
+        return round;
+    }
+
+    @Override
+    protected JsonElement saveDetectorState() {
+        return shuffler.saveState();
+    }
+
+    @Override
+    protected void restoreDetectorState(final JsonElement state) {
+        shuffler.restoreState(state);
+
+        // Rebuild the covered pairs from the orders the previous rounds ran
+        for (int round = 0; round < absoluteRound.get(); round++) {
+            RoundJournal.readRound(DetectorPathManager.detectionRoundsPath(name), round)
+                    .ifPresent(detectionRound -> detectionRound.testRunIds().stream()
+                            .flatMap(RunnerPathManager::resultFor)
+                            .forEach(result -> shuffler.observe(result.testOrder())));
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package edu.illinois.cs.dt.tools.detection.detectors;
+
+import edu.illinois.cs.testrunner.data.results.TestRunResult;
+
+import java.util.List;
+
+/**
+ * A detector that can generate the order for a round without knowing the results of the previous rounds, so its
+ * rounds may be run in parallel (see dt.detector.parallel.workers).
+ */
+public interface ParallelRounds {
+    List<String> orderFor(final int absoluteRound);
+
+    /**
+     * The result the orders are compared against.
+     */
+    TestRunResult intendedResult();
+}
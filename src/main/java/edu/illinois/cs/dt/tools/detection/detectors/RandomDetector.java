@@ -1,17 +1,23 @@
 package edu.illinois.cs.dt.tools.detection.detectors;
 
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
 import edu.illinois.cs.dt.tools.detection.DetectionRound;
-import edu.illinois.cs.dt.tools.detection.DetectorUtil;
+import edu.illinois.cs.dt.tools.detection.DetectionSession;
+import edu.illinois.cs.dt.tools.detection.DetectorPathManager;
+import edu.illinois.cs.dt.tools.detection.RoundJournal;
 import edu.illinois.cs.dt.tools.detection.TestShuffler;
+import edu.illinois.cs.dt.tools.detection.TimeBudget;
 import edu.illinois.cs.dt.tools.detection.filters.ConfirmationFilter;
 import edu.illinois.cs.dt.tools.detection.filters.UniqueFilter;
 import edu.illinois.cs.dt.tools.runner.InstrumentingSmartRunner;
+import edu.illinois.cs.dt.tools.runner.RunnerPathManager;
 import edu.illinois.cs.testrunner.data.results.TestRunResult;
 import edu.illinois.cs.testrunner.runner.Runner;
 
 import java.util.List;
 
-public class RandomDetector extends ExecutingDetector {
+public class RandomDetector extends ExecutingDetector implements ParallelRounds {
     private final List<String> tests;
     private TestRunResult origResult;
     private TestRunResult lastRandomResult;
@@ -19,19 +25,20 @@ public class RandomDetector extends ExecutingDetector {
 
     private final TestShuffler testShuffler;
 
-    public RandomDetector(final String type, final Runner runner, final int rounds, final List<String> tests) {
-        super(runner, rounds, type);
+    public RandomDetector(final String type, final Runner runner, final int rounds, final List<String> tests,
+                          final TimeBudget budget, final DetectionSession session) {
+        super(runner, rounds, type, budget, session);
 
         this.tests = tests;
 
         this.testShuffler = new TestShuffler(type, rounds, tests);
-        this.origResult = DetectorUtil.originalResults(tests, runner);
+        this.origResult = originalResults(tests);
 
         // Filters to be applied in order
         if (runner instanceof InstrumentingSmartRunner) {
-            addFilter(new ConfirmationFilter(name, tests, (InstrumentingSmartRunner) runner));
+            addFilter(new ConfirmationFilter(name, tests, (InstrumentingSmartRunner) runner, session.knownFlaky()));
         } else {
-            addFilter(new ConfirmationFilter(name, tests, InstrumentingSmartRunner.fromRunner(runner)));
+            addFilter(new ConfirmationFilter(name, tests, InstrumentingSmartRunner.fromRunner(runner), session.knownFlaky()));
         }
 
         addFilter(new UniqueFilter());
@@ -48,4 +55,40 @@ public class RandomDetector extends ExecutingDetector {
         lastRandomDetectionRound = makeDts(origResult, lastRandomResult);
         return lastRandomDetectionRound;
     }
+
+    // When running rounds in parallel, the last result is not known yet, so we never reverse the last passing order
+    @Override
+    public List<String> orderFor(final int absoluteRound) {
+        return testShuffler.shuffledOrder(absoluteRound);
+    }
+
+    @Override
+    public TestRunResult intendedResult() {
+        return origResult;
+    }
+
+    @Override
+    protected DetectionRound describeRound(final DetectionRound round, final int absoluteRound) {
+        return round.withOrderSeed(testShuffler.seedFor(absoluteRound));
+    }
+
+    @Override
+    protected JsonElement saveDetectorState() {
+        final JsonObject state = new JsonObject();
+        state.addProperty("lastRandomResult", lastRandomResult == null ? null : lastRandomResult.id());
+        return state;
+    }
+
+    @Override
+    protected void restoreDetectorState(final JsonElement state) {
+        final JsonObject obj = state.getAsJsonObject();
+
+        if (obj.has("lastRandomResult") && !obj.get("lastRandomResult").isJsonNull()) {
+            lastRandomResult = RunnerPathManager.resultFor(obj.get("lastRandomResult").getAsString()).findFirst().orElse(null);
+        }
+
+        // The last round file tells us whether the last round found anything new
+        lastRandomDetectionRound = RoundJournal.readRound(DetectorPathManager.detectionRoundsPath(name), absoluteRound.get() - 1)
+                .orElse(null);
+    }
 }
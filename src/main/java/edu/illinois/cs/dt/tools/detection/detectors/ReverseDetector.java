@@ -1,8 +1,9 @@
 package edu.illinois.cs.dt.tools.detection.detectors;
 
 import edu.illinois.cs.dt.tools.detection.DetectionRound;
-import edu.illinois.cs.dt.tools.detection.DetectorUtil;
+import edu.illinois.cs.dt.tools.detection.DetectionSession;
 import edu.illinois.cs.dt.tools.detection.TestShuffler;
+import edu.illinois.cs.dt.tools.detection.TimeBudget;
 import edu.illinois.cs.dt.tools.detection.filters.UniqueFilter;
 import edu.illinois.cs.dt.tools.detection.filters.VerifyFilter;
 import edu.illinois.cs.testrunner.data.results.TestRunResult;
@@ -15,11 +16,12 @@ public class ReverseDetector extends ExecutingDetector {
     private TestRunResult origResult;
     private final TestShuffler testShuffler;
 
-    public ReverseDetector(final Runner runner, final int rounds, final String name, final List<String> tests) {
+    public ReverseDetector(final Runner runner, final int rounds, final String name, final List<String> tests,
+                           final TimeBudget budget, final DetectionSession session) {
         // Always 1 round, because there's only one way to reverse the tests
-        super(runner, 1, name);
+        super(runner, 1, name, budget, session);
         this.tests = tests;
-        this.origResult = DetectorUtil.originalResults(tests, runner);
+        this.origResult = originalResults(tests);
 
         testShuffler = new TestShuffler(name, rounds, tests);
 
@@ -1,8 +1,10 @@
 package edu.illinois.cs.dt.tools.detection.detectors;
 
+import com.google.gson.JsonElement;
 import edu.illinois.cs.dt.tools.detection.DetectionRound;
-import edu.illinois.cs.dt.tools.detection.DetectorUtil;
+import edu.illinois.cs.dt.tools.detection.DetectionSession;
 import edu.illinois.cs.dt.tools.detection.SmartShuffler;
+import edu.illinois.cs.dt.tools.detection.TimeBudget;
 import edu.illinois.cs.dt.tools.detection.filters.ConfirmationFilter;
 import edu.illinois.cs.dt.tools.detection.filters.UniqueFilter;
 import edu.illinois.cs.dt.tools.runner.InstrumentingSmartRunner;
@@ -10,7 +12,7 @@ import edu.illinois.cs.testrunner.data.results.TestRunResult;
 
 import java.util.List;
 
-public class SmartShuffleDetector extends ExecutingDetector {
+public class SmartShuffleDetector extends ExecutingDetector implements ParallelRounds {
     private final List<String> originalOrder;
     private final TestRunResult originalResults;
 
@@ -18,14 +20,15 @@ public class SmartShuffleDetector extends ExecutingDetector {
 
     public SmartShuffleDetector(final InstrumentingSmartRunner runner,
                                 final int rounds, final List<String> tests,
-                                final String type) {
-        super(runner, rounds, type);
+                                final String type, final TimeBudget budget,
+                                final DetectionSession session) {
+        super(runner, rounds, type, budget, session);
 
         this.originalOrder = tests;
         this.shuffler = new SmartShuffler(tests);
-        this.originalResults = DetectorUtil.originalResults(originalOrder, runner);
+        this.originalResults = originalResults(originalOrder);
 
-        addFilter(new ConfirmationFilter(type, tests, runner));
+        addFilter(new ConfirmationFilter(type, tests, runner, session.knownFlaky()));
         addFilter(new UniqueFilter());
     }
 
@@ -35,4 +38,24 @@ public class SmartShuffleDetector extends ExecutingDetector {
 
         return makeDts(originalResults, runList(order));
     }
+
+    @Override
+    public List<String> orderFor(final int absoluteRound) {
+        return shuffler.nextOrder();
+    }
+
+    @Override
+    public TestRunResult intendedResult() {
+        return originalResults;
+    }
+
+    @Override
+    protected JsonElement saveDetectorState() {
+        return shuffler.saveState();
+    }
+
+    @Override
+    protected void restoreDetectorState(final JsonElement state) {
+        shuffler.restoreState(state);
+    }
 }
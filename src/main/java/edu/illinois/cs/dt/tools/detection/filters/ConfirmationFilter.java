@@ -1,20 +1,29 @@
 package edu.illinois.cs.dt.tools.detection.filters;
 
 import com.google.gson.Gson;
-import com.reedoei.eunomia.io.files.FileUtil;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.reflect.TypeToken;
 import edu.illinois.cs.dt.tools.detection.DetectionRound;
 import edu.illinois.cs.dt.tools.detection.DetectorPathManager;
+import edu.illinois.cs.dt.tools.detection.Resumable;
+import edu.illinois.cs.dt.tools.detection.RoundJournal;
 import edu.illinois.cs.dt.tools.runner.InstrumentingSmartRunner;
 import edu.illinois.cs.dt.tools.runner.data.DependentTest;
+import edu.illinois.cs.dt.tools.runner.data.VerificationBatch;
 
-import java.io.IOException;
-import java.nio.file.Files;
+import java.lang.reflect.Type;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Random;
+import java.util.Map;
 import java.util.Set;
+import java.util.stream.Stream;
 
-public class ConfirmationFilter implements Filter {
+public class ConfirmationFilter implements Filter, Resumable {
     private static final double DEPENDENT_CONFIRMATION_SAMPLING_RATE = 0.2;
     private static final double FLAKY_CONFIRMATION_SAMPLING_RATE = 0.2;
 
@@ -22,14 +31,26 @@ public class ConfirmationFilter implements Filter {
     private final Set<String> knownDep;
     private final String detectorType;
     private final InstrumentingSmartRunner runner;
+    private final ConfirmationSampler sampler;
 
     public ConfirmationFilter(final String detectorType,
                               final List<String> tests,
                               final InstrumentingSmartRunner runner) {
+        this(detectorType, tests, runner, new HashSet<>());
+    }
+
+    /**
+     * @param knownFlaky Tests known to be flaky, which may be shared with other detectors
+     */
+    public ConfirmationFilter(final String detectorType,
+                              final List<String> tests,
+                              final InstrumentingSmartRunner runner,
+                              final Set<String> knownFlaky) {
         this.detectorType = detectorType;
         this.runner = runner;
-        this.knownFlaky = new HashSet<>();
+        this.knownFlaky = knownFlaky;
         knownDep = new HashSet<>();
+        this.sampler = new ConfirmationSampler(detectorType, DEPENDENT_CONFIRMATION_SAMPLING_RATE, FLAKY_CONFIRMATION_SAMPLING_RATE);
 
         for (final String test : tests) {
             if (runner.info().isFlaky(test)) {
@@ -38,43 +59,87 @@ public class ConfirmationFilter implements Filter {
         }
 
         // Load results from the directory if we can
-        try {
-            Files.list(DetectorPathManager.detectionResults().resolve("flaky")).forEach(p -> {
-                try {
-                    final DetectionRound round = new Gson().fromJson(FileUtil.readFile(p), DetectionRound.class);
-
-                    for (final DependentTest dependentTest : round.filteredTests().dts()) {
-                        knownFlaky.add(dependentTest.name());
-                    }
-                } catch (Exception ignored) {}
+        try (final Stream<DetectionRound> rounds = RoundJournal.readRounds(DetectorPathManager.detectionRoundsPath("flaky"))) {
+            rounds.forEach(round -> {
+                for (final DependentTest dependentTest : round.filteredTests().dts()) {
+                    knownFlaky.add(dependentTest.name());
+                }
             });
-        } catch (IOException ignored) {}
+        } catch (Exception ignored) {}
     }
 
     @Override
     public boolean keep(final DependentTest dependentTest, final int absoluteRound) {
+        return keepAll(Collections.singletonList(dependentTest), absoluteRound).contains(dependentTest);
+    }
+
+    /**
+     * Decides what to do with each test first, then verifies every test that needs it together
+     * (see {@link VerificationBatch}), and finally applies the verdicts in the original order.
+     */
+    @Override
+    public List<DependentTest> keepAll(final List<DependentTest> dependentTests, final int absoluteRound) {
+        final Map<DependentTest, Check> checks = new LinkedHashMap<>();
+        final Map<DependentTest, Path> paths = new LinkedHashMap<>();
+
+        for (final DependentTest dependentTest : dependentTests) {
+            final Check check = check(dependentTest, absoluteRound);
+            checks.put(dependentTest, check);
+
+            if (check.verifyType != null) {
+                paths.put(dependentTest, DetectorPathManager.filterPath(detectorType, check.verifyType, absoluteRound));
+            }
+        }
+
+        final Map<String, Boolean> verdicts = new VerificationBatch(runner, paths::get).verify(new ArrayList<>(paths.keySet()));
+
+        final List<DependentTest> kept = new ArrayList<>();
+        for (final Map.Entry<DependentTest, Check> entry : checks.entrySet()) {
+            final DependentTest dependentTest = entry.getKey();
+            final Check check = entry.getValue();
+
+            final boolean keep;
+            if (check.verifyType == null) {
+                keep = check.keepUnverified;
+            } else {
+                final boolean confirmed = verdicts.get(dependentTest.name());
+
+                if ("confirmation-sampling".equals(check.verifyType)) {
+                    sampler.record(dependentTest.name(), check.isFlaky, check.isFlaky != confirmed);
+                }
+
+                keep = confirmation(check.isFlaky, confirmed, dependentTest);
+            }
+
+            if (keep) {
+                kept.add(dependentTest);
+            }
+        }
+
+        return kept;
+    }
+
+    private Check check(final DependentTest dependentTest, final int absoluteRound) {
         if (knownFlaky.contains(dependentTest.name())) {
-            if (new Random().nextDouble() < FLAKY_CONFIRMATION_SAMPLING_RATE) {
-                return confirmation(true, "confirmation-sampling", dependentTest, absoluteRound);
+            if (sampler.sample(dependentTest.name(), true, absoluteRound)) {
+                return new Check(true, "confirmation-sampling", false);
             }
 
             // This test is known to be flaky, so it should never make it past the filter
-            return false;
+            return new Check(true, null, false);
         } else if (knownDep.contains(dependentTest.name())) {
-            if (new Random().nextDouble() < DEPENDENT_CONFIRMATION_SAMPLING_RATE) {
-                return confirmation(false, "confirmation-sampling", dependentTest, absoluteRound);
+            if (sampler.sample(dependentTest.name(), false, absoluteRound)) {
+                return new Check(false, "confirmation-sampling", false);
             }
 
             // Known dependent, so return true
-            return true;
+            return new Check(false, null, true);
         } else {
-            return confirmation(false, "verify", dependentTest, absoluteRound);
+            return new Check(false, "verify", false);
         }
     }
 
-    private boolean confirmation(final boolean isFlaky, final String verifyType,
-                                 final DependentTest dependentTest, final int absoluteRound) {
-        final boolean confirmed = verify(verifyType, dependentTest, absoluteRound);
+    private boolean confirmation(final boolean isFlaky, final boolean confirmed, final DependentTest dependentTest) {
 
         // if it's flaky, we shouldn't put it back into the dep set
         if (!isFlaky) {
@@ -94,7 +159,38 @@ public class ConfirmationFilter implements Filter {
         return confirmed;
     }
 
-    private boolean verify(final String verifyType, final DependentTest dependentTest, final int absoluteRound) {
-        return dependentTest.verify(runner, DetectorPathManager.filterPath(detectorType, verifyType, absoluteRound));
+    @Override
+    public JsonElement saveState() {
+        final JsonObject state = new JsonObject();
+        state.add("knownFlaky", new Gson().toJsonTree(knownFlaky));
+        state.add("knownDep", new Gson().toJsonTree(knownDep));
+        state.add("sampler", sampler.saveState());
+        return state;
+    }
+
+    @Override
+    public void restoreState(final JsonElement state) {
+        final Type setType = new TypeToken<Set<String>>(){}.getType();
+
+        knownFlaky.addAll(new Gson().<Set<String>>fromJson(state.getAsJsonObject().get("knownFlaky"), setType));
+        knownDep.addAll(new Gson().<Set<String>>fromJson(state.getAsJsonObject().get("knownDep"), setType));
+        knownDep.removeAll(knownFlaky);
+
+        if (state.getAsJsonObject().has("sampler")) {
+            sampler.restoreState(state.getAsJsonObject().get("sampler"));
+        }
+    }
+
+    // What to do with a test: verify it (verifyType is set), or keep it or not without verifying
+    private static class Check {
+        private final boolean isFlaky;
+        private final String verifyType;
+        private final boolean keepUnverified;
+
+        private Check(final boolean isFlaky, final String verifyType, final boolean keepUnverified) {
+            this.isFlaky = isFlaky;
+            this.verifyType = verifyType;
+            this.keepUnverified = keepUnverified;
+        }
     }
 }
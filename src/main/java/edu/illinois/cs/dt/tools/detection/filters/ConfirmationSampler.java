@@ -0,0 +1,181 @@
+package edu.illinois.cs.dt.tools.detection.filters;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.reflect.TypeToken;
+import com.opencsv.CSVWriter;
+import edu.illinois.cs.dt.tools.detection.DetectorPathManager;
+import edu.illinois.cs.dt.tools.detection.Resumable;
+import edu.illinois.cs.dt.tools.utility.OrderHasher;
+import edu.illinois.cs.testrunner.configuration.Configuration;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.SecureRandom;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Decides when {@link ConfirmationFilter} should verify a test again that it already knows to be dependent (or flaky).
+ *
+ * For each test, the sampler counts how often verifying it again agreed with what we knew and how often it
+ * contradicted it, and uses the mean of the Beta(1 + agreements, 1 + contradictions) posterior as its confidence.
+ * While the confidence is below dt.detector.confirmation.confidence, tests are verified again with the base rate,
+ * multiplied by one more than the number of contradictions; after that, only with dt.detector.confirmation.min_rate
+ * (by default a tenth of the base rate). Confident tests are thus still verified now and then, so a contradiction can
+ * still lower their confidence and raise the rate again.
+ *
+ * Whether a test is sampled only depends on the seed, the round and the test, so runs with the same
+ * dt.detector.confirmation.seed make the same decisions. Every decision is logged to
+ * {@link DetectorPathManager#confirmationSamplingLog(String)}.
+ */
+public class ConfirmationSampler implements Resumable {
+    private static final double CONFIDENCE = Configuration.config().getProperty("dt.detector.confirmation.confidence", 0.9);
+    // Negative means a tenth of the base rate
+    private static final double MIN_RATE = Configuration.config().getProperty("dt.detector.confirmation.min_rate", -1.0);
+
+    private static long seed() {
+        final String configured = Configuration.config().getProperty("dt.detector.confirmation.seed", "");
+        if (!configured.isEmpty()) {
+            return Long.decode(configured);
+        }
+
+        final long seed = new SecureRandom().nextLong();
+        System.out.println("[INFO] Using confirmation sampling seed " + seed + " (set dt.detector.confirmation.seed to make the same decisions)");
+        return seed;
+    }
+
+    private final String detectorType;
+    private final double dependentRate;
+    private final double flakyRate;
+    private final long seed = seed();
+
+    private final Map<String, Stats> stats = new HashMap<>();
+
+    public ConfirmationSampler(final String detectorType, final double dependentRate, final double flakyRate) {
+        this.detectorType = detectorType;
+        this.dependentRate = dependentRate;
+        this.flakyRate = flakyRate;
+    }
+
+    /**
+     * Whether to verify the test again in this round.
+     */
+    public boolean sample(final String test, final boolean flaky, final int absoluteRound) {
+        final Stats testStats = stats(test, flaky);
+        final double confidence = testStats.confidence();
+        final double rate;
+        if (confidence >= CONFIDENCE) {
+            rate = minRate(flaky);
+        } else {
+            rate = Math.min(1.0, baseRate(flaky) * (1 + testStats.contradictions));
+        }
+
+        final boolean sampled = uniform(test, absoluteRound) < rate;
+
+        log(absoluteRound, test, testStats, confidence, rate, sampled ? "verify" : (confidence >= CONFIDENCE ? "skip-confident" : "skip"));
+
+        return sampled;
+    }
+
+    /**
+     * Records the result of verifying a test that was sampled.
+     *
+     * @param agreed Whether the result matches what was known (i.e., a dependent test was confirmed, or a flaky one was not)
+     */
+    public void record(final String test, final boolean flaky, final boolean agreed) {
+        final Stats testStats = stats(test, flaky);
+        final boolean wasConfident = testStats.confidence() >= CONFIDENCE;
+
+        if (agreed) {
+            testStats.agreements++;
+        } else {
+            testStats.contradictions++;
+        }
+
+        if (!wasConfident && testStats.confidence() >= CONFIDENCE) {
+            System.out.printf("[INFO] CONFIRMATION: %s is %s (%d agreed, %d contradicted), sampling it at %.2f from now on%n",
+                    test, flaky ? "flaky" : "dependent", testStats.agreements, testStats.contradictions, minRate(flaky));
+        }
+    }
+
+    private double baseRate(final boolean flaky) {
+        return flaky ? flakyRate : dependentRate;
+    }
+
+    private double minRate(final boolean flaky) {
+        return MIN_RATE >= 0 ? MIN_RATE : baseRate(flaky) / 10;
+    }
+
+    // When the test was moved from dependent to flaky, its agreements no longer count, but its contradictions do
+    private Stats stats(final String test, final boolean flaky) {
+        final Stats testStats = stats.computeIfAbsent(test, t -> new Stats(flaky));
+
+        if (testStats.flaky != flaky) {
+            testStats.flaky = flaky;
+            testStats.agreements = 0;
+        }
+
+        return testStats;
+    }
+
+    private double uniform(final String test, final int absoluteRound) {
+        final long hash = new OrderHasher().append(seed, absoluteRound).append(test).snapshot().high();
+        return (hash >>> 11) * 0x1.0p-53;
+    }
+
+    private void log(final int absoluteRound, final String test, final Stats testStats,
+                     final double confidence, final double rate, final String decision) {
+        final Path path = DetectorPathManager.confirmationSamplingLog(detectorType);
+
+        try {
+            if (!Files.exists(path)) {
+                Files.createDirectories(path.getParent());
+                Files.write(path, csvLine("round", "test", "known", "agreements", "contradictions",
+                        "confidence", "rate", "decision").getBytes());
+            }
+
+            // Test names can contain commas (e.g., parameterized tests), so every field is quoted
+            final String line = csvLine(String.valueOf(absoluteRound), test,
+                    testStats.flaky ? "flaky" : "dependent",
+                    String.valueOf(testStats.agreements), String.valueOf(testStats.contradictions),
+                    String.format("%.3f", confidence), String.format("%.3f", rate), decision);
+            Files.write(path, line.getBytes(), StandardOpenOption.APPEND);
+        } catch (IOException ignored) {}
+    }
+
+    private static String csvLine(final String... fields) throws IOException {
+        final StringWriter line = new StringWriter();
+        try (final CSVWriter writer = new CSVWriter(line)) {
+            writer.writeNext(fields);
+        }
+        return line.toString();
+    }
+
+    @Override
+    public JsonElement saveState() {
+        return new Gson().toJsonTree(stats);
+    }
+
+    @Override
+    public void restoreState(final JsonElement state) {
+        stats.putAll(new Gson().<Map<String, Stats>>fromJson(state, new TypeToken<Map<String, Stats>>(){}.getType()));
+    }
+
+    private static class Stats {
+        private boolean flaky;
+        private int agreements = 0;
+        private int contradictions = 0;
+
+        private Stats(final boolean flaky) {
+            this.flaky = flaky;
+        }
+
+        private double confidence() {
+            return (1.0 + agreements) / (2.0 + agreements + contradictions);
+        }
+    }
+}
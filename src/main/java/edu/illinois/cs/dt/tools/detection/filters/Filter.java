@@ -2,6 +2,17 @@ package edu.illinois.cs.dt.tools.detection.filters;
 
 import edu.illinois.cs.dt.tools.runner.data.DependentTest;
 
+import java.util.List;
+import java.util.stream.Collectors;
+
 public interface Filter {
     boolean keep(final DependentTest dependentTest, final int absoluteRound);
+
+    /**
+     * Filters all the dependent tests found in one round. Filters that can check several tests more cheaply than
+     * one at a time should override this.
+     */
+    default List<DependentTest> keepAll(final List<DependentTest> dependentTests, final int absoluteRound) {
+        return dependentTests.stream().filter(t -> keep(t, absoluteRound)).collect(Collectors.toList());
+    }
 }
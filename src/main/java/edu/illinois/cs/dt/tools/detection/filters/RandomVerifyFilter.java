@@ -3,9 +3,15 @@ package edu.illinois.cs.dt.tools.detection.filters;
 import edu.illinois.cs.dt.tools.detection.DetectorPathManager;
 import edu.illinois.cs.dt.tools.detection.filters.Filter;
 import edu.illinois.cs.dt.tools.runner.data.DependentTest;
+import edu.illinois.cs.dt.tools.runner.data.VerificationBatch;
 import edu.illinois.cs.testrunner.runner.Runner;
 
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.Random;
+import java.util.stream.Collectors;
 
 public class RandomVerifyFilter implements Filter {
     private final double percentage;
@@ -27,4 +33,25 @@ public class RandomVerifyFilter implements Filter {
 
         return true;
     }
+
+    /**
+     * Verifies the sampled tests of one round together (see {@link VerificationBatch}).
+     */
+    @Override
+    public List<DependentTest> keepAll(final List<DependentTest> dependentTests, final int absoluteRound) {
+        final Random random = new Random();
+        final List<DependentTest> sampled = new ArrayList<>();
+        for (final DependentTest dependentTest : dependentTests) {
+            if (random.nextDouble() < percentage) {
+                sampled.add(dependentTest);
+            }
+        }
+
+        final Path path = DetectorPathManager.filterPath(detectorType, "confirmation-sampling", absoluteRound);
+        final Map<String, Boolean> verdicts = new VerificationBatch(runner, dt -> path).verify(sampled);
+
+        return dependentTests.stream()
+                .filter(dt -> !sampled.contains(dt) || verdicts.get(dt.name()))
+                .collect(Collectors.toList());
+    }
 }
@@ -1,12 +1,16 @@
 package edu.illinois.cs.dt.tools.detection.filters;
 
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.reflect.TypeToken;
+import edu.illinois.cs.dt.tools.detection.Resumable;
 import edu.illinois.cs.dt.tools.runner.data.DependentTest;
 
 import java.util.HashSet;
 import java.util.Set;
 import java.util.function.Predicate;
 
-public class UniqueFilter implements Filter {
+public class UniqueFilter implements Filter, Resumable {
     private final Set<String> prevTests = new HashSet<>();
 
     public Set<String> prevTests() {
@@ -19,4 +23,14 @@ public class UniqueFilter implements Filter {
         prevTests.add(dependentTest.name());
         return !found;
     }
+
+    @Override
+    public JsonElement saveState() {
+        return new Gson().toJsonTree(prevTests);
+    }
+
+    @Override
+    public void restoreState(final JsonElement state) {
+        prevTests.addAll(new Gson().<Set<String>>fromJson(state, new TypeToken<Set<String>>(){}.getType()));
+    }
 }
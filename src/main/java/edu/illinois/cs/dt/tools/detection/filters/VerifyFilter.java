@@ -2,9 +2,15 @@ package edu.illinois.cs.dt.tools.detection.filters;
 
 import edu.illinois.cs.dt.tools.detection.DetectorPathManager;
 import edu.illinois.cs.dt.tools.runner.data.DependentTest;
+import edu.illinois.cs.dt.tools.runner.data.VerificationBatch;
 import edu.illinois.cs.testrunner.configuration.Configuration;
 import edu.illinois.cs.testrunner.runner.Runner;
 
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
 public class VerifyFilter implements Filter {
     private static final boolean VERIFY_DTS = Configuration.config().getProperty("dt.verify", true);
     private final String detectorType;
@@ -23,4 +29,19 @@ public class VerifyFilter implements Filter {
             return true;
         }
     }
+
+    /**
+     * Verifies all the tests found in one round together (see {@link VerificationBatch}).
+     */
+    @Override
+    public List<DependentTest> keepAll(final List<DependentTest> dependentTests, final int absoluteRound) {
+        if (!VERIFY_DTS || dependentTests.isEmpty()) {
+            return dependentTests;
+        }
+
+        final Path path = DetectorPathManager.filterPath(detectorType, "verify", absoluteRound);
+        final Map<String, Boolean> verdicts = new VerificationBatch(runner, dt -> path).verify(dependentTests);
+
+        return dependentTests.stream().filter(dt -> verdicts.get(dt.name())).collect(Collectors.toList());
+    }
 }
@@ -0,0 +1,267 @@
+package edu.illinois.cs.dt.tools.runner;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+import com.reedoei.eunomia.io.files.FileUtil;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Content-addressed storage for things that are often written many times with the same contents (run output, stack
+ * traces, verification results), in .dtfixingtools/blobs.
+ *
+ * Each blob is stored once, at blobs/ab/abcdef..., named by the SHA-256 of its contents. Files that would have held
+ * the contents instead hold a small reference ({"blob":"abcdef..."}), which {@link #readFile(Path)} follows. Blobs are
+ * not deleted with the files that refer to them; {@link #collect(Path)} deletes the ones nothing refers to any more.
+ */
+public class BlobStore {
+    private static final String BLOBS = "blobs";
+    private static final int MAX_REF_BYTES = 256;
+
+    private static final Map<Path, BlobStore> stores = new HashMap<>();
+
+    public static BlobStore forModule() {
+        return forPath(RunnerPathManager.blobsPath());
+    }
+
+    public static synchronized BlobStore forPath(final Path path) {
+        return stores.computeIfAbsent(path.toAbsolutePath(), BlobStore::new);
+    }
+
+    /**
+     * The store that the blobs referenced from the given file are in: the closest blobs directory above it.
+     */
+    public static Optional<BlobStore> near(final Path file) {
+        for (Path dir = file.toAbsolutePath().getParent(); dir != null; dir = dir.getParent()) {
+            if (Files.isDirectory(dir.resolve(BLOBS))) {
+                return Optional.of(forPath(dir.resolve(BLOBS)));
+            }
+        }
+
+        return Optional.empty();
+    }
+
+    /**
+     * Reads the file, or the blob it refers to if it is a reference.
+     */
+    public static String readFile(final Path file) throws IOException {
+        final String contents = FileUtil.readFile(file);
+        final Optional<String> hash = refHash(contents);
+
+        if (hash.isPresent()) {
+            final Optional<BlobStore> store = near(file);
+            if (store.isPresent()) {
+                return new String(store.get().get(hash.get()), StandardCharsets.UTF_8);
+            }
+            throw new IOException("No blob store for " + file);
+        }
+
+        return contents;
+    }
+
+    public static Optional<String> refHash(final String contents) {
+        if (contents.startsWith("{\"blob\"")) {
+            try {
+                return Optional.ofNullable(new Gson().fromJson(contents, Ref.class).blob);
+            } catch (JsonSyntaxException ignored) {}
+        }
+
+        return Optional.empty();
+    }
+
+    private final Path path;
+
+    private BlobStore(final Path path) {
+        this.path = path;
+    }
+
+    public Path path(final String hash) {
+        return path.resolve(hash.substring(0, 2)).resolve(hash);
+    }
+
+    public boolean contains(final String hash) {
+        return Files.exists(path(hash));
+    }
+
+    public byte[] get(final String hash) throws IOException {
+        return Files.readAllBytes(path(hash));
+    }
+
+    public InputStream open(final String hash) throws IOException {
+        return Files.newInputStream(path(hash));
+    }
+
+    /**
+     * @return The hash of the contents, which are only written if no blob has them yet
+     */
+    public String put(final byte[] contents) throws IOException {
+        final String hash = hash(contents);
+
+        if (!contains(hash)) {
+            final Path temp = tempFile();
+            Files.write(temp, contents);
+            moveIn(temp, hash);
+        }
+
+        return hash;
+    }
+
+    /**
+     * Writes a reference to a blob with the contents to the given path, instead of the contents themselves.
+     */
+    public void putRef(final Path refPath, final String contents) throws IOException {
+        writeRef(refPath, put(contents.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    public static void writeRef(final Path refPath, final String hash) throws IOException {
+        Files.createDirectories(refPath.getParent());
+        Files.write(refPath, new Gson().toJson(new Ref(hash)).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * A file in the store that can be filled and then moved in with {@link #adopt(Path)}.
+     */
+    public Path tempFile() throws IOException {
+        Files.createDirectories(path);
+        return Files.createTempFile(path, "tmp-", null);
+    }
+
+    /**
+     * Moves the file into the store (or deletes it if the store already has its contents).
+     */
+    public String adopt(final Path file) throws IOException {
+        final MessageDigest digest = sha256();
+
+        try (final InputStream in = Files.newInputStream(file)) {
+            final byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = in.read(buffer)) >= 0) {
+                digest.update(buffer, 0, read);
+            }
+        }
+
+        final String hash = hex(digest.digest());
+
+        if (contains(hash)) {
+            Files.delete(file);
+        } else {
+            moveIn(file, hash);
+        }
+
+        return hash;
+    }
+
+    /**
+     * Deletes every blob that no file under root (other than the blobs themselves) refers to any more, e.g., after
+     * deleting or overwriting the files that referred to them. Besides reference files, this counts the stack traces
+     * used by any {@link ResultStore} under root.
+     *
+     * @return How many blobs were deleted
+     */
+    public int collect(final Path root) throws IOException {
+        final Set<String> referenced = new HashSet<>();
+
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(final Path dir, final BasicFileAttributes attrs) throws IOException {
+                if (dir.toAbsolutePath().equals(path)) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+
+                // Its segments refer to blobs by names, which are all in one file
+                if (ResultStore.exists(dir)) {
+                    referenced.addAll(ResultStore.referencedBlobs(dir));
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) throws IOException {
+                // References are tiny, so there is no need to read anything bigger
+                if (attrs.size() <= MAX_REF_BYTES) {
+                    refHash(FileUtil.readFile(file)).ifPresent(referenced::add);
+                }
+
+                return FileVisitResult.CONTINUE;
+            }
+        });
+
+        int deleted = 0;
+
+        if (Files.isDirectory(path)) {
+            try (final DirectoryStream<Path> dirs = Files.newDirectoryStream(path, Files::isDirectory)) {
+                for (final Path dir : dirs) {
+                    try (final DirectoryStream<Path> blobs = Files.newDirectoryStream(dir)) {
+                        for (final Path blob : blobs) {
+                            if (!referenced.contains(blob.getFileName().toString())) {
+                                Files.delete(blob);
+                                deleted++;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        return deleted;
+    }
+
+    private void moveIn(final Path file, final String hash) throws IOException {
+        final Path target = path(hash);
+        Files.createDirectories(target.getParent());
+
+        try {
+            Files.move(file, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (FileAlreadyExistsException e) {
+            // Someone else stored the same contents at the same time
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static String hash(final byte[] contents) {
+        return hex(sha256().digest(contents));
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static String hex(final byte[] bytes) {
+        final StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (final byte b : bytes) {
+            sb.append(String.format("%02x", b));
+        }
+        return sb.toString();
+    }
+
+    private static class Ref {
+        private final String blob;
+
+        private Ref(final String blob) {
+            this.blob = blob;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package edu.illinois.cs.dt.tools.runner;
+
+import edu.illinois.cs.testrunner.configuration.Configuration;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Callable;
+
+/**
+ * Limits how many forked JVMs run test orders at the same time on this host (dt.detector.max_forked_jvms), across
+ * modules, detectors, and even separate Maven invocations.
+ *
+ * Each running JVM holds a lock on one of the slot files in the temporary directory, so the limit is enforced by the
+ * operating system, and a slot is freed even if the process holding it dies.
+ */
+public class ForkedJvmSlots {
+    private static final int MAX_FORKED_JVMS = Configuration.config().getProperty("dt.detector.max_forked_jvms", 0);
+    private static final Path SLOT_DIR = Paths.get(System.getProperty("java.io.tmpdir"), "idflakies-jvm-slots");
+    private static final long POLL_MILLIS = 100;
+
+    public static <T> T run(final Callable<T> callable) throws Exception {
+        if (MAX_FORKED_JVMS <= 0) {
+            return callable.call();
+        }
+
+        final FileLock slot = acquire();
+
+        try {
+            return callable.call();
+        } finally {
+            slot.release();
+            slot.channel().close();
+        }
+    }
+
+    private static FileLock acquire() throws IOException, InterruptedException {
+        Files.createDirectories(SLOT_DIR);
+
+        while (true) {
+            for (int i = 0; i < MAX_FORKED_JVMS; i++) {
+                final FileChannel channel = FileChannel.open(SLOT_DIR.resolve("slot-" + i + ".lock"),
+                        StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+
+                try {
+                    final FileLock lock = channel.tryLock();
+
+                    if (lock != null) {
+                        return lock;
+                    }
+                } catch (OverlappingFileLockException ignored) {
+                    // Held by another thread in this JVM
+                }
+
+                channel.close();
+            }
+
+            Thread.sleep(POLL_MILLIS);
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package edu.illinois.cs.dt.tools.runner;
 
+import edu.illinois.cs.dt.tools.utility.PathManager;
+import edu.illinois.cs.testrunner.data.framework.JUnit$;
 import edu.illinois.cs.testrunner.data.framework.TestFramework;
 import edu.illinois.cs.testrunner.data.results.TestRunResult;
 import edu.illinois.cs.testrunner.runner.Runner;
@@ -8,15 +10,21 @@ import edu.illinois.cs.testrunner.runner.TestInfoStore;
 import edu.illinois.cs.testrunner.util.ExecutionInfo;
 import edu.illinois.cs.testrunner.util.ExecutionInfoBuilder;
 import edu.illinois.cs.testrunner.util.TempFiles;
+import scala.collection.JavaConverters;
 import scala.collection.immutable.Stream;
 import scala.util.Failure;
+import scala.util.Success;
 import scala.util.Try;
 
 import java.nio.file.Path;
+import java.util.List;
 import java.util.Map;
+import java.util.OptionalDouble;
+import java.util.concurrent.TimeoutException;
 
 public class InstrumentingSmartRunner extends SmartRunner {
-    private Path outputPath;
+    // Per thread, so that several orders can be run at the same time (e.g., parallel detection rounds)
+    private final ThreadLocal<Path> outputPath = new ThreadLocal<>();
 
     public static InstrumentingSmartRunner fromRunner(final Runner runner) {
         if (runner instanceof SmartRunner) {
@@ -37,8 +45,8 @@ public class InstrumentingSmartRunner extends SmartRunner {
     @Override
     public ExecutionInfo execution(final Stream<String> testOrder, final ExecutionInfoBuilder executionInfoBuilder) {
         final ExecutionInfoBuilder builder;
-        if (outputPath != null) {
-            builder = executionInfoBuilder.outputPath(outputPath);
+        if (outputPath.get() != null) {
+            builder = executionInfoBuilder.outputPath(outputPath.get());
         } else {
             builder = executionInfoBuilder;
         }
@@ -53,7 +61,43 @@ public class InstrumentingSmartRunner extends SmartRunner {
             try {
                 writeTo(outputPath);
 
-                final Try<TestRunResult> testRunResultTry = super.runWithCp(cp, testOrder);
+                final Try<TestRunResult> testRunResultTry = ForkedJvmSlots.run(() -> {
+                    // The pool only runs JUnit 4 tests
+                    if (!WarmJvmPool.enabled() || !(framework() instanceof JUnit$)) {
+                        return super.runWithCp(cp, testOrder);
+                    }
+
+                    final WarmJvmPool pool = WarmJvmPool.forClasspath(cp, environment(), PathManager.modulePath());
+                    final List<String> order = JavaConverters.bufferAsJavaList(testOrder.toBuffer());
+                    final OptionalDouble timeout = pool.timeoutSeconds(order);
+
+                    // Orders with tests that have not been timed yet are run by SmartRunner, which knows its own timeout
+                    if (!pool.usable() || !timeout.isPresent()) {
+                        final Try<TestRunResult> smartResult = super.runWithCp(cp, testOrder);
+                        if (smartResult.isSuccess()) {
+                            pool.recordTimes(smartResult.get());
+                        }
+                        return smartResult;
+                    }
+
+                    final TestRunResult pooled;
+                    try {
+                        pooled = pool.run(order, outputPath, timeout.getAsDouble());
+                    } catch (TimeoutException e) {
+                        return new Failure<>(e);
+                    }
+
+                    if (pool.calibrated()) {
+                        return new Success<>(pooled);
+                    }
+
+                    // Until the pool has been shown to give the same results as SmartRunner, use SmartRunner's result
+                    final Try<TestRunResult> smartResult = super.runWithCp(cp, testOrder);
+                    if (smartResult.isSuccess()) {
+                        pool.calibrate(pooled, smartResult.get());
+                    }
+                    return smartResult;
+                });
 
                 if (testRunResultTry.isSuccess()) {
                     RunnerPathManager.outputResult(outputPath, testRunResultTry.get());
@@ -69,6 +113,6 @@ public class InstrumentingSmartRunner extends SmartRunner {
     }
 
     private void writeTo(final Path outputPath) {
-        this.outputPath = outputPath;
+        this.outputPath.set(outputPath);
     }
 }
@@ -0,0 +1,190 @@
+package edu.illinois.cs.dt.tools.runner;
+
+import org.junit.runner.Description;
+import org.junit.runner.JUnitCore;
+import org.junit.runner.Request;
+import org.junit.runner.manipulation.Filter;
+import org.junit.runner.notification.Failure;
+import org.junit.runner.notification.RunListener;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Main class of the JVMs started by {@link WarmJvmPool}.
+ *
+ * The JVM starts, loads JUnit, and then blocks until it is handed a test order (one test per line on stdin).
+ * It runs the order once, writes the results to the path given as the only argument, and exits.
+ *
+ * NOTE: This class runs on the classpath of the project under test, so it must only depend on the JDK and JUnit 4.
+ */
+public class PooledTestWorker {
+    public static void main(final String[] args) throws IOException {
+        final Path resultPath = Paths.get(args[0]);
+
+        // Do the expensive setup before we are handed an order
+        final JUnitCore core = new JUnitCore();
+        final ResultListener listener = new ResultListener();
+        core.addListener(listener);
+
+        final List<String> order = readOrder();
+
+        int start = 0;
+        while (start < order.size()) {
+            final String className = className(order.get(start));
+
+            // Run consecutive tests from the same class together, so class level setup only happens once
+            int end = start;
+            final List<String> methods = new ArrayList<>();
+            while (end < order.size() && className(order.get(end)).equals(className)) {
+                methods.add(order.get(end).substring(className.length() + 1));
+                end++;
+            }
+
+            runClass(core, listener, className, methods);
+            start = end;
+        }
+
+        try (final ObjectOutputStream oos = new ObjectOutputStream(Files.newOutputStream(resultPath))) {
+            oos.writeInt(listener.results.size());
+
+            for (final Map.Entry<String, Object[]> entry : listener.results.entrySet()) {
+                oos.writeUTF(entry.getKey());
+                oos.writeUTF((String) entry.getValue()[0]);
+                oos.writeDouble((Double) entry.getValue()[1]);
+                oos.writeObject(entry.getValue()[2]);
+            }
+        }
+
+        System.exit(0);
+    }
+
+    // The parameters of a test (e.g., a.B.test[1.5]) can contain dots, but class and method names cannot contain brackets
+    private static String className(final String testName) {
+        int nameEnd = testName.length();
+        for (final char bracket : new char[] {'[', '('}) {
+            final int index = testName.indexOf(bracket);
+            if (index >= 0) {
+                nameEnd = Math.min(nameEnd, index);
+            }
+        }
+
+        return testName.substring(0, testName.lastIndexOf('.', nameEnd - 1));
+    }
+
+    private static List<String> readOrder() throws IOException {
+        final BufferedReader reader = new BufferedReader(new InputStreamReader(System.in));
+
+        final List<String> order = new ArrayList<>();
+        String line;
+        while ((line = reader.readLine()) != null && !line.isEmpty()) {
+            order.add(line);
+        }
+
+        return order;
+    }
+
+    private static void runClass(final JUnitCore core, final ResultListener listener,
+                                 final String className, final List<String> methods) {
+        final Class<?> clz;
+        try {
+            clz = Class.forName(className, false, PooledTestWorker.class.getClassLoader());
+        } catch (Throwable t) {
+            for (final String method : methods) {
+                listener.record(className + "." + method, "ERROR", 0.0, t.getStackTrace());
+            }
+            return;
+        }
+
+        final Request request = Request.aClass(clz)
+                .filterWith(new Filter() {
+                    @Override
+                    public boolean shouldRun(final Description description) {
+                        return !description.isTest() || methods.contains(description.getMethodName());
+                    }
+
+                    @Override
+                    public String describe() {
+                        return "Methods " + methods;
+                    }
+                })
+                .sortWith((a, b) -> Integer.compare(methods.indexOf(a.getMethodName()), methods.indexOf(b.getMethodName())));
+
+        listener.currentClass = className;
+        listener.currentMethods = methods;
+        core.run(request);
+    }
+
+    private static class ResultListener extends RunListener {
+        // Test name -> { result, time (seconds), stack trace }
+        private final Map<String, Object[]> results = new LinkedHashMap<>();
+        private final Map<String, Long> startTimes = new LinkedHashMap<>();
+
+        private String currentClass;
+        private List<String> currentMethods = new ArrayList<>();
+
+        private static String testName(final Description description) {
+            return description.getClassName() + "." + description.getMethodName();
+        }
+
+        private void record(final String testName, final String result, final double time,
+                            final StackTraceElement[] stackTrace) {
+            results.put(testName, new Object[] { result, time, stackTrace });
+        }
+
+        private double elapsed(final Description description) {
+            final Long start = startTimes.get(testName(description));
+            return start == null ? 0.0 : (System.nanoTime() - start) / 1E9;
+        }
+
+        @Override
+        public void testStarted(final Description description) {
+            startTimes.put(testName(description), System.nanoTime());
+        }
+
+        @Override
+        public void testFinished(final Description description) {
+            if (!results.containsKey(testName(description))) {
+                record(testName(description), "PASS", elapsed(description), new StackTraceElement[0]);
+            }
+        }
+
+        @Override
+        public void testFailure(final Failure failure) {
+            final String result = failure.getException() instanceof AssertionError ? "FAILURE" : "ERROR";
+
+            // Class level failures (e.g., in @BeforeClass) fail every test in the class that has not finished yet
+            if (failure.getDescription().getMethodName() == null) {
+                for (final String method : currentMethods) {
+                    if (!results.containsKey(currentClass + "." + method)) {
+                        record(currentClass + "." + method, "ERROR", 0.0, failure.getException().getStackTrace());
+                    }
+                }
+                return;
+            }
+
+            record(testName(failure.getDescription()), result, elapsed(failure.getDescription()),
+                    failure.getException().getStackTrace());
+        }
+
+        @Override
+        public void testAssumptionFailure(final Failure failure) {
+            record(testName(failure.getDescription()), "SKIPPED", elapsed(failure.getDescription()),
+                    new StackTraceElement[0]);
+        }
+
+        @Override
+        public void testIgnored(final Description description) {
+            record(testName(description), "SKIPPED", 0.0, new StackTraceElement[0]);
+        }
+    }
+}
@@ -0,0 +1,469 @@
+package edu.illinois.cs.dt.tools.runner;
+
+import edu.illinois.cs.dt.tools.utility.OrderFingerprint;
+import edu.illinois.cs.testrunner.data.results.Result;
+import edu.illinois.cs.testrunner.data.results.TestResult;
+import edu.illinois.cs.testrunner.data.results.TestRunResult;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * Test run results of a module in a compact binary form, in test-runs/store (see dt.results.format).
+ *
+ * - names: every string the results use (test names, and the hashes of stack traces), each stored once. Runs refer
+ *   to strings by their position in this file.
+ * - segment-NNNNN: the runs, one after another, each preceded by its length. Once a segment reaches 64 MB, the next
+ *   run starts a new one.
+ * - index: the fingerprint of each run's id, with the segment and offset of the run. It is read into memory on open.
+ *
+ * A run is its id, its order, and for each test: the test, the result ordinal, the time and the stack trace. Stack
+ * traces are stored in the {@link BlobStore} (blobs, next to test-runs), so each distinct trace is only stored once.
+ * Numbers are written as (zigzag) varints. Everything is only ever appended, and the index entry is written last,
+ * so a run that was cut off while writing it is simply not found. Opening a store only reads it, ignoring whatever was
+ * cut off (so tools can read a store that is still being written); the cut-off ends are dropped from the files before
+ * the first run is appended to them.
+ */
+public class ResultStore {
+    public static final String NAMES = "names";
+    public static final String INDEX = "index";
+
+    private static final long SEGMENT_BYTES = 64L * 1024 * 1024;
+    private static final int INDEX_ENTRY_BYTES = OrderFingerprint.BYTES + Integer.BYTES + Long.BYTES;
+    private static final Result[] RESULTS = Result.values();
+    private static final int CACHED_STACK_TRACES = 1024;
+
+    private static final Map<Path, ResultStore> stores = new HashMap<>();
+
+    public static synchronized ResultStore forPath(final Path path) {
+        return stores.computeIfAbsent(path.toAbsolutePath(), ResultStore::new);
+    }
+
+    /**
+     * Forgets the store at the path (and the names it keeps in memory), e.g., once its module is done. Using it again
+     * later loads it again.
+     */
+    public static synchronized void release(final Path path) {
+        stores.remove(path.toAbsolutePath());
+    }
+
+    public static boolean exists(final Path path) {
+        return Files.isRegularFile(path.resolve(INDEX));
+    }
+
+    /**
+     * The hashes of the blobs the store at the path refers to (along with the other names it uses), read from disk
+     * without keeping the store in memory.
+     */
+    public static Set<String> referencedBlobs(final Path path) throws IOException {
+        final ResultStore store = new ResultStore(path.toAbsolutePath());
+        store.load();
+        return new HashSet<>(store.strings);
+    }
+
+    private final Path path;
+    private final BlobStore blobs;
+
+    private final List<String> strings = new ArrayList<>();
+    private final Map<String, Integer> stringIds = new HashMap<>();
+    // In the order the runs were written
+    private final Map<OrderFingerprint, Location> index = new LinkedHashMap<>();
+    // Failures usually repeat, so keep the stack traces we have seen most recently by the hash of their blob
+    private final Map<String, StackTraceElement[]> stackTraces =
+            new LinkedHashMap<String, StackTraceElement[]>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(final Map.Entry<String, StackTraceElement[]> eldest) {
+                    return size() > CACHED_STACK_TRACES;
+                }
+            };
+
+    private boolean loaded = false;
+    private boolean repaired = false;
+    private int segment = 0;
+    // How much of the names and index files was complete when they were loaded
+    private long namesLength = 0;
+    private long indexLength = 0;
+
+    private ResultStore(final Path path) {
+        this.path = path;
+        // test-runs/store -> blobs, next to test-runs
+        this.blobs = BlobStore.forPath(path.getParent().resolveSibling(RunnerPathManager.BLOBS));
+    }
+
+    private void load() throws IOException {
+        if (loaded) {
+            return;
+        }
+
+        loaded = true;
+
+        // Read the index first: the names a run uses are written before its index entry, so they are all there
+        if (Files.exists(path.resolve(INDEX))) {
+            final ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path.resolve(INDEX)));
+
+            while (buffer.remaining() >= INDEX_ENTRY_BYTES) {
+                final OrderFingerprint key = OrderFingerprint.read(buffer);
+                final Location location = new Location(buffer.getInt(), buffer.getLong());
+
+                index.put(key, location);
+                segment = Math.max(segment, location.segment);
+            }
+
+            indexLength = buffer.position();
+        }
+
+        if (Files.exists(path.resolve(NAMES))) {
+            final ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path.resolve(NAMES)));
+
+            // Ignore a partial entry at the end, if we were killed while writing it (or it is being written)
+            while (buffer.hasRemaining()) {
+                final int start = buffer.position();
+                try {
+                    addString(readString(buffer));
+                } catch (RuntimeException e) {
+                    buffer.position(start);
+                    break;
+                }
+            }
+
+            namesLength = buffer.position();
+        }
+    }
+
+    /**
+     * Drops whatever was cut off from the end of the files, before appending anything to them: names appended after a
+     * partial name would be read at the wrong positions, and runs after the last index entry are never found.
+     */
+    private void repair() throws IOException {
+        if (repaired) {
+            return;
+        }
+
+        repaired = true;
+
+        truncate(path.resolve(NAMES), namesLength);
+        truncate(path.resolve(INDEX), indexLength);
+
+        Location last = null;
+        for (final Location location : index.values()) {
+            if (location.segment == segment && (last == null || location.offset > last.offset)) {
+                last = location;
+            }
+        }
+        truncate(segmentPath(segment), last == null ? 0 : last.offset + Integer.BYTES + recordLength(last));
+        Files.deleteIfExists(segmentPath(segment + 1));
+    }
+
+    public synchronized int size() throws IOException {
+        load();
+        return index.size();
+    }
+
+    public synchronized void write(final TestRunResult testRunResult) throws IOException {
+        load();
+        repair();
+
+        Files.createDirectories(path);
+
+        final int knownStrings = strings.size();
+        final byte[] record;
+
+        try {
+            record = encode(testRunResult);
+
+            // Write the new names first, and the index entry last, so everything a run refers to is there before it is
+            if (strings.size() > knownStrings) {
+                final ByteArrayOutputStream names = new ByteArrayOutputStream();
+                for (final String s : strings.subList(knownStrings, strings.size())) {
+                    writeString(names, s);
+                }
+                append(path.resolve(NAMES), names.toByteArray());
+            }
+        } catch (IOException e) {
+            // Forget the names we could not write, so later runs do not refer to them
+            for (final String s : strings.subList(knownStrings, strings.size())) {
+                stringIds.remove(s);
+            }
+            strings.subList(knownStrings, strings.size()).clear();
+            throw e;
+        }
+
+        if (Files.exists(segmentPath(segment)) && Files.size(segmentPath(segment)) + record.length > SEGMENT_BYTES) {
+            segment++;
+        }
+
+        final long offset = append(segmentPath(segment), record);
+        final Location location = new Location(segment, offset);
+
+        final ByteBuffer entry = ByteBuffer.allocate(INDEX_ENTRY_BYTES);
+        final OrderFingerprint key = key(testRunResult.id());
+        key.write(entry);
+        entry.putInt(location.segment);
+        entry.putLong(location.offset);
+        append(path.resolve(INDEX), entry.array());
+
+        index.put(key, location);
+    }
+
+    public synchronized Optional<TestRunResult> read(final String id) throws IOException {
+        load();
+
+        final Location location = index.get(key(id));
+        return location == null ? Optional.empty() : Optional.of(read(location));
+    }
+
+    /**
+     * Every run, in the order they were written, read one at a time as the stream is consumed.
+     */
+    public Stream<TestRunResult> results() throws IOException {
+        final List<Location> locations;
+        synchronized (this) {
+            load();
+            locations = new ArrayList<>(index.values());
+        }
+
+        return locations.stream().map(location -> {
+            try {
+                return read(location);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    private synchronized TestRunResult read(final Location location) throws IOException {
+        try (final FileChannel channel = FileChannel.open(segmentPath(location.segment), StandardOpenOption.READ)) {
+            final ByteBuffer record = ByteBuffer.allocate(recordLength(channel, location));
+            readFully(channel, record, location.offset + Integer.BYTES);
+            record.flip();
+
+            return decode(record);
+        }
+    }
+
+    private int recordLength(final Location location) throws IOException {
+        try (final FileChannel channel = FileChannel.open(segmentPath(location.segment), StandardOpenOption.READ)) {
+            return recordLength(channel, location);
+        }
+    }
+
+    private static int recordLength(final FileChannel channel, final Location location) throws IOException {
+        final ByteBuffer length = ByteBuffer.allocate(Integer.BYTES);
+        readFully(channel, length, location.offset);
+        length.flip();
+        return length.getInt();
+    }
+
+    private byte[] encode(final TestRunResult testRunResult) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        writeString(out, testRunResult.id());
+
+        writeVarInt(out, testRunResult.testOrder().size());
+        for (final String test : testRunResult.testOrder()) {
+            writeVarInt(out, stringId(test));
+        }
+
+        writeVarInt(out, testRunResult.results().size());
+        for (final Map.Entry<String, TestResult> entry : testRunResult.results().entrySet()) {
+            final TestResult testResult = entry.getValue();
+
+            writeVarInt(out, stringId(entry.getKey()));
+            writeVarInt(out, testResult.result().ordinal());
+            writeLong(out, Double.doubleToLongBits(testResult.time()));
+
+            writeVarInt(out, stackTraceRef(testResult.stackTrace()));
+        }
+
+        final byte[] payload = out.toByteArray();
+        return ByteBuffer.allocate(Integer.BYTES + payload.length).putInt(payload.length).put(payload).array();
+    }
+
+    // 0 for no stack trace, otherwise one more than the id of the hash of the blob holding it
+    private int stackTraceRef(final StackTraceElement[] stackTrace) throws IOException {
+        if (stackTrace == null || stackTrace.length == 0) {
+            return 0;
+        }
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeVarInt(out, stackTrace.length);
+        for (final StackTraceElement element : stackTrace) {
+            writeString(out, element.getClassName());
+            writeString(out, element.getMethodName());
+            writeString(out, element.getFileName() == null ? "" : element.getFileName());
+            writeVarInt(out, element.getLineNumber());
+        }
+
+        final String hash = blobs.put(out.toByteArray());
+        stackTraces.putIfAbsent(hash, stackTrace);
+        return stringId(hash) + 1;
+    }
+
+    private StackTraceElement[] stackTrace(final int ref) throws IOException {
+        if (ref == 0) {
+            return new StackTraceElement[0];
+        }
+
+        final String hash = strings.get(ref - 1);
+        final StackTraceElement[] cached = stackTraces.get(hash);
+        if (cached != null) {
+            return cached;
+        }
+
+        final ByteBuffer buffer = ByteBuffer.wrap(blobs.get(hash));
+        final StackTraceElement[] stackTrace = new StackTraceElement[readVarInt(buffer)];
+        for (int j = 0; j < stackTrace.length; j++) {
+            final String className = readString(buffer);
+            final String methodName = readString(buffer);
+            final String fileName = readString(buffer);
+            final int line = readVarInt(buffer);
+
+            stackTrace[j] = new StackTraceElement(className, methodName, fileName.isEmpty() ? null : fileName, line);
+        }
+
+        stackTraces.put(hash, stackTrace);
+        return stackTrace;
+    }
+
+    private TestRunResult decode(final ByteBuffer buffer) throws IOException {
+        final String id = readString(buffer);
+
+        final int orderSize = readVarInt(buffer);
+        final List<String> order = new ArrayList<>(orderSize);
+        for (int i = 0; i < orderSize; i++) {
+            order.add(strings.get(readVarInt(buffer)));
+        }
+
+        final int resultCount = readVarInt(buffer);
+        final Map<String, TestResult> results = new LinkedHashMap<>();
+        for (int i = 0; i < resultCount; i++) {
+            final String testName = strings.get(readVarInt(buffer));
+            final Result result = RESULTS[readVarInt(buffer)];
+            final double time = Double.longBitsToDouble(buffer.getLong());
+
+            final StackTraceElement[] stackTrace = stackTrace(readVarInt(buffer));
+
+            results.put(testName, new TestResult(testName, result, time, stackTrace));
+        }
+
+        return new TestRunResult(id, Collections.unmodifiableList(order), results);
+    }
+
+    private int stringId(final String s) {
+        final Integer id = stringIds.get(s);
+        return id != null ? id : addString(s);
+    }
+
+    private int addString(final String s) {
+        final int id = strings.size();
+        strings.add(s);
+        stringIds.put(s, id);
+        return id;
+    }
+
+    private Path segmentPath(final int segment) {
+        return path.resolve(String.format("segment-%05d", segment));
+    }
+
+    private static OrderFingerprint key(final String id) {
+        return OrderFingerprint.of(Collections.singletonList(id));
+    }
+
+    // Returns the offset the bytes were written at
+    private static long append(final Path file, final byte[] bytes) throws IOException {
+        try (final FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            final long offset = channel.size();
+            final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            return offset;
+        }
+    }
+
+    private static void truncate(final Path file, final long size) throws IOException {
+        if (Files.exists(file) && Files.size(file) > size) {
+            try (final FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                channel.truncate(size);
+            }
+        }
+    }
+
+    private static void readFully(final FileChannel channel, final ByteBuffer buffer, final long position) throws IOException {
+        long pos = position;
+        while (buffer.hasRemaining()) {
+            final int read = channel.read(buffer, pos);
+            if (read < 0) {
+                throw new IOException("Unexpected end of result store segment at " + pos);
+            }
+            pos += read;
+        }
+    }
+
+    private static void writeString(final ByteArrayOutputStream out, final String s) {
+        final byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(out, bytes.length);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    private static String readString(final ByteBuffer buffer) {
+        final byte[] bytes = new byte[readVarInt(buffer)];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeLong(final ByteArrayOutputStream out, final long value) {
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            out.write((int) (value >>> shift));
+        }
+    }
+
+    static void writeVarInt(final ByteArrayOutputStream out, final int value) {
+        int v = (value << 1) ^ (value >> 31);
+        while ((v & ~0x7F) != 0) {
+            out.write((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        out.write(v);
+    }
+
+    static int readVarInt(final ByteBuffer buffer) {
+        int v = 0;
+        for (int shift = 0; ; shift += 7) {
+            final byte b = buffer.get();
+            v |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                break;
+            }
+        }
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    private static class Location {
+        private final int segment;
+        private final long offset;
+
+        private Location(final int segment, final long offset) {
+            this.segment = segment;
+            this.offset = offset;
+        }
+    }
+}
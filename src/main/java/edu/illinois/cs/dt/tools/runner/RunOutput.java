@@ -0,0 +1,136 @@
+package edu.illinois.cs.dt.tools.runner;
+
+import com.reedoei.eunomia.io.files.FileUtil;
+import edu.illinois.cs.dt.tools.utility.BackgroundWriter;
+import edu.illinois.cs.testrunner.configuration.Configuration;
+import edu.illinois.cs.testrunner.data.results.Result;
+import edu.illinois.cs.testrunner.data.results.TestRunResult;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Saves and reads the stdout/stderr of test runs (test-runs/output/id).
+ *
+ * By default, output is gzipped, and for runs where every test passed only the first dt.output.head_bytes
+ * and the last dt.output.tail_bytes are kept. Runs with a failure or error keep their full output.
+ * The output is stored in the {@link BlobStore}, so runs with the same output share it, and output/id.ref refers to it.
+ * Output saved by older versions (output/id or output/id.gz) can still be read.
+ */
+public class RunOutput {
+    private static final boolean COMPRESS = Configuration.config().getProperty("dt.output.compress", true);
+    // A negative cap keeps everything
+    private static final long HEAD_BYTES = Configuration.config().getProperty("dt.output.head_bytes", 64L * 1024);
+    private static final long TAIL_BYTES = Configuration.config().getProperty("dt.output.tail_bytes", 64L * 1024);
+
+    private static final String GZ = ".gz";
+    private static final String REF = ".ref";
+
+    public static void save(final Path tempOutput, final Path outputPath, final TestRunResult testRunResult) throws IOException {
+        final boolean keepAll = HEAD_BYTES < 0 || TAIL_BYTES < 0 || hasFailure(testRunResult);
+
+        final BlobStore blobs = BlobStore.forModule();
+        final Path blob = blobs.tempFile();
+
+        try (final FileChannel in = FileChannel.open(tempOutput, StandardOpenOption.READ);
+             final OutputStream out = open(blob)) {
+            final long size = in.size();
+
+            if (keepAll || size <= HEAD_BYTES + TAIL_BYTES) {
+                copy(in, 0, size, out);
+            } else {
+                copy(in, 0, HEAD_BYTES, out);
+                out.write(String.format("%n[... %d bytes omitted ...]%n", size - HEAD_BYTES - TAIL_BYTES).getBytes(StandardCharsets.UTF_8));
+                copy(in, size - TAIL_BYTES, TAIL_BYTES, out);
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(blob);
+            throw e;
+        }
+
+        final String hash = blobs.adopt(blob);
+
+        BlobStore.writeRef(Paths.get(outputPath + REF), hash);
+        Files.deleteIfExists(tempOutput);
+    }
+
+    /**
+     * The output of the run in the given output directory, however it was saved.
+     */
+    public static Optional<String> read(final Path outputDir, final String id) {
+        BackgroundWriter.flush();
+
+        try {
+            final Path ref = outputDir.resolve(id + REF);
+            final Path compressed = outputDir.resolve(id + GZ);
+
+            if (Files.exists(ref)) {
+                final Optional<BlobStore> blobs = BlobStore.near(ref);
+                final Optional<String> hash = BlobStore.refHash(FileUtil.readFile(ref));
+                if (blobs.isPresent() && hash.isPresent()) {
+                    return Optional.of(decode(blobs.get().get(hash.get())));
+                }
+            } else if (Files.exists(compressed)) {
+                return Optional.of(decode(Files.readAllBytes(compressed)));
+            } else if (Files.exists(outputDir.resolve(id))) {
+                return Optional.of(decode(Files.readAllBytes(outputDir.resolve(id))));
+            }
+        } catch (IOException ignored) {}
+
+        return Optional.empty();
+    }
+
+    // Output may or may not be gzipped, depending on dt.output.compress when it was saved
+    private static String decode(final byte[] bytes) throws IOException {
+        if (bytes.length >= 2 && (bytes[0] & 0xFF) == 0x1F && (bytes[1] & 0xFF) == 0x8B) {
+            try (final InputStream in = new GZIPInputStream(new ByteArrayInputStream(bytes))) {
+                final ByteArrayOutputStream out = new ByteArrayOutputStream();
+                final byte[] buffer = new byte[8192];
+                int read;
+                while ((read = in.read(buffer)) >= 0) {
+                    out.write(buffer, 0, read);
+                }
+                return new String(out.toByteArray(), StandardCharsets.UTF_8);
+            }
+        }
+
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static boolean hasFailure(final TestRunResult testRunResult) {
+        return testRunResult.results().values().stream()
+                .anyMatch(tr -> tr.result() == Result.FAILURE || tr.result() == Result.ERROR);
+    }
+
+    private static OutputStream open(final Path target) throws IOException {
+        final OutputStream out = Files.newOutputStream(target);
+        return COMPRESS ? new GZIPOutputStream(out, 64 * 1024) : out;
+    }
+
+    private static void copy(final FileChannel in, final long position, final long count, final OutputStream out) throws IOException {
+        final WritableByteChannel channel = Channels.newChannel(out);
+
+        long done = 0;
+        while (done < count) {
+            final long transferred = in.transferTo(position + done, count - done, channel);
+            if (transferred <= 0) {
+                break;
+            }
+            done += transferred;
+        }
+    }
+}
@@ -2,18 +2,25 @@ package edu.illinois.cs.dt.tools.runner;
 
 import com.google.gson.Gson;
 import com.reedoei.eunomia.io.files.FileUtil;
+import edu.illinois.cs.dt.tools.utility.BackgroundWriter;
 import edu.illinois.cs.dt.tools.utility.PathManager;
+import edu.illinois.cs.testrunner.configuration.Configuration;
 import edu.illinois.cs.testrunner.data.results.TestRunResult;
-import org.apache.commons.io.FileUtils;
 
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Optional;
 import java.util.stream.Stream;
 
 public class RunnerPathManager extends PathManager {
     public static final Path TEST_RUNS = Paths.get("test-runs");
+    public static final Path BLOBS = Paths.get("blobs");
+
+    // "binary" (see ResultStore) or "json" (one file per run in test-runs/results)
+    private static final String RESULTS_FORMAT = Configuration.config().getProperty("dt.results.format", "binary");
 
     public static Path testRuns() {
         return path(TEST_RUNS);
@@ -43,26 +50,122 @@ public class RunnerPathManager extends PathManager {
         return resultsPath(run.id());
     }
 
+    public static Path blobsPath() {
+        return path(BLOBS);
+    }
+
+    public static Path storePath() {
+        return storePath(testRuns());
+    }
+
+    public static Path storePath(final Path testRuns) {
+        return testRuns.resolve("store");
+    }
+
     public static void outputResult(final Path tempOutput, final TestRunResult testRunResult) throws Exception {
         final Path outputPath = outputPath(testRunResult);
         final Path resultPath = resultsPath(testRunResult);
+        final Path storePath = storePath();
+
+        // The runner deletes the temporary output when we return, so keep it under another name until it is saved
+        final Path pendingOutput = tempOutput.resolveSibling(tempOutput.getFileName() + ".pending");
+        Files.move(tempOutput, pendingOutput, StandardCopyOption.REPLACE_EXISTING);
+
+        BackgroundWriter.submit(() -> {
+            try {
+                RunOutput.save(pendingOutput, outputPath, testRunResult);
+            } finally {
+                Files.deleteIfExists(pendingOutput);
+            }
+
+            if ("json".equals(RESULTS_FORMAT)) {
+                Files.createDirectories(resultPath.getParent());
+                Files.write(resultPath, testRunResult.toString().getBytes());
+            } else {
+                ResultStore.forPath(storePath).write(testRunResult);
+            }
+        });
+    }
 
-        Files.createDirectories(outputPath.getParent());
-        Files.move(tempOutput, outputPath);
-
-        Files.createDirectories(resultPath.getParent());
-        Files.write(resultPath, testRunResult.toString().getBytes());
+    /**
+     * Forgets what is kept in memory for the results of the current module, once it has no more runs to write.
+     */
+    public static void releaseResults() {
+        BackgroundWriter.flush();
+        ResultStore.release(storePath());
     }
 
-    public static void clearTestRuns() throws IOException {
-        FileUtils.deleteDirectory(testRuns().toFile());
+    /**
+     * Deletes the blobs (output, stack traces, verification results) of the current module that no file refers to any
+     * more, e.g., because the file was overwritten. Only call this once nothing is being written for the module.
+     */
+    public static void collectBlobs() throws IOException {
+        releaseResults();
+
+        if (!Files.isDirectory(blobsPath())) {
+            return;
+        }
+
+        final int deleted = BlobStore.forModule().collect(blobsPath().getParent());
+        if (deleted > 0) {
+            System.out.println("[INFO] Deleted " + deleted + " blobs that no file refers to any more.");
+        }
     }
 
     public static Stream<TestRunResult> resultFor(final String trKey) {
+        return resultFor(testRuns(), trKey);
+    }
+
+    /**
+     * Reads the result from the given test-runs directory, whichever format it was written in.
+     */
+    public static Stream<TestRunResult> resultFor(final Path testRuns, final String trKey) {
+        BackgroundWriter.flush();
+
         try {
-            return Stream.of(new Gson().fromJson(FileUtil.readFile(resultsPath(trKey)), TestRunResult.class));
+            if (ResultStore.exists(storePath(testRuns))) {
+                final Optional<TestRunResult> result = ResultStore.forPath(storePath(testRuns)).read(trKey);
+
+                if (result.isPresent()) {
+                    return Stream.of(result.get());
+                }
+            }
+        } catch (IOException ignored) {}
+
+        try {
+            return Stream.of(new Gson().fromJson(FileUtil.readFile(testRuns.resolve("results").resolve(trKey)), TestRunResult.class));
         } catch (IOException ignored) {}
 
         return Stream.empty();
     }
+
+    /**
+     * Every result in the given test-runs directory, in either format. Close the stream when done, which also forgets
+     * what was kept in memory to read them.
+     */
+    public static Stream<TestRunResult> allResults(final Path testRuns) throws IOException {
+        BackgroundWriter.flush();
+
+        Stream<TestRunResult> results = Stream.empty();
+
+        if (Files.isDirectory(testRuns.resolve("results"))) {
+            final Stream<Path> files = Files.list(testRuns.resolve("results"));
+            results = files.flatMap(FileUtil::safeReadFile)
+                    .flatMap(s -> {
+                        try {
+                            return Stream.of(new Gson().fromJson(s, TestRunResult.class));
+                        } catch (Exception e) {
+                            return Stream.empty();
+                        }
+                    })
+                    .onClose(files::close);
+        }
+
+        if (ResultStore.exists(storePath(testRuns))) {
+            results = Stream.concat(results, ResultStore.forPath(storePath(testRuns)).results())
+                    .onClose(() -> ResultStore.release(storePath(testRuns)));
+        }
+
+        return results;
+    }
 }
@@ -0,0 +1,323 @@
+package edu.illinois.cs.dt.tools.runner;
+
+import edu.illinois.cs.testrunner.configuration.Configuration;
+import edu.illinois.cs.testrunner.data.results.Result;
+import edu.illinois.cs.testrunner.data.results.TestResult;
+import edu.illinois.cs.testrunner.data.results.TestRunResult;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.OptionalDouble;
+import java.util.UUID;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * A pool of JVMs that have already been started (see {@link PooledTestWorker}), keyed by classpath and environment.
+ *
+ * Each JVM runs exactly one order and is then discarded, so test state never leaks from one order to the next.
+ * Whenever a JVM is taken from the pool, a replacement is started right away, so it is (usually) warm by the time
+ * the next order needs to run.
+ *
+ * Only JUnit 4 is supported, and tests are run by {@link PooledTestWorker} rather than by testrunner, so only orders
+ * whose tests have all been run (and timed) before go through the pool; everything else is run by SmartRunner.
+ * An order that takes more than four times the recorded time of its tests (and at least a minute) is killed, and the
+ * run fails, like a run that SmartRunner times out.
+ *
+ * The JVMs run in the module's directory, with the environment of the runner and dt.runner.pool.jvm_args, but they
+ * know nothing about the rest of the surefire configuration (e.g., its argLine or system properties). So that a
+ * difference there does not show up as flaky tests, the first order of each pool is also run by SmartRunner (see
+ * {@link #calibrate}); if any test gets a different result, the pool is not used again.
+ */
+public class WarmJvmPool {
+    private static final int POOL_SIZE = Configuration.config().getProperty("dt.runner.pool.size", 0);
+    private static final double TIMEOUT_FACTOR = 4.0;
+    private static final double MIN_TIMEOUT_SECONDS = 60.0;
+    // Passed to every pooled JVM, e.g., to match the argLine of surefire
+    private static final String JVM_ARGS = Configuration.config().getProperty("dt.runner.pool.jvm_args", "");
+
+    private static final Map<Key, WarmJvmPool> pools = new HashMap<>();
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(WarmJvmPool::shutdownAll));
+    }
+
+    public static boolean enabled() {
+        return POOL_SIZE > 0;
+    }
+
+    public static synchronized WarmJvmPool forClasspath(final String classpath, final Map<String, String> environment,
+                                                        final Path directory) {
+        return pools.computeIfAbsent(new Key(classpath, environment, directory), WarmJvmPool::new);
+    }
+
+    private static synchronized void shutdownAll() {
+        pools.values().forEach(WarmJvmPool::shutdown);
+        pools.clear();
+    }
+
+    private final Key key;
+    private final BlockingDeque<Worker> idle = new LinkedBlockingDeque<>();
+    // The longest time each test has taken so far, from runs in the pool or by SmartRunner
+    private final Map<String, Double> testTimes = new ConcurrentHashMap<>();
+    // Whether an order got the same results here as with SmartRunner, or null until one was compared
+    private volatile Boolean agrees = null;
+
+    private WarmJvmPool(final Key key) {
+        this.key = key;
+    }
+
+    /**
+     * Whether orders can still be run in the pool, i.e., it has not given a different result than SmartRunner.
+     */
+    public boolean usable() {
+        return !Boolean.FALSE.equals(agrees);
+    }
+
+    /**
+     * Whether an order has been run both here and by SmartRunner with the same results, so pooled results can be used.
+     */
+    public boolean calibrated() {
+        return Boolean.TRUE.equals(agrees);
+    }
+
+    /**
+     * Compares the results of the same order run in the pool and by SmartRunner. If any test differs, the pool is not
+     * used again, since its JVMs are evidently not set up like the ones SmartRunner forks.
+     */
+    public void calibrate(final TestRunResult pooled, final TestRunResult smart) {
+        for (final Map.Entry<String, TestResult> entry : smart.results().entrySet()) {
+            final TestResult pooledResult = pooled.results().get(entry.getKey());
+
+            if (pooledResult == null || pooledResult.result() != entry.getValue().result()) {
+                System.out.println("[WARNING] " + entry.getKey() + " was " + entry.getValue().result() + " with SmartRunner but "
+                        + (pooledResult == null ? "not run" : pooledResult.result()) + " in a warm JVM, so the JVM pool is disabled.");
+                agrees = false;
+                return;
+            }
+        }
+
+        synchronized (this) {
+            if (agrees == null) {
+                agrees = true;
+            }
+        }
+    }
+
+    public void recordTimes(final TestRunResult testRunResult) {
+        testRunResult.results().forEach((testName, testResult) -> testTimes.merge(testName, testResult.time(), Math::max));
+    }
+
+    /**
+     * How long the order may run in the pool, or empty if some test in it has not been timed yet (so the order
+     * should be run by SmartRunner instead).
+     */
+    public OptionalDouble timeoutSeconds(final List<String> order) {
+        double total = 0;
+
+        for (final String test : order) {
+            final Double time = testTimes.get(test);
+            if (time == null) {
+                return OptionalDouble.empty();
+            }
+            total += time;
+        }
+
+        return OptionalDouble.of(Math.max(MIN_TIMEOUT_SECONDS, TIMEOUT_FACTOR * total));
+    }
+
+    /**
+     * Runs the order in a warm JVM, and moves everything the JVM printed to outputPath.
+     *
+     * @throws TimeoutException If the order did not finish within timeoutSeconds (the JVM is killed)
+     */
+    public TestRunResult run(final List<String> order, final Path outputPath, final double timeoutSeconds)
+            throws IOException, InterruptedException, TimeoutException {
+        final Worker worker = take();
+
+        try {
+            final TestRunResult testRunResult = worker.run(order, outputPath, timeoutSeconds);
+            recordTimes(testRunResult);
+            return testRunResult;
+        } finally {
+            worker.destroy();
+        }
+    }
+
+    private synchronized Worker take() throws IOException {
+        Worker worker = idle.pollFirst();
+
+        // Workers may have died while waiting (e.g., the JVM could not start), so skip them
+        while (worker != null && !worker.process.isAlive()) {
+            worker.destroy();
+            worker = idle.pollFirst();
+        }
+
+        if (worker == null) {
+            worker = new Worker(key);
+        }
+
+        // Start the replacement now, so it can warm up while this worker runs its order
+        while (idle.size() < POOL_SIZE) {
+            idle.addLast(new Worker(key));
+        }
+
+        return worker;
+    }
+
+    private synchronized void shutdown() {
+        Worker worker;
+        while ((worker = idle.pollFirst()) != null) {
+            worker.destroy();
+        }
+    }
+
+    private static class Worker {
+        private final Process process;
+        private final Path outputFile;
+        private final Path resultFile;
+
+        private Worker(final Key key) throws IOException {
+            this.outputFile = Files.createTempFile("warm-jvm-output", null);
+            this.resultFile = Files.createTempFile("warm-jvm-result", null);
+
+            final List<String> command = new ArrayList<>();
+            command.add(javaPath());
+            for (final String arg : JVM_ARGS.trim().split("\\s+")) {
+                if (!arg.isEmpty()) {
+                    command.add(arg);
+                }
+            }
+            command.addAll(Arrays.asList("-cp", key.classpath + File.pathSeparator + toolPath(),
+                    PooledTestWorker.class.getCanonicalName(), resultFile.toAbsolutePath().toString()));
+
+            final ProcessBuilder builder = new ProcessBuilder(command);
+            builder.environment().putAll(key.environment);
+            // Tests often use paths relative to the module, like when surefire runs them
+            if (key.directory != null) {
+                builder.directory(key.directory.toFile());
+            }
+            builder.redirectErrorStream(true);
+            builder.redirectOutput(outputFile.toFile());
+
+            this.process = builder.start();
+        }
+
+        private TestRunResult run(final List<String> order, final Path outputPath, final double timeoutSeconds)
+                throws IOException, InterruptedException, TimeoutException {
+            try (final Writer writer = new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8)) {
+                for (final String test : order) {
+                    writer.write(test);
+                    writer.write(System.lineSeparator());
+                }
+            }
+
+            if (!process.waitFor((long) Math.ceil(timeoutSeconds * 1000), TimeUnit.MILLISECONDS)) {
+                process.destroyForcibly().waitFor();
+                Files.move(outputFile, outputPath, StandardCopyOption.REPLACE_EXISTING);
+                throw new TimeoutException("Warm JVM did not finish the order within " + timeoutSeconds + " seconds (see " + outputPath + ")");
+            }
+
+            final int exitCode = process.exitValue();
+
+            Files.move(outputFile, outputPath, StandardCopyOption.REPLACE_EXISTING);
+
+            if (exitCode != 0 || Files.size(resultFile) == 0) {
+                throw new IOException("Warm JVM exited with code " + exitCode + " without writing results (see " + outputPath + ")");
+            }
+
+            return new TestRunResult(UUID.randomUUID().toString(), order, readResults());
+        }
+
+        private Map<String, TestResult> readResults() throws IOException {
+            final Map<String, TestResult> results = new HashMap<>();
+
+            try (final ObjectInputStream ois = new ObjectInputStream(Files.newInputStream(resultFile))) {
+                final int count = ois.readInt();
+
+                for (int i = 0; i < count; i++) {
+                    final String testName = ois.readUTF();
+                    final Result result = Result.valueOf(ois.readUTF());
+                    final double time = ois.readDouble();
+                    final StackTraceElement[] stackTrace = (StackTraceElement[]) ois.readObject();
+
+                    results.put(testName, new TestResult(testName, result, time, stackTrace));
+                }
+            } catch (ClassNotFoundException e) {
+                throw new IOException(e);
+            }
+
+            return results;
+        }
+
+        private void destroy() {
+            process.destroyForcibly();
+
+            try {
+                Files.deleteIfExists(outputFile);
+                Files.deleteIfExists(resultFile);
+            } catch (IOException ignored) {}
+        }
+    }
+
+    private static String javaPath() {
+        return Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+    }
+
+    // The jar (or directory) containing PooledTestWorker, which is added to the end of the test classpath
+    private static String toolPath() {
+        try {
+            return Paths.get(PooledTestWorker.class.getProtectionDomain().getCodeSource().getLocation().toURI()).toString();
+        } catch (URISyntaxException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static class Key {
+        private final String classpath;
+        private final Map<String, String> environment;
+        private final Path directory;
+
+        private Key(final String classpath, final Map<String, String> environment, final Path directory) {
+            this.classpath = classpath;
+            this.environment = environment == null ? new HashMap<>() : new HashMap<>(environment);
+            this.directory = directory;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            final Key key = (Key) o;
+            return Objects.equals(classpath, key.classpath) && Objects.equals(environment, key.environment)
+                    && Objects.equals(directory, key.directory);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(classpath, environment, directory);
+        }
+    }
+}
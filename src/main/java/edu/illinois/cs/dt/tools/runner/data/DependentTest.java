@@ -5,6 +5,7 @@ import edu.illinois.cs.testrunner.configuration.Configuration;
 import edu.illinois.cs.testrunner.runner.Runner;
 
 import java.nio.file.Path;
+import java.util.Collections;
 
 public class DependentTest {
     private static final boolean VERIFY_DTS = Configuration.config().getProperty("dt.verify", true);
@@ -38,6 +39,6 @@ public class DependentTest {
     }
 
     public boolean verify(final Runner runner, final Path path) {
-        return intended.verify(name, runner, path) && revealed.verify(name, runner, path);
+        return new VerificationBatch(runner, dt -> path).verify(Collections.singletonList(this)).get(name);
     }
 }
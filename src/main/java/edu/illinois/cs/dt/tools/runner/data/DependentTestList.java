@@ -1,17 +1,22 @@
 package edu.illinois.cs.dt.tools.runner.data;
 
 import com.google.common.base.Preconditions;
+import com.google.common.collect.Streams;
 import com.google.gson.Gson;
+import com.google.gson.stream.JsonReader;
 import com.reedoei.eunomia.collections.ListUtil;
 import com.reedoei.eunomia.io.files.FileUtil;
 import edu.illinois.cs.testrunner.data.results.Result;
 import edu.illinois.cs.testrunner.coreplugin.TestPluginUtil;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -26,6 +31,50 @@ public class DependentTestList {
         return new Gson().fromJson(FileUtil.readFile(path), DependentTestList.class);
     }
 
+    /**
+     * The tests in the list at the given path, read one at a time as the stream is consumed. Close the stream when done.
+     */
+    public static Stream<DependentTest> stream(final Path path) throws IOException {
+        final JsonReader reader = new JsonReader(Files.newBufferedReader(path, StandardCharsets.UTF_8));
+        final Gson gson = new Gson();
+
+        reader.beginObject();
+        while (reader.hasNext() && !"dts".equals(reader.nextName())) {
+            reader.skipValue();
+        }
+
+        if (!reader.hasNext()) {
+            reader.close();
+            return Stream.empty();
+        }
+
+        reader.beginArray();
+
+        final Iterator<DependentTest> iterator = new Iterator<DependentTest>() {
+            @Override
+            public boolean hasNext() {
+                try {
+                    return reader.hasNext();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+
+            @Override
+            public DependentTest next() {
+                return gson.fromJson(reader, DependentTest.class);
+            }
+        };
+
+        return Streams.stream(iterator).onClose(() -> {
+            try {
+                reader.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
     @Deprecated
     public static DependentTestList fromLines(final List<String> lines) {
         final List<DependentTest> dts = new ArrayList<>();
@@ -0,0 +1,55 @@
+package edu.illinois.cs.dt.tools.runner.data;
+
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Writes a {@link DependentTestList} (e.g., flaky-lists.json) and the matching list of names (list.txt) one test at
+ * a time, so the tests never have to be in memory all at once. The JSON is the same as {@link DependentTestList#toString()}.
+ */
+public class DependentTestListWriter implements Closeable {
+    private final Gson gson = new Gson();
+    private final JsonWriter json;
+    private final BufferedWriter names;
+
+    private int size = 0;
+
+    public DependentTestListWriter(final Path dtListPath, final Path listPath) throws IOException {
+        this.json = new JsonWriter(Files.newBufferedWriter(dtListPath, StandardCharsets.UTF_8));
+        this.names = Files.newBufferedWriter(listPath, StandardCharsets.UTF_8);
+
+        json.beginObject().name("dts").beginArray();
+    }
+
+    public void add(final DependentTest dependentTest) throws IOException {
+        gson.toJson(dependentTest, DependentTest.class, json);
+
+        if (size > 0) {
+            names.newLine();
+        }
+        names.write(dependentTest.name());
+
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            json.endArray().endObject();
+            json.close();
+        } finally {
+            names.close();
+        }
+    }
+}
@@ -1,19 +1,17 @@
 package edu.illinois.cs.dt.tools.runner.data;
 
 import edu.illinois.cs.dt.tools.detection.DetectorPathManager;
+import edu.illinois.cs.dt.tools.runner.BlobStore;
 import edu.illinois.cs.testrunner.configuration.Configuration;
 import edu.illinois.cs.testrunner.data.results.Result;
 import edu.illinois.cs.testrunner.data.results.TestRunResult;
-import edu.illinois.cs.testrunner.runner.Runner;
 
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.IntStream;
 
 public class TestRun {
-    private static final int VERIFY_ROUNDS = Configuration.config().getProperty("dt.verify.rounds", 1);
+    static final int VERIFY_ROUNDS = Configuration.config().getProperty("dt.verify.rounds", 1);
 
     private final List<String> order;
     private final Result result;
@@ -37,26 +35,31 @@ public class TestRun {
         return testRunId;
     }
 
-    public boolean verify(final String dt, final Runner runner, final Path path) {
-        return IntStream.range(0, VERIFY_ROUNDS)
-                .allMatch(i -> verifyRound(dt, runner, path, i));
+    /**
+     * The order run to verify dt: everything that ran before it, then dt itself.
+     */
+    List<String> verifyOrder(final String dt) {
+        final List<String> order = new ArrayList<>(this.order);
+        if (!order.contains(dt)) {
+            order.add(dt);
+        }
+        return order;
     }
 
-    private boolean verifyRound(final String dt, final Runner runner, final Path path, final int i) {
+    /**
+     * Whether dt got the same result in results (which may be null if the run failed) as in this run.
+     */
+    boolean checkResult(final String dt, final TestRunResult results, final Path path, final int i) {
         Result newResult = null;
         try {
-            final List<String> order = new ArrayList<>(this.order);
-            if (!order.contains(dt)) {
-                order.add(dt);
-            }
-            final TestRunResult results = runner.runList(order).get();
-
-            newResult = results.results().get(dt).result();
+            if (results != null) {
+                newResult = results.results().get(dt).result();
 
-            if (path != null) {
-                final Path outputPath = DetectorPathManager.pathWithRound(path, dt + "-" + this.result, i);
-                Files.createDirectories(outputPath.getParent());
-                Files.write(outputPath, results.toString().getBytes());
+                if (path != null) {
+                    // Verification runs of the same order usually have the same results, so only store them once
+                    final Path outputPath = DetectorPathManager.pathWithRound(path, dt + "-" + this.result, i);
+                    BlobStore.forModule().putRef(outputPath, results.toString());
+                }
             }
         } catch (Exception ignored) {}
 
@@ -0,0 +1,238 @@
+package edu.illinois.cs.dt.tools.runner.data;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import edu.illinois.cs.dt.tools.utility.PathManager;
+import edu.illinois.cs.testrunner.configuration.Configuration;
+import edu.illinois.cs.testrunner.data.results.TestRunResult;
+import edu.illinois.cs.testrunner.runner.Runner;
+import edu.illinois.cs.testrunner.util.ProjectWrapper;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+/**
+ * Verifies several dependent tests at once.
+ *
+ * Verifying a test reruns everything before it in the intended and the revealed order, so the tests found in one
+ * round are verified by prefixes of the same two orders. Any run of a longer prefix also verifies every test in a
+ * shorter prefix of it, so each side only needs one run per longest prefix (usually one run in total).
+ *
+ * This is not quite the same as calling {@link DependentTest#verify} on each test: the tests after a test in the longer
+ * run cannot change its result, but they can make the whole run fail (e.g., by hanging until the run times out, or by
+ * crashing the JVM). When that leaves a test without a result, the test is verified again on its own prefix, so such a
+ * failure only costs an extra run. A test whose result comes back but differs (e.g., a later test that changes the
+ * timing of the whole run) is still not confirmed.
+ *
+ * With dt.verify.workers greater than 1, the runs for both orders and every verify round are started at once on a
+ * shared pool of that many threads, each running its order in a forked JVM, instead of one after the other. Given
+ * enough workers, verifying the tests found in a detection round then takes about as long as its longest run, rather
+ * than 2 * dt.verify.rounds runs. The results are still checked in the same order as running them one at a time, but
+ * a test that fails verification costs extra runs: the runs of its later verify rounds and of its revealed order are
+ * skipped if they have not started yet, but not stopped if they have. The revealed order is also planned before
+ * knowing which intended orders are confirmed, so it may be a longer prefix than needed.
+ */
+public class VerificationBatch {
+    private static final int WORKERS = Configuration.config().getProperty("dt.verify.workers", 1);
+
+    private static ExecutorService executor = null;
+
+    private static synchronized ExecutorService executor() {
+        if (executor == null) {
+            executor = Executors.newFixedThreadPool(WORKERS,
+                    new ThreadFactoryBuilder().setNameFormat("verify-%d").setDaemon(true).build());
+        }
+
+        return executor;
+    }
+
+    private final Runner runner;
+    private final Function<DependentTest, Path> pathFor;
+
+    /**
+     * @param pathFor Where to write the results of the runs that verify each test (may return null)
+     */
+    public VerificationBatch(final Runner runner, final Function<DependentTest, Path> pathFor) {
+        this.runner = runner;
+        this.pathFor = pathFor;
+    }
+
+    /**
+     * @return Whether each test was confirmed, by name
+     */
+    public Map<String, Boolean> verify(final List<DependentTest> dependentTests) {
+        // Also read by the runs on the pool, to skip runs that are no longer needed
+        final Map<String, Boolean> confirmed = new ConcurrentHashMap<>();
+        for (final DependentTest dependentTest : dependentTests) {
+            confirmed.put(dependentTest.name(), true);
+        }
+
+        final List<Function<DependentTest, TestRun>> sides =
+                Arrays.asList(DependentTest::intended, DependentTest::revealed);
+
+        if (WORKERS <= 1) {
+            // Only verify the revealed order of tests whose intended order was confirmed
+            for (final Function<DependentTest, TestRun> side : sides) {
+                final List<PrefixRun> runs = plan(dependentTests, side, confirmed);
+
+                for (int i = 0; i < TestRun.VERIFY_ROUNDS; i++) {
+                    for (final PrefixRun run : runs) {
+                        // Stop verifying a test as soon as one of its rounds fails
+                        if (needed(run, confirmed)) {
+                            check(run, side, i, run(run.order), confirmed);
+                        }
+                    }
+                }
+            }
+        } else {
+            checkAll(dependentTests, sides, confirmed);
+        }
+
+        return confirmed;
+    }
+
+    /**
+     * Starts every run on the pool at once, then checks the results in the same order as running them one at a time.
+     */
+    private void checkAll(final List<DependentTest> dependentTests,
+                          final List<Function<DependentTest, TestRun>> sides,
+                          final Map<String, Boolean> confirmed) {
+        // The runner writes its output relative to the current module
+        final ProjectWrapper project = PathManager.project();
+
+        final List<Runnable> checks = new ArrayList<>();
+        for (final Function<DependentTest, TestRun> side : sides) {
+            final List<PrefixRun> runs = plan(dependentTests, side, confirmed);
+
+            for (int i = 0; i < TestRun.VERIFY_ROUNDS; i++) {
+                for (final PrefixRun run : runs) {
+                    final Future<TestRunResult> future = executor().submit(() -> {
+                        // Every test in it already failed an earlier check (which never changes back)
+                        if (!needed(run, confirmed)) {
+                            return null;
+                        }
+
+                        PathManager.setProject(project);
+                        try {
+                            return run(run.order);
+                        } finally {
+                            PathManager.setProject(null);
+                        }
+                    });
+
+                    final int round = i;
+                    checks.add(() -> check(run, side, round, result(future), confirmed));
+                }
+            }
+        }
+
+        checks.forEach(Runnable::run);
+    }
+
+    private void check(final PrefixRun run,
+                       final Function<DependentTest, TestRun> side,
+                       final int i,
+                       final TestRunResult results,
+                       final Map<String, Boolean> confirmed) {
+        for (final DependentTest dependentTest : run.members) {
+            if (confirmed.get(dependentTest.name())) {
+                final TestRun testRun = side.apply(dependentTest);
+                final List<String> order = testRun.verifyOrder(dependentTest.name());
+
+                TestRunResult testResults = results;
+                // The rest of the longer run failed without giving this test a result, so run its own prefix
+                if (!hasResult(results, dependentTest.name()) && order.size() < run.order.size()) {
+                    testResults = run(order);
+                }
+
+                final boolean ok = testRun.checkResult(dependentTest.name(), testResults,
+                        pathFor.apply(dependentTest), i);
+                confirmed.put(dependentTest.name(), ok);
+            }
+        }
+    }
+
+    private static boolean needed(final PrefixRun run, final Map<String, Boolean> confirmed) {
+        return run.members.stream().anyMatch(dt -> confirmed.get(dt.name()));
+    }
+
+    private static TestRunResult result(final Future<TestRunResult> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            return null;
+        }
+    }
+
+    private static boolean hasResult(final TestRunResult results, final String testName) {
+        return results != null && results.results().get(testName) != null;
+    }
+
+    private TestRunResult run(final List<String> order) {
+        try {
+            return runner.runList(order).get();
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * Assigns every test still to be verified to a run that has its verify order as a prefix, starting a new run
+     * only when there is none. Going from longest to shortest, this gives the fewest runs.
+     */
+    static List<PrefixRun> plan(final List<DependentTest> dependentTests,
+                                final Function<DependentTest, TestRun> side,
+                                final Map<String, Boolean> confirmed) {
+        final Map<DependentTest, List<String>> orders = new HashMap<>();
+        final List<DependentTest> pending = new ArrayList<>();
+        for (final DependentTest dependentTest : dependentTests) {
+            if (confirmed.get(dependentTest.name())) {
+                orders.put(dependentTest, side.apply(dependentTest).verifyOrder(dependentTest.name()));
+                pending.add(dependentTest);
+            }
+        }
+
+        pending.sort(Comparator.comparingInt((DependentTest dt) -> orders.get(dt).size()).reversed());
+
+        final List<PrefixRun> runs = new ArrayList<>();
+        for (final DependentTest dependentTest : pending) {
+            final List<String> order = orders.get(dependentTest);
+
+            PrefixRun run = runs.stream().filter(r -> r.covers(order)).findFirst().orElse(null);
+            if (run == null) {
+                run = new PrefixRun(order);
+                runs.add(run);
+            }
+
+            run.members.add(dependentTest);
+        }
+
+        return runs;
+    }
+
+    static class PrefixRun {
+        final List<String> order;
+        final List<DependentTest> members = new ArrayList<>();
+
+        private PrefixRun(final List<String> order) {
+            this.order = order;
+        }
+
+        private boolean covers(final List<String> prefix) {
+            return prefix.size() <= order.size() && order.subList(0, prefix.size()).equals(prefix);
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package edu.illinois.cs.dt.tools.utility;
+
+import edu.illinois.cs.testrunner.configuration.Configuration;
+import edu.illinois.cs.testrunner.util.ProjectWrapper;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Writes results, rounds and logs on a single background thread, so the next test order can start running while the
+ * results of the previous one are being serialized and written.
+ *
+ * Writes happen in the order they were submitted. At most dt.writer.queue_size writes wait at once; after that,
+ * submitting blocks until the writer catches up. Anything that reads what may have been written in the background
+ * calls {@link #flush()} first, and everything is flushed when the JVM exits.
+ * With dt.writer.queue_size set to 0, everything is written right away on the thread that submits it.
+ *
+ * A write that fails is not retried. Failures are kept for the module that submitted the write and thrown (wrapped in
+ * a RuntimeException, with any later ones suppressed) from the next call to {@link #submit(Write)} or {@link #flush()}
+ * for that module, so whoever relies on the write finds out it is missing, and other modules are not blamed for it.
+ */
+public class BackgroundWriter {
+    private static final int QUEUE_SIZE = Configuration.config().getProperty("dt.writer.queue_size", 64);
+
+    private static BackgroundWriter writer = null;
+    // Module (PathManager.project()) -> the writes submitted for it that failed
+    private static final Map<ProjectWrapper, List<Exception>> failures = new HashMap<>();
+
+    private static synchronized BackgroundWriter writer() {
+        if (writer == null) {
+            writer = new BackgroundWriter();
+            Runtime.getRuntime().addShutdownHook(new Thread(BackgroundWriter::flush, "background-writer-flush"));
+        }
+
+        return writer;
+    }
+
+    public static void submit(final Write write) {
+        rethrowFailure();
+
+        if (QUEUE_SIZE <= 0) {
+            run(write);
+            rethrowFailure();
+        } else {
+            writer().enqueue(write);
+        }
+    }
+
+    /**
+     * Waits until everything submitted so far has been written.
+     */
+    public static void flush() {
+        final BackgroundWriter current;
+        synchronized (BackgroundWriter.class) {
+            current = writer;
+        }
+
+        // Writes never wait for other writes
+        if (current != null && Thread.currentThread() == current.thread) {
+            return;
+        }
+
+        if (current != null) {
+            current.waitFor(current.submitted());
+        }
+
+        rethrowFailure();
+    }
+
+    private static void rethrowFailure() {
+        final List<Exception> failed;
+        synchronized (failures) {
+            failed = failures.remove(PathManager.project());
+        }
+
+        if (failed != null) {
+            final RuntimeException exception = new RuntimeException("Background write failed", failed.get(0));
+            failed.subList(1, failed.size()).forEach(exception::addSuppressed);
+            throw exception;
+        }
+    }
+
+    private static void run(final Write write) {
+        try {
+            write.run();
+        } catch (Exception e) {
+            System.out.println("[ERROR] Background write failed: " + e);
+            e.printStackTrace();
+            synchronized (failures) {
+                failures.computeIfAbsent(PathManager.project(), project -> new ArrayList<>()).add(e);
+            }
+        }
+    }
+
+    private final Thread thread;
+    private final BlockingQueue<Task> queue = new ArrayBlockingQueue<>(QUEUE_SIZE);
+    private final Object lock = new Object();
+    private long submitted = 0;
+    private long completed = 0;
+
+    private BackgroundWriter() {
+        thread = new Thread(this::loop, "background-writer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void enqueue(final Write write) {
+        // A write that submits another write does it right away, rather than waiting for space in the queue
+        if (Thread.currentThread() == thread) {
+            run(write);
+            return;
+        }
+
+        // Paths are relative to the module that was current when the write was submitted
+        final Task task = new Task(PathManager.project(), write);
+
+        synchronized (lock) {
+            submitted++;
+        }
+
+        try {
+            queue.put(task);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            synchronized (lock) {
+                submitted--;
+            }
+            run(write);
+        }
+    }
+
+    private long submitted() {
+        synchronized (lock) {
+            return submitted;
+        }
+    }
+
+    private void waitFor(final long target) {
+        synchronized (lock) {
+            while (completed < target) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private void loop() {
+        while (true) {
+            final Task task;
+            try {
+                task = queue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+
+            PathManager.setProject(task.project);
+            try {
+                run(task.write);
+            } finally {
+                PathManager.setProject(null);
+            }
+
+            synchronized (lock) {
+                completed++;
+                lock.notifyAll();
+            }
+        }
+    }
+
+    @FunctionalInterface
+    public interface Write {
+        void run() throws Exception;
+    }
+
+    private static class Task {
+        private final ProjectWrapper project;
+        private final Write write;
+
+        private Task(final ProjectWrapper project, final Write write) {
+            this.project = project;
+            this.write = write;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package edu.illinois.cs.dt.tools.utility;
+
+import com.reedoei.eunomia.util.StandardMain;
+import edu.illinois.cs.testrunner.data.results.TestRunResult;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Writes every test run result under a directory (in either format, see dt.results.format) as one JSON file per run,
+ * named by the id of the run, like test-runs/results when using dt.results.format=json.
+ */
+public class ExportTestRuns extends StandardMain {
+    private final Path results;
+    private final Path outputPath;
+
+    private ExportTestRuns(final String[] args) {
+        super(args);
+
+        results = Paths.get(getArgRequired("results"));
+        outputPath = Paths.get(getArg("output").orElse("results"));
+    }
+
+    public static void main(final String[] args) {
+        try {
+            new ExportTestRuns(args).run();
+        } catch (Exception e) {
+            e.printStackTrace();
+
+            System.exit(1);
+        }
+
+        System.exit(0);
+    }
+
+    @Override
+    protected void run() throws Exception {
+        Files.createDirectories(outputPath);
+
+        final AtomicInteger count = new AtomicInteger(0);
+        try (final Stream<TestRunResult> testRunResults = new TestRunParser(results).testRunResults()) {
+            testRunResults.forEach(testRunResult -> {
+                try {
+                    Files.write(outputPath.resolve(testRunResult.id()), testRunResult.toString().getBytes());
+                    count.incrementAndGet();
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            });
+        }
+
+        System.out.println("[INFO] Wrote " + count.get() + " test runs to " + outputPath);
+    }
+}
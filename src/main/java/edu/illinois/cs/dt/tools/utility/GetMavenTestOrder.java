@@ -1,26 +1,29 @@
 package edu.illinois.cs.dt.tools.utility;
 
 import com.reedoei.eunomia.util.StandardMain;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
-import org.xml.sax.SAXException;
-
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
 import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.TreeMap;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import edu.illinois.cs.testrunner.configuration.Configuration;
 
 public class GetMavenTestOrder extends StandardMain {
@@ -29,7 +32,7 @@ public class GetMavenTestOrder extends StandardMain {
     
     @Override
     protected void run() throws Exception {
-        final List<String> classOrder = getClassOrder(mvnTestLog.toFile());
+        final Map<String, Integer> classIndex = classIndex(getClassOrder(mvnTestLog.toFile()));
 
         TreeMap<Long, List<TestClassData>> timeToTestClass = testClassDataMap();
 
@@ -43,7 +46,7 @@ public class GetMavenTestOrder extends StandardMain {
                 TreeMap<Integer, List<TestClassData>> indexToTestClass = new TreeMap<>();
 
                 for (TestClassData data : dataList) {
-                    int index = classOrder.indexOf(data.className);
+                    int index = classIndex.getOrDefault(data.className, -1);
                     List<TestClassData> currentList = indexToTestClass.get(index);
                     if (currentList == null) {
                         currentList = new ArrayList<>();
@@ -70,29 +73,47 @@ public class GetMavenTestOrder extends StandardMain {
         }
     }
 
-    private TreeMap<Long, List<TestClassData>> testClassDataMap() throws IOException, ParserConfigurationException, SAXException {
-        final List<Path> allResultsFolders = Files.walk(sureFireDirectory)
-                .filter(path -> path.toString().contains("TEST-"))
-                .collect(Collectors.toList());
+    private TreeMap<Long, List<TestClassData>> testClassDataMap() throws IOException {
+        final List<Path> allResultsFolders;
+        try (final Stream<Path> paths = Files.walk(sureFireDirectory)) {
+            allResultsFolders = paths.filter(path -> path.toString().contains("TEST-")).collect(Collectors.toList());
+        }
+
+        // The reports are independent, so parse them at the same time (the list keeps the order of the files)
+        final List<TestClassData> parsed;
+        try {
+            parsed = allResultsFolders.parallelStream()
+                    .map(p -> {
+                        try {
+                            return parseXML(p.toFile());
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        } catch (XMLStreamException e) {
+                            throw new UncheckedIOException(new IOException("Could not parse " + p, e));
+                        }
+                    })
+                    .collect(Collectors.toList());
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
 
         TreeMap<Long, List<TestClassData>> timeToTestClass = new TreeMap<>();
-        for (final Path p : allResultsFolders) {
-            File f = p.toFile();
-            long time = f.lastModified();
+        for (int i = 0; i < allResultsFolders.size(); i++) {
+            long time = allResultsFolders.get(i).toFile().lastModified();
 
             List<TestClassData> currentList = timeToTestClass.get(time);
             if (currentList == null) {
                 currentList = new ArrayList<>();
             }
-            currentList.add(parseXML(f));
+            currentList.add(parsed.get(i));
 
             timeToTestClass.put(time, currentList);
         }
         return timeToTestClass;
     }
 
-    public List<TestClassData> testClassDataList() throws IOException, ParserConfigurationException, SAXException {
-        final List<String> classOrder = getClassOrder(mvnTestLog.toFile());
+    public List<TestClassData> testClassDataList() throws IOException {
+        final Map<String, Integer> classIndex = classIndex(getClassOrder(mvnTestLog.toFile()));
 
         final TreeMap<Long, List<TestClassData>> timeToTestClass = testClassDataMap();
 
@@ -105,7 +126,7 @@ public class GetMavenTestOrder extends StandardMain {
                 TreeMap<Integer, List<TestClassData>> indexToTestClass = new TreeMap<>();
 
                 for (TestClassData data : dataList) {
-                    int index = classOrder.indexOf(data.className);
+                    int index = classIndex.getOrDefault(data.className, -1);
                     List<TestClassData> currentList = indexToTestClass.get(index);
                     if (currentList == null) {
                         currentList = new ArrayList<>();
@@ -141,6 +162,15 @@ public class GetMavenTestOrder extends StandardMain {
         sb.setLength(0);
     }
 
+    // The position each class first ran at (like classOrder.indexOf, without searching the list for every class)
+    private static Map<String, Integer> classIndex(final List<String> classOrder) {
+        final Map<String, Integer> classIndex = new HashMap<>();
+        for (int i = 0; i < classOrder.size(); i++) {
+            classIndex.putIfAbsent(classOrder.get(i), i);
+        }
+        return classIndex;
+    }
+
     private List<String> getClassOrder(File f) {
         List<String> classNames = new ArrayList<>();
         try {
@@ -160,53 +190,76 @@ public class GetMavenTestOrder extends StandardMain {
         return classNames;
     }
 
-    private TestClassData parseXML(File xmlFile) throws IOException, SAXException, ParserConfigurationException {
+    /**
+     * Reads the class, time and tests (except skipped ones) from a surefire report, one element at a time.
+     * The contents of system-out and system-err, which can be very large, are dropped before they reach the parser.
+     */
+    private TestClassData parseXML(File xmlFile) throws IOException, XMLStreamException {
         List<String> testNames = new ArrayList<>();
         String className = "";
         double testTime = 0;
 
-        DocumentBuilder dBuilder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
-        Document doc = dBuilder.parse(xmlFile);
-
-        Element rootElement = doc.getDocumentElement();
-        rootElement.normalize();
-
-        int errors = Integer.parseInt(rootElement.getAttribute("errors"));
-        int failures = Integer.parseInt(rootElement.getAttribute("failures"));
-
-	if (mvnTestMustPass){
-	    if (errors != 0 || failures != 0) {
-		// errors/failures found in the test suite from running mvn test.
-		// this test suite should not proceed to use detectors
-		throw new RuntimeException("Failures or errors occurred in mvn test");
-	    }
-	}
-
-        className = rootElement.getAttribute("name");
-        testTime = Double.parseDouble(rootElement.getAttribute("time"));
-
-        NodeList nList = doc.getElementsByTagName("testcase");
-        for (int temp = 0; temp < nList.getLength(); temp++) {
-            Node nNode = nList.item(temp);
-
-            if (nNode.getNodeType() == Node.ELEMENT_NODE) {
-
-                Element eElement = (Element) nNode;
-
-                if (eElement.getElementsByTagName("skipped").getLength() != 0) {
-                    // this test case was marked as skip and therefore should not be ran by us
-                    // TODO
-                    continue;
+        try (final InputStream in = new SkipElementsInputStream(new BufferedInputStream(new FileInputStream(xmlFile), 64 * 1024),
+                                                                "system-out", "system-err")) {
+            final XMLStreamReader reader = xmlInputFactory().createXMLStreamReader(in);
+
+            try {
+                boolean seenRoot = false;
+                String testName = null;
+                boolean skipped = false;
+
+                while (reader.hasNext()) {
+                    final int event = reader.next();
+
+                    if (event == XMLStreamConstants.START_ELEMENT) {
+                        final String element = reader.getLocalName();
+
+                        if (!seenRoot) {
+                            seenRoot = true;
+
+                            int errors = Integer.parseInt(reader.getAttributeValue(null, "errors"));
+                            int failures = Integer.parseInt(reader.getAttributeValue(null, "failures"));
+
+                            if (mvnTestMustPass) {
+                                if (errors != 0 || failures != 0) {
+                                    // errors/failures found in the test suite from running mvn test.
+                                    // this test suite should not proceed to use detectors
+                                    throw new RuntimeException("Failures or errors occurred in mvn test");
+                                }
+                            }
+
+                            className = reader.getAttributeValue(null, "name");
+                            testTime = Double.parseDouble(reader.getAttributeValue(null, "time"));
+                        } else if ("testcase".equals(element)) {
+                            testName = reader.getAttributeValue(null, "name");
+                            skipped = false;
+                        } else if ("skipped".equals(element)) {
+                            // this test case was marked as skip and therefore should not be ran by us
+                            skipped = true;
+                        }
+                    } else if (event == XMLStreamConstants.END_ELEMENT && "testcase".equals(reader.getLocalName())) {
+                        if (testName != null && !skipped) {
+                            testNames.add(testName);
+                        }
+                        testName = null;
+                    }
                 }
-
-                String testName = eElement.getAttribute("name");
-                testNames.add(testName);
+            } finally {
+                reader.close();
             }
         }
 
         return new TestClassData(className, testNames, testTime);
     }
 
+    private static XMLInputFactory xmlInputFactory() {
+        final XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.IS_COALESCING, false);
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    }
+
     private final Path mvnTestLog;
     private final Path sureFireDirectory;
 
@@ -3,9 +3,7 @@ package edu.illinois.cs.dt.tools.utility;
 import edu.illinois.cs.dt.tools.detection.DetectorPathManager;
 import edu.illinois.cs.testrunner.coreplugin.TestPlugin;
 import edu.illinois.cs.testrunner.util.ProjectWrapper;
-import org.xml.sax.SAXException;
 
-import javax.xml.parsers.ParserConfigurationException;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
@@ -39,12 +37,12 @@ public class ModuleTestTimePlugin  extends TestPlugin {
 
             Files.write(outputFile, Collections.singletonList(outputStr), StandardCharsets.UTF_8,
                     Files.exists(outputFile) ? StandardOpenOption.APPEND : StandardOpenOption.CREATE);
-        } catch (SAXException | ParserConfigurationException | IOException e) {
+        } catch (IOException e) {
             throw new RuntimeException(e);
         }
     }
 
-    private double timeFrom(final Path path, final Path mvnTestLog) throws IOException, ParserConfigurationException, SAXException {
+    private double timeFrom(final Path path, final Path mvnTestLog) throws IOException {
         if (Files.exists(path)) {
             return new GetMavenTestOrder(path, mvnTestLog).testClassDataList().stream()
                     .mapToDouble(TestClassData::classTime).sum();
@@ -0,0 +1,68 @@
+package edu.illinois.cs.dt.tools.utility;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * A 128-bit fingerprint of a test order (see {@link OrderHasher}).
+ */
+public final class OrderFingerprint {
+    public static final int BYTES = 16;
+
+    public static OrderFingerprint of(final List<String> order) {
+        final OrderHasher hasher = new OrderHasher();
+        for (final String test : order) {
+            hasher.append(test);
+        }
+        return hasher.snapshot();
+    }
+
+    public static OrderFingerprint read(final ByteBuffer buffer) {
+        final long high = buffer.getLong();
+        final long low = buffer.getLong();
+        return new OrderFingerprint(high, low);
+    }
+
+    private final long high;
+    private final long low;
+
+    public OrderFingerprint(final long high, final long low) {
+        this.high = high;
+        this.low = low;
+    }
+
+    public long high() {
+        return high;
+    }
+
+    public long low() {
+        return low;
+    }
+
+    public void write(final ByteBuffer buffer) {
+        buffer.putLong(high);
+        buffer.putLong(low);
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof OrderFingerprint)) {
+            return false;
+        }
+        final OrderFingerprint that = (OrderFingerprint) o;
+        return high == that.high && low == that.low;
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) (low ^ (low >>> 32));
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%016x%016x", high, low);
+    }
+}
@@ -0,0 +1,81 @@
+package edu.illinois.cs.dt.tools.utility;
+
+/**
+ * Computes {@link OrderFingerprint}s one test at a time, without building the whole order as a string.
+ *
+ * Each test name is hashed character by character with two unrelated 64-bit hashes (FNV-1a, and the MurmurHash3 mixing
+ * steps with their own seed), which are then chained into the running state, so the fingerprint depends on the order
+ * of the tests and not just on which tests there are. The fingerprint of the order so far can be taken at any point
+ * (e.g., for every prefix of an order).
+ *
+ * This is not a cryptographic hash: it is meant to tell apart the orders that detection actually generates, not to
+ * resist names chosen to collide.
+ */
+public class OrderHasher {
+    private static final long FNV_OFFSET = 0xCBF29CE484222325L;
+    private static final long FNV_PRIME = 0x100000001B3L;
+    private static final long GOLDEN = 0x9E3779B97F4A7C15L;
+    private static final long MIX = 0xC2B2AE3D27D4EB4FL;
+    private static final long MURMUR_SEED = 0x3C6EF372FE94F82BL;
+    private static final long MURMUR_C1 = 0x87C37B91114253D5L;
+    private static final long MURMUR_C2 = 0x4CF5AD432745937FL;
+
+    private long high = 0x6A09E667F3BCC908L;
+    private long low = 0xBB67AE8584CAA73BL;
+    private int length = 0;
+
+    public OrderHasher append(final String test) {
+        return append(nameHashA(test), nameHashB(test));
+    }
+
+    /**
+     * Appends a test whose name was already hashed with {@link #nameHashA(String)} and {@link #nameHashB(String)},
+     * e.g., when the same tests are hashed in many orders.
+     */
+    public OrderHasher append(final long a, final long b) {
+        high = fmix64(high * GOLDEN + fmix64(a));
+        low = fmix64((low ^ fmix64(b + GOLDEN)) * MIX);
+        length++;
+
+        return this;
+    }
+
+    public static long nameHashA(final String test) {
+        long a = FNV_OFFSET;
+        for (int i = 0; i < test.length(); i++) {
+            a = (a ^ test.charAt(i)) * FNV_PRIME;
+        }
+        return a;
+    }
+
+    // The MurmurHash3 (x64) block mixing, one character per block
+    public static long nameHashB(final String test) {
+        long b = MURMUR_SEED;
+        for (int i = 0; i < test.length(); i++) {
+            long k = test.charAt(i) * MURMUR_C1;
+            k = Long.rotateLeft(k, 31) * MURMUR_C2;
+
+            b ^= k;
+            b = Long.rotateLeft(b, 27) * 5 + 0x52DCE729;
+        }
+        return fmix64(b ^ test.length());
+    }
+
+    public int length() {
+        return length;
+    }
+
+    public OrderFingerprint snapshot() {
+        return new OrderFingerprint(fmix64(high ^ length), fmix64(low + length));
+    }
+
+    // Finalizer from MurmurHash3
+    public static long fmix64(long k) {
+        k ^= k >>> 33;
+        k *= 0xFF51AFD7ED558CCDL;
+        k ^= k >>> 33;
+        k *= 0xC4CEB93FE53E2B57L;
+        k ^= k >>> 33;
+        return k;
+    }
+}
@@ -13,8 +13,20 @@ import java.nio.file.Paths;
 
 public class PathManager {
     private static final String outputPath = Configuration.config().getProperty("dt.cache.absolute.path", "");
+    // Set when modules are detected in the background (see ModuleCoordinator), where TestPluginUtil.project may
+    // already point at a different module
+    private static final InheritableThreadLocal<ProjectWrapper> currentProject = new InheritableThreadLocal<>();
+
+    public static void setProject(final ProjectWrapper project) {
+        currentProject.set(project);
+    }
+
+    public static ProjectWrapper project() {
+        return currentProject.get() != null ? currentProject.get() : TestPluginUtil.project;
+    }
+
     public static Path modulePath() {
-        return TestPluginUtil.project.getBasedir().toPath();
+        return project().getBasedir().toPath();
     }
 
     private static ProjectWrapper getMavenProjectParent(ProjectWrapper project) {
@@ -26,7 +38,7 @@ public class PathManager {
     }
 
     public static Path parentPath() {
-        return getMavenProjectParent(TestPluginUtil.project).getBasedir().toPath();
+        return getMavenProjectParent(project()).getBasedir().toPath();
     }
 
     public static Path parentPath(final Path relative) {
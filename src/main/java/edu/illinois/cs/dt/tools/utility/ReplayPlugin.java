@@ -1,7 +1,7 @@
 package edu.illinois.cs.dt.tools.utility;
 
 import com.google.gson.Gson;
-import com.reedoei.eunomia.io.files.FileUtil;
+import edu.illinois.cs.dt.tools.runner.BlobStore;
 import edu.illinois.cs.testrunner.configuration.Configuration;
 import edu.illinois.cs.testrunner.data.results.TestRunResult;
 import edu.illinois.cs.testrunner.coreplugin.TestPlugin;
@@ -49,7 +49,7 @@ public class ReplayPlugin extends TestPlugin {
 
     private List<String> testOrder() throws IOException {
         try {
-            return new Gson().fromJson(FileUtil.readFile(replayPath), TestRunResult.class).testOrder();
+            return new Gson().fromJson(BlobStore.readFile(replayPath), TestRunResult.class).testOrder();
         } catch (Exception e) {
             return Files.readAllLines(replayPath);
         }
@@ -0,0 +1,238 @@
+package edu.illinois.cs.dt.tools.utility;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Removes the given elements (with everything in them) from an XML document as it is read, e.g., the captured
+ * system-out and system-err of surefire reports, which can be hundreds of MB. XML parsers keep a whole text or CDATA
+ * section in memory at once, even when streaming, so the elements are dropped before the parser sees them.
+ *
+ * Only looks at markup, so element names inside CDATA sections, comments and attribute values are left alone. The
+ * elements must not contain themselves.
+ */
+public class SkipElementsInputStream extends InputStream {
+    private static final byte[] CDATA_START = bytes("![CDATA[");
+    private static final byte[] CDATA_END = bytes("]]>");
+    private static final byte[] COMMENT_START = bytes("!--");
+    private static final byte[] COMMENT_END = bytes("-->");
+
+    private final PushbackInputStream in;
+    private final List<byte[]> names = new ArrayList<>();
+    private final List<byte[]> endTags = new ArrayList<>();
+    private final int lookahead;
+
+    // While passing through a CDATA section or comment, how it ends
+    private byte[] passUntil = null;
+    private int passMatched = 0;
+
+    public SkipElementsInputStream(final InputStream in, final String... elements) {
+        int longest = CDATA_START.length;
+        for (final String element : elements) {
+            names.add(bytes(element));
+            endTags.add(bytes("/" + element));
+            longest = Math.max(longest, element.length() + 2);
+        }
+
+        this.lookahead = longest;
+        this.in = new PushbackInputStream(in, longest);
+    }
+
+    @Override
+    public int read() throws IOException {
+        while (true) {
+            final int b = in.read();
+
+            if (passUntil != null) {
+                if (b >= 0 && matchesNext(b)) {
+                    passUntil = null;
+                }
+                return b;
+            }
+
+            if (b != '<') {
+                return b;
+            }
+
+            if (lookingAt(CDATA_START)) {
+                startPassing(CDATA_END);
+                return b;
+            } else if (lookingAt(COMMENT_START)) {
+                startPassing(COMMENT_END);
+                return b;
+            }
+
+            final int skipped = skippedElement();
+            if (skipped < 0) {
+                return b;
+            }
+
+            skipElement(skipped);
+        }
+    }
+
+    @Override
+    public int read(final byte[] buffer, final int off, final int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+
+        int count = 0;
+        while (count < len) {
+            final int b = read();
+            if (b < 0) {
+                break;
+            }
+
+            buffer[off + count] = (byte) b;
+            count++;
+        }
+
+        return count == 0 ? -1 : count;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private void startPassing(final byte[] end) {
+        passUntil = end;
+        passMatched = 0;
+    }
+
+    // Both ends are the same byte twice and then '>' ("]]>" and "-->")
+    private boolean matchesNext(final int b) {
+        if (passMatched == 2 && b == '>') {
+            passMatched = 3;
+        } else if (b == (passUntil[0] & 0xFF)) {
+            passMatched = Math.min(passMatched + 1, 2);
+        } else {
+            passMatched = 0;
+        }
+
+        return passMatched == 3;
+    }
+
+    // The index of the element whose start tag comes next (just after the '<'), or -1
+    private int skippedElement() throws IOException {
+        for (int i = 0; i < names.size(); i++) {
+            if (lookingAtTag(names.get(i))) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    private void skipElement(final int element) throws IOException {
+        // The rest of the start tag, where attribute values may contain '>' and '/'
+        int previous = -1;
+        int quote = -1;
+        int b;
+        while ((b = in.read()) >= 0) {
+            if (quote >= 0) {
+                if (b == quote) {
+                    quote = -1;
+                }
+            } else if (b == '"' || b == '\'') {
+                quote = b;
+            } else if (b == '>') {
+                break;
+            }
+            previous = b;
+        }
+
+        if (b < 0 || previous == '/') {
+            return;
+        }
+
+        while ((b = in.read()) >= 0) {
+            if (b != '<') {
+                continue;
+            }
+
+            if (lookingAt(CDATA_START)) {
+                consumeUntil(CDATA_END);
+            } else if (lookingAt(COMMENT_START)) {
+                consumeUntil(COMMENT_END);
+            } else if (lookingAtTag(endTags.get(element))) {
+                while ((b = in.read()) >= 0 && b != '>') {
+                    // The rest of the end tag
+                }
+                return;
+            }
+        }
+    }
+
+    private void consumeUntil(final byte[] end) throws IOException {
+        startPassing(end);
+
+        int b;
+        while ((b = in.read()) >= 0) {
+            if (matchesNext(b)) {
+                break;
+            }
+        }
+
+        passUntil = null;
+    }
+
+    private boolean lookingAt(final byte[] expected) throws IOException {
+        final byte[] next = new byte[expected.length];
+        final int read = readAhead(next);
+
+        boolean matches = read == expected.length;
+        for (int i = 0; matches && i < expected.length; i++) {
+            matches = next[i] == expected[i];
+        }
+
+        if (read > 0) {
+            in.unread(next, 0, read);
+        }
+
+        return matches;
+    }
+
+    // Like lookingAt, but the name must be followed by the end of the name (so system-out does not match system-outs)
+    private boolean lookingAtTag(final byte[] name) throws IOException {
+        final byte[] next = new byte[Math.min(name.length + 1, lookahead)];
+        final int read = readAhead(next);
+
+        boolean matches = read == next.length;
+        for (int i = 0; matches && i < name.length; i++) {
+            matches = next[i] == name[i];
+        }
+
+        if (matches) {
+            final byte after = next[name.length];
+            matches = after == '>' || after == '/' || Character.isWhitespace(after);
+        }
+
+        if (read > 0) {
+            in.unread(next, 0, read);
+        }
+
+        return matches;
+    }
+
+    private int readAhead(final byte[] buffer) throws IOException {
+        int read = 0;
+        while (read < buffer.length) {
+            final int b = in.read();
+            if (b < 0) {
+                break;
+            }
+            buffer[read++] = (byte) b;
+        }
+        return read;
+    }
+
+    private static byte[] bytes(final String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -1,30 +1,19 @@
 package edu.illinois.cs.dt.tools.utility;
 
-import com.google.gson.Gson;
-import com.reedoei.eunomia.collections.ListEx;
 import com.reedoei.eunomia.collections.PairStream;
-import com.reedoei.eunomia.io.files.FileUtil;
+import edu.illinois.cs.dt.tools.runner.ResultStore;
+import edu.illinois.cs.dt.tools.runner.RunOutput;
 import edu.illinois.cs.dt.tools.runner.RunnerPathManager;
 import edu.illinois.cs.testrunner.data.results.TestRunResult;
 
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.stream.Collectors;
+import java.util.AbstractMap;
+import java.util.Map;
 import java.util.stream.Stream;
 
 public class TestRunParser {
-    // List files and close the directory streams
-    private static ListEx<Path> listFiles(final Path path) throws IOException {
-        final ListEx<Path> result = new ListEx<>();
-
-        try (final Stream<Path> stream = Files.list(path)) {
-            result.addAll(stream.collect(Collectors.toList()));
-        }
-
-        return result;
-    }
-
     private final Path basePath;
 
     public TestRunParser(final Path basePath) {
@@ -35,38 +24,33 @@ public class TestRunParser {
         return testResults(Files.walk(basePath));
     }
 
+    /**
+     * Reads the results lazily. Close the stream when done, to close the directory walk.
+     */
     public Stream<TestRunResult> testRunResults() throws IOException {
-        return Files.walk(basePath).filter(this::isTestRun).flatMap(this::testRunResult);
+        final Stream<Path> paths = Files.walk(basePath);
+        return paths.filter(this::isTestRun).flatMap(this::testRunResult).onClose(paths::close);
     }
 
     public PairStream<String, TestRunResult> testResults(final Stream<Path> paths) {
-        return PairStream.fromStream(paths.filter(this::isTestRun), this::testRunOutput, this::testRunResult)
-                .flatMap((outputs, trrs) -> PairStream.zip(outputs.iterator(), trrs.iterator()));
+        // Pair each run with its output, which is stored under the id of the run
+        return PairStream.fromStream(
+                paths.filter(this::isTestRun)
+                        .flatMap(dir -> testRunResult(dir).map(trr -> new AbstractMap.SimpleImmutableEntry<>(dir, trr))),
+                e -> testRunOutput(e.getKey(), e.getValue()),
+                Map.Entry::getValue);
     }
 
     private Stream<TestRunResult> testRunResult(final Path path) {
         try {
-            return listFiles(path.resolve("results")).stream()
-                    .flatMap(FileUtil::safeReadFile)
-                    .flatMap(s -> {
-                        try {
-                            return Stream.of(new Gson().fromJson(s, TestRunResult.class));
-                        } catch (Exception e) {
-                            return Stream.empty();
-                        }
-                    });
+            return RunnerPathManager.allResults(path);
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
     }
 
-    private Stream<String> testRunOutput(final Path path) {
-        try {
-            return listFiles(path.resolve("output")).stream()
-                    .flatMap(FileUtil::safeReadFile);
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
+    private String testRunOutput(final Path path, final TestRunResult testRunResult) {
+        return RunOutput.read(path.resolve("output"), testRunResult.id()).orElse("");
     }
 
     private boolean isTestRun(final Path path) {
@@ -75,6 +59,6 @@ public class TestRunParser {
 
         return path.getFileName().toString().equals(RunnerPathManager.TEST_RUNS.getFileName().toString()) &&
                Files.isDirectory(output) &&
-               Files.isDirectory(results);
+               (Files.isDirectory(results) || ResultStore.exists(RunnerPathManager.storePath(path)));
     }
 }
@@ -0,0 +1,20 @@
+insert into detection_round
+(
+  id,
+  subject_name,
+  unfiltered_id,
+  filtered_id,
+  round_type,
+  round_number,
+  round_time
+)
+values
+(
+  ?,
+  ?,
+  ?,
+  ?,
+  ?,
+  ?,
+  ?
+)
\ No newline at end of file
@@ -0,0 +1,14 @@
+insert into flaky_test
+(
+  id,
+  name,
+  intended_id,
+  revealed_id
+)
+values
+(
+  ?,
+  ?,
+  ?,
+  ?
+)
\ No newline at end of file
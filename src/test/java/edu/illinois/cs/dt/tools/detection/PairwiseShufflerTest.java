@@ -0,0 +1,95 @@
+package edu.illinois.cs.dt.tools.detection;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PairwiseShufflerTest {
+    // How many times each ordered pair (a, b) is adjacent in the first rows of the design for n items
+    private static int[][] adjacentCounts(final int n, final int rows) {
+        final int[][] counts = new int[n][n];
+        for (int r = 0; r < rows; r++) {
+            final int[] row = PairwiseShuffler.williamsRow(n, r);
+
+            final boolean[] seen = new boolean[n];
+            for (final int i : row) {
+                assertFalse("Row " + r + " for " + n + " repeats " + i, seen[i]);
+                seen[i] = true;
+            }
+            assertEquals(n, row.length);
+
+            for (int i = 1; i < row.length; i++) {
+                counts[row[i - 1]][row[i]]++;
+            }
+        }
+        return counts;
+    }
+
+    @Test
+    public void testEvenRowsCoverEachPairOnce() {
+        for (final int n : new int[] { 2, 4, 6, 8 }) {
+            final int[][] counts = adjacentCounts(n, n);
+
+            for (int a = 0; a < n; a++) {
+                for (int b = 0; b < n; b++) {
+                    assertEquals("(" + a + ", " + b + ") for " + n, a == b ? 0 : 1, counts[a][b]);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testOddRowsCoverEveryPair() {
+        for (final int n : new int[] { 3, 5, 7 }) {
+            final int[][] counts = adjacentCounts(n, n + 1);
+
+            for (int a = 0; a < n; a++) {
+                for (int b = 0; b < n; b++) {
+                    if (a != b) {
+                        assertTrue("(" + a + ", " + b + ") for " + n, counts[a][b] >= 1);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testSingleItem() {
+        assertTrue(Arrays.equals(new int[] { 0 }, PairwiseShuffler.williamsRow(1, 0)));
+        assertEquals(0, PairwiseShuffler.williamsRow(0, 0).length);
+    }
+
+    @Test
+    public void testOrdersCoverAllPairs() {
+        final List<String> tests = new ArrayList<>();
+        for (final String className : Arrays.asList("a.A", "a.B", "a.C")) {
+            for (final String method : Arrays.asList("x", "y", "z")) {
+                tests.add(className + "." + method);
+            }
+        }
+
+        final PairwiseShuffler shuffler = new PairwiseShuffler(tests);
+        assertFalse(shuffler.coverage().complete());
+
+        // Three classes of three tests each take the n + 1 = 4 rows of the odd design
+        for (int i = 0; i < 4; i++) {
+            final List<String> order = shuffler.nextOrder();
+            assertEquals(new HashSet<>(tests), new HashSet<>(order));
+            assertEquals(tests.size(), order.size());
+        }
+
+        final PairCoverage coverage = shuffler.coverage();
+        assertEquals(6, coverage.classPairs());
+        assertEquals(6, coverage.coveredClassPairs());
+        assertEquals(18, coverage.methodPairs());
+        assertEquals(18, coverage.coveredMethodPairs());
+        assertTrue(coverage.complete());
+    }
+}
@@ -0,0 +1,95 @@
+package edu.illinois.cs.dt.tools.detection;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class RoundJournalTest {
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private Path roundsDir;
+    private RoundJournal journal;
+
+    @Before
+    public void setUp() {
+        roundsDir = folder.getRoot().toPath().resolve("detection-results").resolve("random");
+        journal = RoundJournal.forPath(RoundJournal.journalPath(roundsDir));
+    }
+
+    private static DetectionRound round(final String id) {
+        return new DetectionRound(Collections.singletonList(id), new ArrayList<>(), new ArrayList<>(), 1.0);
+    }
+
+    private List<String> ids() throws Exception {
+        try (final Stream<DetectionRound> rounds = RoundJournal.readRounds(roundsDir)) {
+            return rounds.map(round -> round.testRunIds().get(0)).collect(Collectors.toList());
+        }
+    }
+
+    @Test
+    public void testCutOffLine() throws Exception {
+        journal.append(0, round("a"));
+        journal.append(1, round("b"));
+        journal.close();
+
+        // Killed while appending round 2
+        final Path path = RoundJournal.journalPath(roundsDir);
+        Files.write(path, "{\"round\":2,\"detectionRound\":{\"testRunIds\":[\"c".getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.APPEND);
+
+        assertEquals(Arrays.asList("a", "b"), ids());
+        assertFalse(RoundJournal.readRound(roundsDir, 2).isPresent());
+
+        // The cut-off line is dropped before appending, so the new line is read back whole
+        journal.append(2, round("c"));
+        journal.close();
+
+        assertEquals(Arrays.asList("a", "b", "c"), ids());
+        assertEquals(3, Files.readAllLines(path).size());
+    }
+
+    @Test
+    public void testRoundRunAgain() throws Exception {
+        journal.append(0, round("a"));
+        journal.append(1, round("b"));
+        // e.g., after resuming from a checkpoint taken before round 1
+        journal.append(1, round("c"));
+        journal.close();
+
+        assertEquals(Arrays.asList("a", "c"), ids());
+        assertEquals("c", RoundJournal.readRound(roundsDir, 1).get().testRunIds().get(0));
+    }
+
+    @Test
+    public void testClearRemovesBothForms() throws Exception {
+        Files.createDirectories(roundsDir);
+        Files.write(DetectorPathManager.pathWithRound(roundsDir, "", 0), round("old").toString().getBytes());
+        journal.append(0, round("a"));
+
+        // The stale per-round file wins over the journal until a new run clears both
+        assertEquals(Arrays.asList("old"), ids());
+
+        RoundJournal.clear(roundsDir);
+        assertEquals(Collections.emptyList(), ids());
+
+        journal.append(0, round("b"));
+        journal.close();
+        assertEquals(Arrays.asList("b"), ids());
+    }
+}
@@ -0,0 +1,135 @@
+package edu.illinois.cs.dt.tools.runner;
+
+import edu.illinois.cs.testrunner.data.results.Result;
+import edu.illinois.cs.testrunner.data.results.TestResult;
+import edu.illinois.cs.testrunner.data.results.TestRunResult;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class ResultStoreTest {
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private Path path;
+
+    @Before
+    public void setUp() {
+        path = folder.getRoot().toPath().resolve(RunnerPathManager.TEST_RUNS).resolve("store");
+    }
+
+    private static TestRunResult run(final String id, final StackTraceElement[] stackTrace, final String... tests) {
+        final Map<String, TestResult> results = new LinkedHashMap<>();
+        for (final String test : tests) {
+            results.put(test, new TestResult(test, stackTrace.length == 0 ? Result.PASS : Result.FAILURE, 0.25, stackTrace));
+        }
+        return new TestRunResult(id, Arrays.asList(tests), results);
+    }
+
+    private ResultStore reopen() {
+        ResultStore.release(path);
+        return ResultStore.forPath(path);
+    }
+
+    private List<String> ids(final ResultStore store) throws IOException {
+        return store.results().map(TestRunResult::id).collect(Collectors.toList());
+    }
+
+    @Test
+    public void testVarInt() {
+        final int[] values = { 0, 1, -1, 63, -64, 64, -65, 8191, 8192, -8193, Integer.MAX_VALUE, Integer.MIN_VALUE };
+        // Zigzag keeps small negative numbers as short as small positive ones
+        final int[] lengths = { 1, 1, 1, 1, 1, 2, 2, 2, 3, 3, 5, 5 };
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int i = 0; i < values.length; i++) {
+            final int before = out.size();
+            ResultStore.writeVarInt(out, values[i]);
+            assertEquals("Length of " + values[i], lengths[i], out.size() - before);
+        }
+
+        final ByteBuffer buffer = ByteBuffer.wrap(out.toByteArray());
+        for (final int value : values) {
+            assertEquals(value, ResultStore.readVarInt(buffer));
+        }
+        assertFalse(buffer.hasRemaining());
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        // Negative and multi-byte numbers exercise both ends of the varint encoding
+        final StackTraceElement[] stackTrace = {
+                new StackTraceElement("a.B", "test", "B.java", 1 << 20),
+                new StackTraceElement("sun.reflect.NativeMethodAccessorImpl", "invoke0", null, -2),
+                new StackTraceElement("\u00e9.\u4e2d", "m", "", 0)
+        };
+
+        ResultStore.forPath(path).write(run("first", new StackTraceElement[0], "a.B.x", "a.B.y"));
+        ResultStore.forPath(path).write(run("second", stackTrace, "a.B.y", "a.B.x"));
+
+        final ResultStore store = reopen();
+        assertEquals(2, store.size());
+        assertEquals(Arrays.asList("first", "second"), ids(store));
+
+        final TestRunResult second = store.read("second").get();
+        assertEquals(Arrays.asList("a.B.y", "a.B.x"), second.testOrder());
+        assertEquals(Result.FAILURE, second.results().get("a.B.x").result());
+        assertEquals(0.25, second.results().get("a.B.x").time(), 0);
+
+        final StackTraceElement[] read = second.results().get("a.B.y").stackTrace();
+        assertEquals(1 << 20, read[0].getLineNumber());
+        assertEquals(-2, read[1].getLineNumber());
+        assertEquals(null, read[1].getFileName());
+        assertEquals("\u00e9.\u4e2d", read[2].getClassName());
+
+        assertArrayEquals(new StackTraceElement[0], store.read("first").get().results().get("a.B.x").stackTrace());
+        assertFalse(store.read("third").isPresent());
+    }
+
+    @Test
+    public void testCutOffRecord() throws Exception {
+        ResultStore.forPath(path).write(run("first", new StackTraceElement[0], "a.B.x"));
+
+        final Path segment = path.resolve("segment-00000");
+        final long namesSize = Files.size(path.resolve(ResultStore.NAMES));
+        final long indexSize = Files.size(path.resolve(ResultStore.INDEX));
+        final long segmentSize = Files.size(segment);
+
+        // Killed while writing the next run: a partial name, a whole record but only part of its index entry
+        Files.write(path.resolve(ResultStore.NAMES), new byte[] { 40, 'a' }, StandardOpenOption.APPEND);
+        Files.write(segment, new byte[] { 0, 0, 0, 3, 1, 2, 3 }, StandardOpenOption.APPEND);
+        Files.write(path.resolve(ResultStore.INDEX), new byte[] { 1, 2, 3 }, StandardOpenOption.APPEND);
+
+        // Reading ignores the cut-off ends, but leaves them alone
+        final ResultStore store = reopen();
+        assertEquals(Arrays.asList("first"), ids(store));
+        assertEquals(namesSize + 2, Files.size(path.resolve(ResultStore.NAMES)));
+        assertEquals(indexSize + 3, Files.size(path.resolve(ResultStore.INDEX)));
+        assertEquals(segmentSize + 7, Files.size(segment));
+
+        // Writing drops them first, so the new run and its names are read back correctly
+        store.write(run("second", new StackTraceElement[0], "a.B.y", "a.B.x"));
+
+        final ResultStore reopened = reopen();
+        assertEquals(Arrays.asList("first", "second"), ids(reopened));
+        assertEquals(Arrays.asList("a.B.y", "a.B.x"), reopened.read("second").get().testOrder());
+        assertEquals(2 * indexSize, Files.size(path.resolve(ResultStore.INDEX)));
+    }
+}
@@ -0,0 +1,101 @@
+package edu.illinois.cs.dt.tools.runner.data;
+
+import edu.illinois.cs.testrunner.data.results.Result;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+public class VerificationBatchTest {
+    private static DependentTest dependentTest(final String name, final List<String> intended,
+                                               final List<String> revealed) {
+        return new DependentTest(name,
+                new TestRun(intended, Result.PASS, "intended"),
+                new TestRun(revealed, Result.FAILURE, "revealed"));
+    }
+
+    private static Map<String, Boolean> confirmed(final List<DependentTest> dependentTests) {
+        final Map<String, Boolean> confirmed = new HashMap<>();
+        for (final DependentTest dependentTest : dependentTests) {
+            confirmed.put(dependentTest.name(), true);
+        }
+        return confirmed;
+    }
+
+    private static String members(final VerificationBatch.PrefixRun run) {
+        final StringBuilder names = new StringBuilder();
+        for (final DependentTest dependentTest : run.members) {
+            names.append(dependentTest.name());
+        }
+        return names.toString();
+    }
+
+    @Test
+    public void testPrefixesShareRun() {
+        // Verified by [a, b, d] and [a, b, d, c], so the run of c also verifies d
+        final DependentTest c = dependentTest("c", Arrays.asList("a", "b", "d"), Arrays.asList("b", "d"));
+        final DependentTest d = dependentTest("d", Arrays.asList("a", "b"), Arrays.asList("b"));
+        final List<DependentTest> dependentTests = Arrays.asList(d, c);
+
+        final List<VerificationBatch.PrefixRun> runs =
+                VerificationBatch.plan(dependentTests, DependentTest::intended, confirmed(dependentTests));
+
+        assertEquals(1, runs.size());
+        assertEquals(Arrays.asList("a", "b", "d", "c"), runs.get(0).order);
+        // Longest first
+        assertEquals("cd", members(runs.get(0)));
+    }
+
+    @Test
+    public void testOtherOrdersGetOwnRuns() {
+        final DependentTest c = dependentTest("c", Arrays.asList("a", "b"), Arrays.asList("b", "a"));
+        final DependentTest d = dependentTest("d", Arrays.asList("b"), Arrays.asList("b", "a", "c"));
+        final DependentTest e = dependentTest("e", Arrays.asList("a", "b", "c"), Collections.singletonList("b"));
+        final List<DependentTest> dependentTests = Arrays.asList(c, d, e);
+
+        final List<VerificationBatch.PrefixRun> intended =
+                VerificationBatch.plan(dependentTests, DependentTest::intended, confirmed(dependentTests));
+        assertEquals(2, intended.size());
+        assertEquals(Arrays.asList("a", "b", "c", "e"), intended.get(0).order);
+        assertEquals("ec", members(intended.get(0)));
+        // [b, d] is not a prefix of either
+        assertEquals(Arrays.asList("b", "d"), intended.get(1).order);
+        assertEquals("d", members(intended.get(1)));
+
+        final List<VerificationBatch.PrefixRun> revealed =
+                VerificationBatch.plan(dependentTests, DependentTest::revealed, confirmed(dependentTests));
+        assertEquals(2, revealed.size());
+        assertEquals(Arrays.asList("b", "a", "c", "d"), revealed.get(0).order);
+        assertEquals("dc", members(revealed.get(0)));
+        assertEquals(Arrays.asList("b", "e"), revealed.get(1).order);
+        assertEquals("e", members(revealed.get(1)));
+    }
+
+    @Test
+    public void testUnconfirmedTestsLeftOut() {
+        final DependentTest c = dependentTest("c", Arrays.asList("a", "b"), Arrays.asList("b"));
+        final DependentTest d = dependentTest("d", Arrays.asList("a", "b", "c", "e"), Arrays.asList("e"));
+        final List<DependentTest> dependentTests = Arrays.asList(c, d);
+
+        final Map<String, Boolean> confirmed = confirmed(dependentTests);
+        confirmed.put("d", false);
+
+        final List<VerificationBatch.PrefixRun> runs =
+                VerificationBatch.plan(dependentTests, DependentTest::intended, confirmed);
+
+        assertEquals(1, runs.size());
+        assertEquals(Arrays.asList("a", "b", "c"), runs.get(0).order);
+        assertEquals("c", members(runs.get(0)));
+    }
+
+    @Test
+    public void testNothingToVerify() {
+        assertEquals(0, VerificationBatch.plan(Collections.emptyList(), DependentTest::intended,
+                Collections.emptyMap()).size());
+    }
+}
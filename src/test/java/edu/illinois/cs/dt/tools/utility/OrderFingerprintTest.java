@@ -0,0 +1,78 @@
+package edu.illinois.cs.dt.tools.utility;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+public class OrderFingerprintTest {
+    private static final List<String> ORDER = Arrays.asList("a.A.x", "a.A.y", "a.B.x");
+
+    @Test
+    public void testSameOrderSameFingerprint() {
+        assertEquals(OrderFingerprint.of(ORDER), OrderFingerprint.of(Arrays.asList("a.A.x", "a.A.y", "a.B.x")));
+        assertEquals(OrderFingerprint.of(ORDER).toString(), OrderFingerprint.of(ORDER).toString());
+        assertEquals(OrderFingerprint.of(ORDER).hashCode(), OrderFingerprint.of(ORDER).hashCode());
+    }
+
+    // Fingerprints are stored with results, so they must not change between versions
+    @Test
+    public void testFixedValue() {
+        assertEquals("bde319a860f758889c53341ff5600cf8", OrderFingerprint.of(ORDER).toString());
+    }
+
+    @Test
+    public void testDifferentOrders() {
+        final OrderFingerprint fingerprint = OrderFingerprint.of(ORDER);
+
+        assertNotEquals(fingerprint, OrderFingerprint.of(Arrays.asList("a.A.y", "a.A.x", "a.B.x")));
+        assertNotEquals(fingerprint, OrderFingerprint.of(Arrays.asList("a.A.x", "a.A.y")));
+        assertNotEquals(fingerprint, OrderFingerprint.of(Arrays.asList("a.A.x", "a.A.y", "a.B.y")));
+        // The names are not just concatenated
+        assertNotEquals(OrderFingerprint.of(Arrays.asList("a.A.x", "a.A.y")),
+                OrderFingerprint.of(Arrays.asList("a.A.xa.A.y")));
+        assertNotEquals(OrderFingerprint.of(Collections.emptyList()), OrderFingerprint.of(Collections.singletonList("")));
+    }
+
+    @Test
+    public void testPrefixSnapshots() {
+        final OrderHasher hasher = new OrderHasher();
+        for (int i = 0; i < ORDER.size(); i++) {
+            assertEquals(OrderFingerprint.of(ORDER.subList(0, i)), hasher.snapshot());
+            hasher.append(ORDER.get(i));
+        }
+
+        assertEquals(ORDER.size(), hasher.length());
+        assertEquals(OrderFingerprint.of(ORDER), hasher.snapshot());
+    }
+
+    @Test
+    public void testAppendNameHashes() {
+        final OrderHasher hasher = new OrderHasher();
+        for (final String test : ORDER) {
+            hasher.append(OrderHasher.nameHashA(test), OrderHasher.nameHashB(test));
+        }
+
+        assertEquals(OrderFingerprint.of(ORDER), hasher.snapshot());
+    }
+
+    @Test
+    public void testWriteRead() {
+        final OrderFingerprint fingerprint = OrderFingerprint.of(ORDER);
+
+        final ByteBuffer buffer = ByteBuffer.allocate(OrderFingerprint.BYTES);
+        fingerprint.write(buffer);
+        assertEquals(OrderFingerprint.BYTES, buffer.position());
+
+        buffer.flip();
+        final OrderFingerprint read = OrderFingerprint.read(buffer);
+        assertEquals(fingerprint, read);
+        assertEquals(fingerprint.high(), read.high());
+        assertEquals(fingerprint.low(), read.low());
+    }
+}
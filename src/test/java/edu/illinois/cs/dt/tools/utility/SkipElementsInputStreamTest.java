@@ -0,0 +1,74 @@
+package edu.illinois.cs.dt.tools.utility;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+
+public class SkipElementsInputStreamTest {
+    private static String skip(final String xml) throws IOException {
+        try (final InputStream in = new SkipElementsInputStream(
+                new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)), "system-out", "system-err")) {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[7];
+            int read;
+            while ((read = in.read(buffer)) >= 0) {
+                out.write(buffer, 0, read);
+            }
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+
+    @Test
+    public void testSkipsElement() throws Exception {
+        assertEquals("<testcase name=\"a\"></testcase>",
+                skip("<testcase name=\"a\"><system-out>lots of output</system-out></testcase>"));
+    }
+
+    @Test
+    public void testEndTagInsideCdata() throws Exception {
+        assertEquals("<testcase></testcase>",
+                skip("<testcase><system-out><![CDATA[printed </system-out> here]]></system-out></testcase>"));
+    }
+
+    @Test
+    public void testSelfClosing() throws Exception {
+        assertEquals("<testcase><failure/></testcase>",
+                skip("<testcase><system-out/><failure/></testcase>"));
+        assertEquals("<testcase><failure/></testcase>",
+                skip("<testcase><system-out a=\"1\" /><failure/></testcase>"));
+    }
+
+    @Test
+    public void testCommentsMentioningSkippedNames() throws Exception {
+        assertEquals("<testcase><!-- <system-out> is skipped --></testcase>",
+                skip("<testcase><!-- <system-out> is skipped --></testcase>"));
+        assertEquals("<testcase></testcase>",
+                skip("<testcase><system-out><!-- </system-out> -->text</system-out></testcase>"));
+    }
+
+    @Test
+    public void testCdataMentioningSkippedNames() throws Exception {
+        assertEquals("<testcase><![CDATA[<system-err>]]></testcase>",
+                skip("<testcase><![CDATA[<system-err>]]></testcase>"));
+    }
+
+    @Test
+    public void testGreaterThanInAttribute() throws Exception {
+        assertEquals("<testcase></testcase>",
+                skip("<testcase><system-out note=\"a > b\">text</system-out></testcase>"));
+        assertEquals("<testcase><failure/></testcase>",
+                skip("<testcase><system-out note='a/>'/><failure/></testcase>"));
+    }
+
+    @Test
+    public void testSimilarNamesAreKept() throws Exception {
+        assertEquals("<testcase><system-outs>kept</system-outs></testcase>",
+                skip("<testcase><system-outs>kept</system-outs></testcase>"));
+    }
+}